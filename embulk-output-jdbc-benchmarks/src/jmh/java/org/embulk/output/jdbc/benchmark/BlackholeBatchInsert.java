@@ -0,0 +1,129 @@
+package org.embulk.output.jdbc.benchmark;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Calendar;
+
+import org.embulk.output.jdbc.BatchInsert;
+import org.embulk.output.jdbc.JdbcSchema;
+import org.embulk.output.jdbc.TableIdentifier;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * BatchInsert which consumes values by Blackhole, to measure the cost of code before BatchInsert.
+ */
+public class BlackholeBatchInsert
+        implements BatchInsert
+{
+    private final Blackhole blackhole;
+
+    public BlackholeBatchInsert(Blackhole blackhole)
+    {
+        this.blackhole = blackhole;
+    }
+
+    public void prepare(TableIdentifier loadTable, JdbcSchema insertSchema)
+    {
+    }
+
+    public int getBatchWeight()
+    {
+        return 0;
+    }
+
+    public void add()
+    {
+    }
+
+    public void close()
+    {
+    }
+
+    public void flush()
+    {
+    }
+
+    public int[] getLastUpdateCounts()
+    {
+        return new int[] {};
+    }
+
+    public void finish()
+    {
+    }
+
+    public void setNull(int sqlType)
+    {
+        blackhole.consume(sqlType);
+    }
+
+    public void setBoolean(boolean v)
+    {
+        blackhole.consume(v);
+    }
+
+    public void setByte(byte v)
+    {
+        blackhole.consume(v);
+    }
+
+    public void setShort(short v)
+    {
+        blackhole.consume(v);
+    }
+
+    public void setInt(int v)
+    {
+        blackhole.consume(v);
+    }
+
+    public void setLong(long v)
+    {
+        blackhole.consume(v);
+    }
+
+    public void setFloat(float v)
+    {
+        blackhole.consume(v);
+    }
+
+    public void setDouble(double v)
+    {
+        blackhole.consume(v);
+    }
+
+    public void setBigDecimal(BigDecimal v)
+    {
+        blackhole.consume(v);
+    }
+
+    public void setString(String v)
+    {
+        blackhole.consume(v);
+    }
+
+    public void setNString(String v)
+    {
+        blackhole.consume(v);
+    }
+
+    public void setBytes(byte[] v)
+    {
+        blackhole.consume(v);
+    }
+
+    public void setSqlDate(Instant v, Calendar cal)
+    {
+        blackhole.consume(v);
+    }
+
+    public void setSqlTime(Instant v, Calendar cal)
+    {
+        blackhole.consume(v);
+    }
+
+    public void setSqlTimestamp(Instant v, Calendar cal)
+    {
+        blackhole.consume(v);
+    }
+}
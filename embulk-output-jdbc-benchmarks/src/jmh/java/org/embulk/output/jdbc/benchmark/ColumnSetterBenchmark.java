@@ -0,0 +1,107 @@
+package org.embulk.output.jdbc.benchmark;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.embulk.output.jdbc.ColumnarRecordBuffer;
+import org.embulk.output.jdbc.setter.ColumnSetter;
+import org.embulk.output.jdbc.setter.ColumnSetterVisitor;
+import org.embulk.output.jdbc.setter.MethodHandleRowWriter;
+import org.embulk.spi.Column;
+import org.embulk.spi.Schema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Writes rows to a BatchInsert through ColumnSetters, by ColumnSetterVisitor and by MethodHandleRowWriter.
+ * The columns of Rows are repeated by copies, so that wide schemas (up to 200 columns) span multiple chunk methods
+ * of the class generated by MethodHandleRowWriter.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ColumnSetterBenchmark
+{
+    private static final int ROWS = 10000;
+
+    @Param({"1", "16", "50"})
+    public int copies;
+
+    private List<Column> columns;
+    private ColumnarRecordBuffer records;
+    private ColumnarRecordBuffer.Cursor cursor;
+    private ColumnSetterVisitor[] visitors;
+    private MethodHandleRowWriter rowWriter;
+
+    @Setup
+    public void setup(Blackhole blackhole)
+    {
+        Schema.Builder schema = Schema.builder();
+        List<ColumnSetter> setters = new ArrayList<>();
+        for (int copy = 0; copy < copies; copy++) {
+            for (Column column : Rows.SCHEMA.getColumns()) {
+                schema.add(column.getName() + "_" + copy, column.getType());
+            }
+            setters.addAll(Rows.newColumnSetters(new BlackholeBatchInsert(blackhole)));
+        }
+        columns = schema.build().getColumns();
+        records = buildRecords();
+        cursor = records.newCursor();
+        visitors = new ColumnSetterVisitor[setters.size()];
+        for (int i = 0; i < setters.size(); i++) {
+            visitors[i] = new ColumnSetterVisitor(cursor, setters.get(i));
+        }
+        rowWriter = MethodHandleRowWriter.build(cursor, columns, setters).get();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void visitor()
+    {
+        for (int row = 0; row < ROWS; row++) {
+            cursor.moveTo(row);
+            for (int i = 0; i < visitors.length; i++) {
+                columns.get(i).visit(visitors[i]);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void methodHandle() throws IOException, SQLException
+    {
+        for (int row = 0; row < ROWS; row++) {
+            cursor.moveTo(row);
+            rowWriter.write();
+        }
+    }
+
+    // the values of Rows repeated for each copy of the columns
+    private ColumnarRecordBuffer buildRecords()
+    {
+        ColumnarRecordBuffer buffer = new ColumnarRecordBuffer(new Schema(columns));
+        for (int i = 0; i < ROWS; i++) {
+            int row = buffer.addRow();
+            for (int c = 0; c < columns.size(); c += 4) {
+                buffer.setLong(row, columns.get(c), i);
+                if (i % 20 != 0) {
+                    buffer.setDouble(row, columns.get(c + 1), i * 0.5);
+                }
+                buffer.setString(row, columns.get(c + 2), Rows.name(i));
+                buffer.setTimestamp(row, columns.get(c + 3), Rows.createdAt(i));
+            }
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,71 @@
+package org.embulk.output.jdbc.benchmark;
+
+import java.text.DateFormat;
+import java.time.Instant;
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.embulk.output.jdbc.TimestampFormat;
+import org.embulk.output.sqlserver.SmallDateTimeFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Formats timestamps as NativeBatchInsert of embulk-output-sqlserver does before binding them to the native client.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class NativeTimestampFormatBenchmark
+{
+    private static final int ROWS = 10000;
+
+    private Instant[] values;
+    private Calendar calendar;
+    private DateFormat datetime2;
+    private DateFormat smallDateTime;
+
+    @Setup
+    public void setup()
+    {
+        values = new Instant[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            values[i] = Rows.createdAt(i);
+        }
+        calendar = Calendar.getInstance(TimeZone.getTimeZone("Asia/Tokyo"));
+        datetime2 = new TimestampFormat("yyyy-MM-dd HH:mm:ss", 7);
+        smallDateTime = new SmallDateTimeFormat("yyyy-MM-dd HH:mm:ss");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void datetime2(Blackhole blackhole)
+    {
+        format(datetime2, blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void smallDateTime(Blackhole blackhole)
+    {
+        format(smallDateTime, blackhole);
+    }
+
+    private void format(DateFormat format, Blackhole blackhole)
+    {
+        for (Instant v : values) {
+            format.setCalendar(calendar);
+            java.sql.Timestamp timestamp = new java.sql.Timestamp(v.toEpochMilli());
+            timestamp.setNanos(v.getNano());
+            blackhole.consume(format.format(timestamp));
+        }
+    }
+}
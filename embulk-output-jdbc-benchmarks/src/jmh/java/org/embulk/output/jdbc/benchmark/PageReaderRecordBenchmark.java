@@ -0,0 +1,102 @@
+package org.embulk.output.jdbc.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.embulk.output.jdbc.PageReaderRecord;
+import org.embulk.output.jdbc.PageRetainingRecord;
+import org.embulk.output.jdbc.ReplayableRecord;
+import org.embulk.output.jdbc.RetainedPages;
+import org.embulk.spi.Column;
+import org.embulk.spi.Page;
+import org.embulk.spi.PageReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Reads rows from pages while saving them for retry, compared with PageReader which saves nothing.
+ * Pages are built for each invocation because they are released by reading.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PageReaderRecordBenchmark
+{
+    private static final int ROWS = 10000;
+
+    private List<Page> pages;
+    private Column id;
+    private Column score;
+    private Column name;
+    private Column createdAt;
+
+    @Setup
+    public void setup()
+    {
+        id = Rows.SCHEMA.getColumn(0);
+        score = Rows.SCHEMA.getColumn(1);
+        name = Rows.SCHEMA.getColumn(2);
+        createdAt = Rows.SCHEMA.getColumn(3);
+    }
+
+    @Setup(Level.Invocation)
+    public void buildPages()
+    {
+        pages = Rows.buildPages(ROWS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    @SuppressWarnings("deprecation")
+    public void pageReader(Blackhole blackhole)
+    {
+        PageReader reader = new PageReader(Rows.SCHEMA);
+        for (Page page : pages) {
+            reader.setPage(page);
+            while (reader.nextRecord()) {
+                blackhole.consume(reader.getLong(id));
+                blackhole.consume(reader.isNull(score) ? 0.0 : reader.getDouble(score));
+                blackhole.consume(reader.getString(name));
+                blackhole.consume(reader.getTimestamp(createdAt));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    @SuppressWarnings("deprecation")
+    public void retryBufferValues(Blackhole blackhole)
+    {
+        read(new PageReaderRecord(new PageReader(Rows.SCHEMA)), blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void retryBufferPages(Blackhole blackhole)
+    {
+        read(new PageRetainingRecord(new RetainedPages(Rows.SCHEMA)), blackhole);
+    }
+
+    private void read(ReplayableRecord record, Blackhole blackhole)
+    {
+        for (Page page : pages) {
+            record.setPage(page);
+            while (record.nextRecord()) {
+                blackhole.consume(record.getLong(id));
+                blackhole.consume(record.isNull(score) ? 0.0 : record.getDouble(score));
+                blackhole.consume(record.getString(name));
+                blackhole.consume(record.getTimestamp(createdAt));
+            }
+        }
+        blackhole.consume(record.getReadRecordCount());
+        record.clearReadRecords();
+    }
+}
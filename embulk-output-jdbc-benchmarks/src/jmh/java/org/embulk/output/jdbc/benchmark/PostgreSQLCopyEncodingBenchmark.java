@@ -0,0 +1,125 @@
+package org.embulk.output.jdbc.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.embulk.output.jdbc.JdbcSchema;
+import org.embulk.output.jdbc.TableIdentifier;
+import org.embulk.output.postgresql.AbstractPostgreSQLCopyBatchInsert;
+import org.embulk.output.postgresql.CopyTextWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Encodes rows in the text format of COPY by AbstractPostgreSQLCopyBatchInsert, discarding the encoded bytes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PostgreSQLCopyEncodingBenchmark
+{
+    private static final int ROWS = 10000;
+
+    private String[] names;
+    private Instant[] createdAts;
+    private Calendar calendar;
+    private EncodingOnlyCopyBatchInsert batch;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        names = new String[ROWS];
+        createdAts = new Instant[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            names[i] = Rows.name(i);
+            createdAts[i] = Rows.createdAt(i);
+        }
+        calendar = Calendar.getInstance(TimeZone.getTimeZone("Asia/Tokyo"));
+        batch = new EncodingOnlyCopyBatchInsert();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        batch.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void encode() throws IOException
+    {
+        for (int i = 0; i < ROWS; i++) {
+            batch.setLong(i);
+            if (i % 20 == 0) {
+                batch.setNull(java.sql.Types.DOUBLE);
+            } else {
+                batch.setDouble(i * 0.5);
+            }
+            batch.setString(names[i]);
+            batch.setSqlTimestamp(createdAts[i], calendar);
+            batch.add();
+        }
+    }
+
+    private static class EncodingOnlyCopyBatchInsert
+            extends AbstractPostgreSQLCopyBatchInsert
+    {
+        EncodingOnlyCopyBatchInsert() throws IOException
+        {
+            super();
+        }
+
+        @Override
+        protected CopyTextWriter openWriter(File newFile) throws IOException
+        {
+            // encodes characters to bytes as the original writer does, and discards them
+            newFile.delete();
+            return new CopyTextWriter(new OutputStream() {
+                @Override
+                public void write(int b)
+                {
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len)
+                {
+                }
+            });
+        }
+
+        @Override
+        public int getBatchWeight()
+        {
+            return 0;
+        }
+
+        public void prepare(TableIdentifier loadTable, JdbcSchema insertSchema)
+        {
+        }
+
+        public void flush()
+        {
+        }
+
+        public void finish()
+        {
+        }
+
+        public void close() throws IOException
+        {
+            closeCurrentFile();
+        }
+    }
+}
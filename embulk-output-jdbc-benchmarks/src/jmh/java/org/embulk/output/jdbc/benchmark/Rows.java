@@ -0,0 +1,148 @@
+package org.embulk.output.jdbc.benchmark;
+
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.embulk.output.jdbc.BatchInsert;
+import org.embulk.output.jdbc.ColumnarRecordBuffer;
+import org.embulk.output.jdbc.JdbcColumn;
+import org.embulk.output.jdbc.JdbcSchema;
+import org.embulk.output.jdbc.setter.ColumnSetter;
+import org.embulk.output.jdbc.setter.DoubleColumnSetter;
+import org.embulk.output.jdbc.setter.LongColumnSetter;
+import org.embulk.output.jdbc.setter.NullDefaultValueSetter;
+import org.embulk.output.jdbc.setter.SqlTimestampColumnSetter;
+import org.embulk.output.jdbc.setter.StringColumnSetter;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.BufferAllocator;
+import org.embulk.spi.Column;
+import org.embulk.spi.Page;
+import org.embulk.spi.PageBuilder;
+import org.embulk.spi.PageOutput;
+import org.embulk.spi.Schema;
+
+/**
+ * Rows used by benchmarks: (id long, score double, name string, created_at timestamp).
+ * Every 10th name has characters to be escaped, and every 20th score is null.
+ */
+public final class Rows
+{
+    public static final Schema SCHEMA = Schema.builder()
+            .add("id", org.embulk.spi.type.Types.LONG)
+            .add("score", org.embulk.spi.type.Types.DOUBLE)
+            .add("name", org.embulk.spi.type.Types.STRING)
+            .add("created_at", org.embulk.spi.type.Types.TIMESTAMP)
+            .build();
+
+    public static final JdbcSchema JDBC_SCHEMA = new JdbcSchema(Arrays.asList(
+            JdbcColumn.newGenericTypeColumn("id", Types.BIGINT, "BIGINT", 0, 0, false, false),
+            JdbcColumn.newGenericTypeColumn("score", Types.DOUBLE, "DOUBLE PRECISION", 0, 0, false, false),
+            JdbcColumn.newGenericTypeColumn("name", Types.VARCHAR, "VARCHAR", 256, 0, false, false),
+            JdbcColumn.newGenericTypeColumn("created_at", Types.TIMESTAMP, "TIMESTAMP", 0, 0, false, false)));
+
+    private static final long BASE_SECONDS = 1700000000L;
+
+    private Rows()
+    {
+    }
+
+    public static String name(int i)
+    {
+        return i % 10 == 0 ? "name\t" + i + "\\\n" : "name " + i;
+    }
+
+    public static Instant createdAt(int i)
+    {
+        return Instant.ofEpochSecond(BASE_SECONDS + i, i * 1000L);
+    }
+
+    public static List<Page> buildPages(int rows)
+    {
+        final List<Page> pages = new ArrayList<>();
+        PageOutput output = new PageOutput() {
+            public void add(Page page)
+            {
+                pages.add(page);
+            }
+
+            public void finish()
+            {
+            }
+
+            public void close()
+            {
+            }
+        };
+        @SuppressWarnings("deprecation")
+        PageBuilder builder = new PageBuilder(new HeapBufferAllocator(), SCHEMA, output);
+        Column id = SCHEMA.getColumn(0);
+        Column score = SCHEMA.getColumn(1);
+        Column name = SCHEMA.getColumn(2);
+        Column createdAt = SCHEMA.getColumn(3);
+        for (int i = 0; i < rows; i++) {
+            builder.setLong(id, i);
+            if (i % 20 == 0) {
+                builder.setNull(score);
+            } else {
+                builder.setDouble(score, i * 0.5);
+            }
+            builder.setString(name, name(i));
+            builder.setTimestamp(createdAt, createdAt(i));
+            builder.addRecord();
+        }
+        builder.finish();
+        builder.close();
+        return pages;
+    }
+
+    public static ColumnarRecordBuffer buildRecords(int rows)
+    {
+        ColumnarRecordBuffer buffer = new ColumnarRecordBuffer(SCHEMA);
+        for (int i = 0; i < rows; i++) {
+            int row = buffer.addRow();
+            buffer.setLong(row, SCHEMA.getColumn(0), i);
+            if (i % 20 != 0) {
+                buffer.setDouble(row, SCHEMA.getColumn(1), i * 0.5);
+            }
+            buffer.setString(row, SCHEMA.getColumn(2), name(i));
+            buffer.setTimestamp(row, SCHEMA.getColumn(3), createdAt(i));
+        }
+        return buffer;
+    }
+
+    /**
+     * ColumnSetters which ColumnSetterFactory creates for the columns by default.
+     */
+    public static List<ColumnSetter> newColumnSetters(BatchInsert batch)
+    {
+        List<JdbcColumn> columns = JDBC_SCHEMA.getColumns();
+        return Arrays.asList(
+                new LongColumnSetter(batch, columns.get(0), new NullDefaultValueSetter(batch, columns.get(0))),
+                new DoubleColumnSetter(batch, columns.get(1), new NullDefaultValueSetter(batch, columns.get(1))),
+                new StringColumnSetter(batch, columns.get(2), new NullDefaultValueSetter(batch, columns.get(2)), null),
+                new SqlTimestampColumnSetter(batch, columns.get(3), new NullDefaultValueSetter(batch, columns.get(3)),
+                        Calendar.getInstance(TimeZone.getTimeZone("UTC"))));
+    }
+
+    private static class HeapBufferAllocator
+            implements BufferAllocator
+    {
+        private static final int PAGE_SIZE = 32 * 1024;
+
+        public Buffer allocate()
+        {
+            return allocate(PAGE_SIZE);
+        }
+
+        @SuppressWarnings("deprecation")
+        public Buffer allocate(int minimumCapacity)
+        {
+            return Buffer.allocate(Math.max(minimumCapacity, PAGE_SIZE));
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.embulk.output.jdbc.benchmark;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.embulk.output.jdbc.ColumnarRecordBuffer;
+import org.embulk.output.jdbc.JdbcOutputConnection;
+import org.embulk.output.jdbc.StandardBatchInsert;
+import org.embulk.output.jdbc.TableIdentifier;
+import org.embulk.output.jdbc.WeightEstimator;
+import org.embulk.output.jdbc.setter.ColumnSetter;
+import org.embulk.output.jdbc.setter.MethodHandleRowWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Loads rows by StandardBatchInsert to an in-memory H2 database, from ColumnSetters to executing batches.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StandardBatchInsertBenchmark
+{
+    private static final int ROWS = 10000;
+    private static final String URL = "jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1";
+
+    @Param({"0", "100"})
+    public int multiRowValues;
+
+    @Param({"1000", "10000"})
+    public int rowsPerBatch;
+
+    private Connection admin;
+    private StandardBatchInsert batch;
+    private ColumnarRecordBuffer.Cursor cursor;
+    private MethodHandleRowWriter rowWriter;
+
+    @Setup
+    public void setup() throws IOException, SQLException
+    {
+        admin = DriverManager.getConnection(URL);
+        try (Statement statement = admin.createStatement()) {
+            statement.executeUpdate("DROP TABLE IF EXISTS \"bench\"");
+            statement.executeUpdate("CREATE TABLE \"bench\" (\"id\" BIGINT, \"score\" DOUBLE PRECISION, "
+                    + "\"name\" VARCHAR(256), \"created_at\" TIMESTAMP)");
+        }
+
+        batch = new StandardBatchInsert(autoCommit -> {
+            Connection connection = DriverManager.getConnection(URL);
+            connection.setAutoCommit(autoCommit);
+            return new JdbcOutputConnection(connection, null);
+        }, Optional.empty(), 0, new WeightEstimator(), multiRowValues);
+        batch.prepare(new TableIdentifier(null, null, "bench"), Rows.JDBC_SCHEMA);
+
+        ColumnarRecordBuffer records = Rows.buildRecords(ROWS);
+        cursor = records.newCursor();
+        List<ColumnSetter> setters = Rows.newColumnSetters(batch);
+        rowWriter = MethodHandleRowWriter.build(cursor, Rows.SCHEMA.getColumns(), setters).get();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, SQLException
+    {
+        batch.finish();
+        batch.close();
+        try (Statement statement = admin.createStatement()) {
+            statement.executeUpdate("DROP TABLE \"bench\"");
+        }
+        admin.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void load() throws IOException, SQLException
+    {
+        for (int row = 0; row < ROWS; row++) {
+            cursor.moveTo(row);
+            rowWriter.write();
+            batch.add();
+            if ((row + 1) % rowsPerBatch == 0) {
+                batch.flush();
+            }
+        }
+        batch.flush();
+        try (Statement statement = admin.createStatement()) {
+            // keeps the table small so that every invocation inserts to the same size of table
+            statement.executeUpdate("TRUNCATE TABLE \"bench\"");
+        }
+    }
+}
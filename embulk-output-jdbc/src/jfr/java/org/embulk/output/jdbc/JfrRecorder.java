@@ -0,0 +1,181 @@
+package org.embulk.output.jdbc;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Emits PhaseEvents as JFR events. This class is loaded by PhaseEvents only if the JVM has jdk.jfr.
+ * It's compiled with --release 11 apart from the main classes, which are compiled for Java 8.
+ */
+class JfrRecorder
+        implements PhaseEvents.Recorder
+{
+    @Override
+    public PhaseEvents.Span begin(PhaseEvents.Phase phase, String table)
+    {
+        PhaseEvent event;
+        switch (phase) {
+        case FLUSH:
+            event = new FlushEvent();
+            break;
+        case FINISH:
+            event = new FinishEvent();
+            break;
+        case UPLOAD:
+            event = new UploadEvent();
+            break;
+        case COPY:
+            event = new CopyEvent();
+            break;
+        case CREATE_INTERMEDIATE_TABLES:
+            event = new CreateIntermediateTablesEvent();
+            break;
+        default:
+            event = new CommitEvent();
+            break;
+        }
+        if (!event.isEnabled()) {
+            return PhaseEvents.NOOP_SPAN;
+        }
+        event.table = table;
+        return new EventSpan(event);
+    }
+
+    @Override
+    public PhaseEvents.Span beginAttempt(String operation, int attempt)
+    {
+        AttemptEvent event = new AttemptEvent();
+        if (!event.isEnabled()) {
+            return PhaseEvents.NOOP_SPAN;
+        }
+        event.operation = operation;
+        event.attempt = attempt;
+        return new EventSpan(event);
+    }
+
+    private static class EventSpan
+            implements PhaseEvents.Span
+    {
+        private final BaseEvent event;
+
+        EventSpan(BaseEvent event)
+        {
+            this.event = event;
+            event.begin();
+        }
+
+        public PhaseEvents.Span setRows(long rows)
+        {
+            if (event instanceof PhaseEvent) {
+                ((PhaseEvent) event).rows = rows;
+            }
+            return this;
+        }
+
+        public PhaseEvents.Span setBytes(long bytes)
+        {
+            if (event instanceof PhaseEvent) {
+                ((PhaseEvent) event).bytes = bytes;
+            }
+            return this;
+        }
+
+        public PhaseEvents.Span setFailed()
+        {
+            event.failed = true;
+            return this;
+        }
+
+        public void close()
+        {
+            event.commit();
+        }
+    }
+
+    @Category({"Embulk", "JDBC Output"})
+    abstract static class BaseEvent
+            extends Event
+    {
+        @Label("Failed")
+        boolean failed;
+    }
+
+    abstract static class PhaseEvent
+            extends BaseEvent
+    {
+        @Label("Table")
+        String table;
+
+        @Label("Rows")
+        long rows;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("org.embulk.output.jdbc.Flush")
+    @Label("Flush")
+    @Description("Flushes a batch to the database")
+    static class FlushEvent
+            extends PhaseEvent
+    {
+    }
+
+    @Name("org.embulk.output.jdbc.Finish")
+    @Label("Finish")
+    @Description("Waits for batches loaded by a task")
+    static class FinishEvent
+            extends PhaseEvent
+    {
+    }
+
+    @Name("org.embulk.output.jdbc.Upload")
+    @Label("Upload")
+    @Description("Uploads a file to load to the storage")
+    static class UploadEvent
+            extends PhaseEvent
+    {
+    }
+
+    @Name("org.embulk.output.jdbc.Copy")
+    @Label("Copy")
+    @Description("Runs COPY to load a file")
+    static class CopyEvent
+            extends PhaseEvent
+    {
+    }
+
+    @Name("org.embulk.output.jdbc.CreateIntermediateTables")
+    @Label("Create Intermediate Tables")
+    @Description("Creates intermediate tables for tasks")
+    static class CreateIntermediateTablesEvent
+            extends PhaseEvent
+    {
+    }
+
+    @Name("org.embulk.output.jdbc.Commit")
+    @Label("Commit")
+    @Description("Collects or merges intermediate tables into the target table")
+    static class CommitEvent
+            extends PhaseEvent
+    {
+    }
+
+    @Name("org.embulk.output.jdbc.Attempt")
+    @Label("Attempt")
+    @Description("An attempt of an operation which is retried on failure")
+    static class AttemptEvent
+            extends BaseEvent
+    {
+        @Label("Operation")
+        String operation;
+
+        @Label("Attempt")
+        int attempt;
+    }
+}
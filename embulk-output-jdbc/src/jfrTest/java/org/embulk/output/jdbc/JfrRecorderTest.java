@@ -0,0 +1,83 @@
+package org.embulk.output.jdbc;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JfrRecorderTest
+{
+    @Test
+    public void testEvents() throws Exception
+    {
+        List<RecordedEvent> events = record(() -> {
+            try (PhaseEvents.Span span = PhaseEvents.begin(PhaseEvents.Phase.FLUSH, new TableIdentifier(null, "s", "t"))) {
+                span.setRows(10).setBytes(1024);
+            }
+            try (PhaseEvents.Span span = PhaseEvents.begin(PhaseEvents.Phase.COMMIT, "t")) {
+                span.setFailed();
+            }
+            try (PhaseEvents.Span span = PhaseEvents.beginAttempt("insert", 2)) {
+                span.setRows(1);
+            }
+        });
+
+        assertEquals(3, events.size());
+        RecordedEvent flush = find(events, "org.embulk.output.jdbc.Flush");
+        assertEquals("s.t", flush.getString("table"));
+        assertEquals(10L, flush.getLong("rows"));
+        assertEquals(1024L, flush.getLong("bytes"));
+        assertFalse(flush.getBoolean("failed"));
+
+        RecordedEvent commit = find(events, "org.embulk.output.jdbc.Commit");
+        assertEquals("t", commit.getString("table"));
+        assertTrue(commit.getBoolean("failed"));
+
+        RecordedEvent attempt = find(events, "org.embulk.output.jdbc.Attempt");
+        assertEquals("insert", attempt.getString("operation"));
+        assertEquals(2, attempt.getInt("attempt"));
+    }
+
+    private static List<RecordedEvent> record(Runnable runnable) throws Exception
+    {
+        File file = File.createTempFile("embulk-output-jdbc-", ".jfr");
+        try {
+            try (Recording recording = new Recording()) {
+                recording.enable("org.embulk.output.jdbc.Flush");
+                recording.enable("org.embulk.output.jdbc.Commit");
+                recording.enable("org.embulk.output.jdbc.Attempt");
+                recording.start();
+                runnable.run();
+                recording.stop();
+                recording.dump(file.toPath());
+            }
+            List<RecordedEvent> events = new ArrayList<>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+                if (event.getEventType().getName().startsWith("org.embulk.output.jdbc.")) {
+                    events.add(event);
+                }
+            }
+            return events;
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static RecordedEvent find(List<RecordedEvent> events, String name)
+    {
+        for (RecordedEvent event : events) {
+            if (event.getEventType().getName().equals(name)) {
+                return event;
+            }
+        }
+        throw new AssertionError("No event " + name);
+    }
+}
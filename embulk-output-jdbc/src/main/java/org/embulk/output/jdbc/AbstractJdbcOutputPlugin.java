@@ -2,15 +2,21 @@ package org.embulk.output.jdbc;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Locale;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 import java.io.File;
 import java.io.FileFilter;
@@ -56,6 +62,7 @@ import org.embulk.spi.PageReader;
 import org.embulk.output.jdbc.setter.ColumnSetter;
 import org.embulk.output.jdbc.setter.ColumnSetterFactory;
 import org.embulk.output.jdbc.setter.ColumnSetterVisitor;
+import org.embulk.output.jdbc.setter.MethodHandleRowWriter;
 import org.embulk.util.retryhelper.RetryExecutor;
 import org.embulk.util.retryhelper.RetryGiveupException;
 import org.embulk.util.retryhelper.Retryable;
@@ -99,6 +106,54 @@ public abstract class AbstractJdbcOutputPlugin
         // TODO set minimum number
         public int getBatchSize();
 
+        @Config("max_in_flight_batches")
+        @ConfigDefault("0")
+        public int getMaxInFlightBatches();
+
+        @Config("connections_per_task")
+        @ConfigDefault("1")
+        public int getConnectionsPerTask();
+
+        @Config("retry_buffer")
+        @ConfigDefault("\"values\"")
+        public RetryBuffer getRetryBuffer();
+
+        @Config("retry_buffer_spill_threshold")
+        @ConfigDefault("null")
+        public Optional<Long> getRetryBufferSpillThreshold();
+
+        @Config("batch_sizing")
+        @ConfigDefault("\"fixed\"")
+        public BatchSizing getBatchSizing();
+
+        @Config("max_batch_size")
+        @ConfigDefault("null")
+        public Optional<Long> getMaxBatchSize();
+
+        @Config("max_batch_latency")
+        @ConfigDefault("null")
+        public Optional<Integer> getMaxBatchLatency();
+
+        @Config("max_total_buffer_bytes")
+        @ConfigDefault("null")
+        public Optional<Long> getMaxTotalBufferBytes();
+
+        @Config("multi_row_values")
+        @ConfigDefault("null")
+        public Optional<Integer> getMultiRowValues();
+
+        @Config("reject_file_path_prefix")
+        @ConfigDefault("null")
+        public Optional<String> getRejectFilePathPrefix();
+
+        @Config("commit_parallelism")
+        @ConfigDefault("1")
+        public int getCommitParallelism();
+
+        @Config("ddl_parallelism")
+        @ConfigDefault("1")
+        public int getDdlParallelism();
+
         @Config("merge_keys")
         @ConfigDefault("null")
         public Optional<List<String>> getMergeKeys();
@@ -164,6 +219,10 @@ public abstract class AbstractJdbcOutputPlugin
 
         public Optional<List<TableIdentifier>> getIntermediateTables();
         public void setIntermediateTables(Optional<List<TableIdentifier>> names);
+
+        // identifies the LoadProgress of the transaction
+        public String getTransactionId();
+        public void setTransactionId(String id);
     }
 
     public static enum LengthSemantics
@@ -192,6 +251,8 @@ public abstract class AbstractJdbcOutputPlugin
         private LengthSemantics tableNameLengthSemantics = LengthSemantics.BYTES;
         private Set<Mode> supportedModes = Collections.unmodifiableSet(new HashSet<Mode>(Arrays.asList(Mode.values())));
         private boolean ignoreMergeKeys = false;
+        // true if rows can be inserted into the target table by concurrent transactions without blocking each other
+        private boolean parallelCommit = false;
 
         public Features()
         { }
@@ -246,6 +307,19 @@ public abstract class AbstractJdbcOutputPlugin
             this.ignoreMergeKeys = value;
             return this;
         }
+
+        @JsonProperty
+        public boolean getParallelCommit()
+        {
+            return parallelCommit;
+        }
+
+        @JsonProperty
+        public Features setParallelCommit(boolean value)
+        {
+            this.parallelCommit = value;
+            return this;
+        }
     }
 
     protected void addDriverJarToClasspath(String glob)
@@ -461,9 +535,9 @@ public abstract class AbstractJdbcOutputPlugin
             throw new ConfigException(String.format("This output type doesn't support '%s'. Supported modes are: %s", task.getMode(), features.getSupportedModes()));
         }
 
+        task.setTransactionId(LoadProgress.newTransactionId());
         task = begin(task, schema, taskCount);
-        control.run(task.dump());
-        return commit(task, schema, taskCount);
+        return run(task, schema, taskCount, control);
     }
 
     public ConfigDiff resume(TaskSource taskSource,
@@ -476,9 +550,29 @@ public abstract class AbstractJdbcOutputPlugin
             throw new UnsupportedOperationException("inplace mode is not resumable. You need to delete partially-loaded records from the database and restart the entire transaction.");
         }
 
+        task.setTransactionId(LoadProgress.newTransactionId());
         task = begin(task, schema, taskCount);
-        control.run(task.dump());
-        return commit(task, schema, taskCount);
+        return run(task, schema, taskCount, control);
+    }
+
+    private ConfigDiff run(final PluginTask task,
+            Schema schema, final int taskCount,
+            OutputPlugin.Control control)
+    {
+        // tasks running in this JVM add their metrics to the progress
+        LoadProgress progress = LoadProgress.register(task.getTransactionId(), task.getActualTable().getTableName(), taskCount);
+        try {
+            List<TaskReport> taskReports = control.run(task.dump());
+            progress.setStatus(LoadProgress.Status.COMMITTING);
+            ConfigDiff configDiff = commit(task, schema, taskCount, taskReports);
+            progress.setStatus(LoadProgress.Status.COMMITTED);
+            return configDiff;
+        } catch (RuntimeException | Error ex) {
+            progress.setStatus(LoadProgress.Status.FAILED);
+            throw ex;
+        } finally {
+            progress.unregister();
+        }
     }
 
     private PluginTask begin(final PluginTask task,
@@ -504,7 +598,7 @@ public abstract class AbstractJdbcOutputPlugin
     }
 
     private ConfigDiff commit(final PluginTask task,
-            Schema schema, final int taskCount)
+            Schema schema, final int taskCount, List<TaskReport> taskReports)
     {
         if (!task.getMode().isDirectModify() || task.getAfterLoad().isPresent()) {  // no intermediate data if isDirectModify == true
             try {
@@ -512,8 +606,13 @@ public abstract class AbstractJdbcOutputPlugin
                     public void run() throws SQLException
                     {
                         JdbcOutputConnection con = newConnection(task, false, false);
-                        try {
-                            doCommit(con, task, taskCount);
+                        try (PhaseEvents.Span span = PhaseEvents.begin(PhaseEvents.Phase.COMMIT, task.getActualTable())) {
+                            try {
+                                doCommit(con, task, taskCount);
+                            } catch (SQLException | RuntimeException ex) {
+                                span.setFailed();
+                                throw ex;
+                            }
                         } finally {
                             con.close();
                         }
@@ -523,7 +622,12 @@ public abstract class AbstractJdbcOutputPlugin
                 throw new RuntimeException(ex);
             }
         }
-        return CONFIG_MAPPER_FACTORY.newConfigDiff();
+
+        Map<String, Long> metrics = LoadMetrics.aggregate(taskReports);
+        logger.info(String.format("Loaded %,d rows (%,d bytes) by %,d tasks in %,d flushes with %,d retries",
+                    metrics.get(LoadMetrics.ROWS), metrics.get(LoadMetrics.BYTES), metrics.get(LoadMetrics.TASKS),
+                    metrics.get(LoadMetrics.FLUSHES), metrics.get(LoadMetrics.RETRIES)));
+        return CONFIG_MAPPER_FACTORY.newConfigDiff().set("load_metrics", metrics);
     }
 
     public void cleanup(TaskSource taskSource,
@@ -565,6 +669,43 @@ public abstract class AbstractJdbcOutputPlugin
             throw new ConfigException(String.format("%s mode does not support 'before_load' option.", mode));
         }
 
+        if (task.getConnectionsPerTask() < 1) {
+            throw new ConfigException("'connections_per_task' must be greater than 0.");
+        }
+
+        if (task.getRetryBufferSpillThreshold().isPresent() && task.getRetryBufferSpillThreshold().get() <= 0) {
+            throw new ConfigException("'retry_buffer_spill_threshold' must be greater than 0.");
+        }
+
+        if (task.getMaxTotalBufferBytes().isPresent() && task.getMaxTotalBufferBytes().get() <= 0) {
+            throw new ConfigException("'max_total_buffer_bytes' must be greater than 0.");
+        }
+
+        if (task.getMaxBatchSize().isPresent() && task.getMaxBatchSize().get() < task.getBatchSize()) {
+            throw new ConfigException("'max_batch_size' must be greater than or equal to 'batch_size'.");
+        }
+
+        if (task.getMaxBatchLatency().isPresent() && task.getMaxBatchLatency().get() <= 0) {
+            throw new ConfigException("'max_batch_latency' must be greater than 0.");
+        }
+
+        if (task.getCommitParallelism() < 1) {
+            throw new ConfigException("'commit_parallelism' must be greater than 0.");
+        }
+        if (task.getCommitParallelism() > 1 && mode != Mode.TRUNCATE_INSERT) {
+            // transactions are committed one by one, and only truncate_insert removes rows of committed ones
+            // by running the load again
+            throw new ConfigException("'commit_parallelism' greater than 1 is supported only in truncate_insert mode.");
+        }
+
+        if (task.getDdlParallelism() < 1) {
+            throw new ConfigException("'ddl_parallelism' must be greater than 0.");
+        }
+
+        if (task.getMultiRowValues().isPresent() && task.getMultiRowValues().get() <= 0) {
+            throw new ConfigException("'multi_row_values' must be greater than 0.");
+        }
+
         String actualTable;
         if (con.tableExists(task.getTable())) {
             actualTable = task.getTable();
@@ -684,28 +825,42 @@ public abstract class AbstractJdbcOutputPlugin
         return new TableIdentifier(null, con.getSchemaName(), tableName);
     }
 
-    private List<TableIdentifier> createIntermediateTables(final JdbcOutputConnection con,
+    @VisibleForTesting
+    List<TableIdentifier> createIntermediateTables(final JdbcOutputConnection con,
             final PluginTask task, final int taskCount, final JdbcSchema newTableSchema) throws SQLException
     {
-        try {
+        // connections are kept through retries so that dropping tables of a failed attempt doesn't open them again
+        try (PhaseEvents.Span span = PhaseEvents.begin(PhaseEvents.Phase.CREATE_INTERMEDIATE_TABLES, task.getActualTable());
+                final DdlConnections connections = new DdlConnections(con, task)) {
             return buildRetryExecutor(task).run(new Retryable<List<TableIdentifier>>() {
-                private TableIdentifier table;
-                private ArrayList<TableIdentifier> intermTables;
+                private volatile TableIdentifier table;
+                // tables created by the current attempt. tables are added by multiple threads if ddl_parallelism > 1
+                private List<TableIdentifier> intermTables;
 
                 @Override
                 public List<TableIdentifier> call() throws Exception
                 {
-                    intermTables = new ArrayList<>();
+                    intermTables = Collections.synchronizedList(new ArrayList<>());
                     if (task.getMode().tempTablePerTask()) {
                         String tableNameFormat = generateIntermediateTableNameFormat(task.getActualTable().getTableName(), con, taskCount,
                                 task.getFeatures().getMaxTableNameLength(), task.getFeatures().getTableNameLengthSemantics());
+                        ArrayList<TableIdentifier> tables = new ArrayList<>();
                         for (int taskIndex = 0; taskIndex < taskCount; taskIndex++) {
                             String tableName = String.format(tableNameFormat, taskIndex);
-                            table = buildIntermediateTableId(con, task, tableName);
-                            // if table already exists, SQLException will be thrown
-                            con.createTable(table, newTableSchema, task.getCreateTableConstraint(), task.getCreateTableOption());
-                            intermTables.add(table);
+                            tables.add(buildIntermediateTableId(con, task, tableName));
                         }
+                        forEachTable(connections, tables, (c, t) -> {
+                            try {
+                                // if table already exists, SQLException will be thrown
+                                c.createTable(t, newTableSchema, task.getCreateTableConstraint(), task.getCreateTableOption());
+                            } catch (SQLException ex) {
+                                table = t;
+                                throw ex;
+                            }
+                            intermTables.add(t);
+                        });
+                        // the order of tables is the order of task indexes
+                        return Collections.unmodifiableList(tables);
                     } else {
                         String tableName = generateIntermediateTableNamePrefix(task.getActualTable().getTableName(), con, 0,
                                 task.getFeatures().getMaxTableNameLength(), task.getFeatures().getTableNameLengthSemantics());
@@ -754,9 +909,11 @@ public abstract class AbstractJdbcOutputPlugin
 
                 private void dropTables() throws SQLException
                 {
-                    for (TableIdentifier table : intermTables) {
-                        con.dropTableIfExists(table);
+                    List<TableIdentifier> tables;
+                    synchronized (intermTables) {
+                        tables = new ArrayList<>(intermTables);
                     }
+                    forEachTable(connections, tables, (c, t) -> c.dropTableIfExists(t));
                 }
             });
         } catch (RetryGiveupException e) {
@@ -896,7 +1053,11 @@ public abstract class AbstractJdbcOutputPlugin
                 con.createTableIfNotExists(task.getActualTable(), task.getNewTableSchema().get(),
                         task.getCreateTableConstraint(), task.getCreateTableOption());
             }
-            con.collectInsert(task.getIntermediateTables().get(), schema, task.getActualTable(), true, task.getBeforeLoad(), task.getAfterLoad());
+            if (canCollectInsertInParallel(con, task)) {
+                collectInsertInParallel(task, schema);
+            } else {
+                con.collectInsert(task.getIntermediateTables().get(), schema, task.getActualTable(), true, task.getBeforeLoad(), task.getAfterLoad());
+            }
             break;
 
         case UPDATE_INSERT:
@@ -926,14 +1087,261 @@ public abstract class AbstractJdbcOutputPlugin
         }
     }
 
+    private boolean canCollectInsertInParallel(JdbcOutputConnection con, PluginTask task) throws SQLException
+    {
+        if (task.getCommitParallelism() <= 1 || task.getIntermediateTables().get().size() <= 1) {
+            return false;
+        }
+        if (!task.getFeatures().getParallelCommit()) {
+            logger.warn("commit_parallelism is ignored because this database doesn't support it");
+            return false;
+        }
+        if (task.getBeforeLoad().isPresent() || task.getAfterLoad().isPresent()) {
+            // they must run in the same transaction with the INSERT
+            logger.info("Collecting intermediate tables by a statement because before_load or after_load is set");
+            return false;
+        }
+        try {
+            if (con.hasUniqueIndex(task.getActualTable())) {
+                // a transaction inserting a key deleted or inserted by another one would wait for it, which waits for
+                // all of them to commit
+                logger.info("Collecting intermediate tables by a statement because the target table has a unique index");
+                return false;
+            }
+        } catch (SQLException ex) {
+            logger.warn("Collecting intermediate tables by a statement because indexes of the target table can't be checked", ex);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Truncates the target table and inserts rows of groups of intermediate tables into it by concurrent transactions.
+     * The first transaction also truncates the table. The transactions are committed one by one after all of them
+     * succeed, and if any of them fails before that, all of them are rolled back. If committing one of them fails,
+     * the target table is left with rows of the committed ones, which are replaced by running the load again
+     * because it truncates the table first. This isn't atomic, so it's used only in truncate_insert mode.
+     */
+    private void collectInsertInParallel(final PluginTask task, final JdbcSchema schema) throws SQLException
+    {
+        final List<TableIdentifier> intermTables = task.getIntermediateTables().get();
+        final int parallelism = Math.min(task.getCommitParallelism(), intermTables.size());
+        logger.info(String.format("Collecting %,d intermediate tables by %d transactions", intermTables.size(), parallelism));
+
+        final ArrayList<JdbcOutputConnection> connections = new ArrayList<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "embulk-output-jdbc-commit");
+            thread.setDaemon(true);
+            return thread;
+        });
+        int committed = 0;
+        try {
+            final ArrayList<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < parallelism; i++) {
+                final JdbcOutputConnection con = newConnection(task, false, false);
+                connections.add(con);
+                // contiguous groups of intermediate tables
+                final List<TableIdentifier> group = intermTables.subList(
+                        intermTables.size() * i / parallelism, intermTables.size() * (i + 1) / parallelism);
+                final boolean truncate = i == 0;
+                futures.add(executor.submit(() -> {
+                    con.collectInsertWithoutCommit(group, schema, task.getActualTable(), truncate);
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+
+            for (JdbcOutputConnection con : connections) {
+                con.commit();
+                committed++;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (ExecutionException | SQLException ex) {
+            SQLException cause = ex instanceof SQLException ? (SQLException) ex : toSQLException(ex.getCause());
+            if (committed > 0) {
+                // a retry truncates the table again, and so does the next run of the load
+                logger.warn(String.format("Failed to commit %d of %d transactions inserting rows of intermediate tables. "
+                            + "The target table has rows of the other transactions until the load succeeds.",
+                            connections.size() - committed, connections.size()));
+            }
+            throw cause;
+        } finally {
+            executor.shutdownNow();
+            for (JdbcOutputConnection con : connections.subList(committed, connections.size())) {
+                try {
+                    con.rollback();
+                } catch (SQLException ex) {
+                    logger.warn("Failed to roll back a transaction inserting rows of intermediate tables", ex);
+                }
+            }
+            for (JdbcOutputConnection con : connections) {
+                try {
+                    con.close();
+                } catch (SQLException ex) {
+                    logger.warn("Failed to close a connection", ex);
+                }
+            }
+        }
+    }
+
+    private static SQLException toSQLException(Throwable cause)
+    {
+        if (cause instanceof SQLException) {
+            return (SQLException) cause;
+        } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        } else {
+            throw new RuntimeException(cause);
+        }
+    }
+
     protected void doCleanup(JdbcOutputConnection con, PluginTask task, int taskCount,
             List<TaskReport> successTaskReports)
         throws SQLException
     {
         if (task.getIntermediateTables().isPresent()) {
-            for (TableIdentifier intermTable : task.getIntermediateTables().get()) {
-                con.dropTableIfExists(intermTable);
+            forEachTable(con, task, task.getIntermediateTables().get(), (c, t) -> c.dropTableIfExists(t));
+        }
+    }
+
+    protected interface TableOperation
+    {
+        void run(JdbcOutputConnection con, TableIdentifier table) throws SQLException;
+    }
+
+    /**
+     * Connections which run DDL in parallel. The first one is the connection of the caller, and the others are
+     * opened on the first use and kept until close, so that DDL repeated on them doesn't open connections again.
+     */
+    protected class DdlConnections
+            implements AutoCloseable
+    {
+        private final JdbcOutputConnection con;
+        private final PluginTask task;
+        private final List<JdbcOutputConnection> opened = new ArrayList<>();
+
+        public DdlConnections(JdbcOutputConnection con, PluginTask task)
+        {
+            this.con = con;
+            this.task = task;
+        }
+
+        public int getParallelism()
+        {
+            return task.getDdlParallelism();
+        }
+
+        public JdbcOutputConnection get(int index) throws SQLException
+        {
+            if (index == 0) {
+                return con;
             }
+            while (opened.size() < index) {
+                opened.add(newConnection(task, true, true));
+            }
+            return opened.get(index - 1);
+        }
+
+        @Override
+        public void close() throws SQLException
+        {
+            SQLException exception = null;
+            for (JdbcOutputConnection c : opened) {
+                try {
+                    c.close();
+                } catch (SQLException ex) {
+                    if (exception == null) {
+                        exception = ex;
+                    }
+                }
+            }
+            opened.clear();
+            if (exception != null) {
+                throw exception;
+            }
+        }
+    }
+
+    /**
+     * Runs DDL for each table. If ddl_parallelism > 1, tables are divided among con and ddl_parallelism - 1 new
+     * connections which run DDL in parallel. Otherwise, or if there is only one table, DDL runs on con.
+     * The first exception is thrown after the other connections stop, and tables not processed yet are skipped.
+     */
+    protected void forEachTable(JdbcOutputConnection con, final PluginTask task, List<TableIdentifier> tables,
+            final TableOperation op) throws SQLException
+    {
+        try (DdlConnections connections = new DdlConnections(con, task)) {
+            forEachTable(connections, tables, op);
+        }
+    }
+
+    protected void forEachTable(DdlConnections connections, List<TableIdentifier> tables,
+            final TableOperation op) throws SQLException
+    {
+        final int parallelism = Math.min(connections.getParallelism(), tables.size());
+        if (parallelism <= 1) {
+            JdbcOutputConnection con = connections.get(0);
+            for (TableIdentifier table : tables) {
+                op.run(con, table);
+            }
+            return;
+        }
+
+        // opens all connections before running DDL on any of them. DdlConnections is not thread-safe
+        connections.get(parallelism - 1);
+        final ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "embulk-output-jdbc-ddl");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        try {
+            final ArrayList<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < parallelism; i++) {
+                final List<TableIdentifier> group = tables.subList(
+                        tables.size() * i / parallelism, tables.size() * (i + 1) / parallelism);
+                final JdbcOutputConnection c = connections.get(i);
+                futures.add(executor.submit(() -> {
+                    try {
+                        for (TableIdentifier table : group) {
+                            if (failed.get()) {
+                                break;
+                            }
+                            op.run(c, table);
+                        }
+                    } catch (SQLException | RuntimeException ex) {
+                        failed.set(true);
+                        throw ex;
+                    }
+                    return null;
+                }));
+            }
+
+            // waits for all connections so that no DDL runs after this method returns
+            ExecutionException exception = null;
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException ex) {
+                    if (exception == null) {
+                        exception = ex;
+                    }
+                }
+            }
+            if (exception != null) {
+                throw toSQLException(exception.getCause());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } finally {
+            executor.shutdownNow();
         }
     }
 
@@ -1064,15 +1472,18 @@ public abstract class AbstractJdbcOutputPlugin
         final PluginTask task = TASK_MAPPER.map(taskSource, this.getTaskClass());
         final Mode mode = task.getMode();
 
-        // instantiate BatchInsert without table name
-        BatchInsert batch = null;
+        // instantiate BatchInserts without table name
+        final ArrayList<BatchInsert> batches = new ArrayList<>();
         try {
             Optional<MergeConfig> config = Optional.empty();
             if (task.getMode() == Mode.MERGE_DIRECT) {
                 config = Optional.of(new MergeConfig(task.getMergeKeys().get(), task.getMergeRule()));
             }
-            batch = newBatchInsert(task, config);
+            for (int i = 0; i < task.getConnectionsPerTask(); i++) {
+                batches.add(newBatchInsert(task, config));
+            }
         } catch (IOException | SQLException ex) {
+            closeBatchInserts(batches);
             throw new RuntimeException(ex);
         }
 
@@ -1080,10 +1491,13 @@ public abstract class AbstractJdbcOutputPlugin
             // configure PageReader -> BatchInsert
             PageReader reader = new PageReader(schema);
 
-            List<ColumnSetter> columnSetters = newColumnSetters(
-                    newColumnSetterFactory(batch, task.getDefaultTimeZone()),
-                    task.getTargetTableSchema(), schema,
-                    task.getColumnOptions());
+            final ArrayList<List<ColumnSetter>> columnSetters = new ArrayList<>();
+            for (BatchInsert batch : batches) {
+                columnSetters.add(newColumnSetters(
+                        newColumnSetterFactory(batch, task.getDefaultTimeZone()),
+                        task.getTargetTableSchema(), schema,
+                        task.getColumnOptions()));
+            }
             JdbcSchema insertIntoSchema = filterSkipColumns(task.getTargetTableSchema());
             if (insertIntoSchema.getCount() == 0) {
                 throw new SQLException("No column to insert.");
@@ -1098,24 +1512,45 @@ public abstract class AbstractJdbcOutputPlugin
             } else {
                 destTable = task.getIntermediateTables().get().get(0);
             }
-            batch.prepare(destTable, insertIntoSchema);
+            for (BatchInsert batch : batches) {
+                batch.prepare(destTable, insertIntoSchema);
+            }
 
-            PluginPageOutput output = new PluginPageOutput(reader, batch, columnSetters, task.getBatchSize(), task);
-            batch = null;
+            RejectFile rejectFile = null;
+            if (task.getRejectFilePathPrefix().isPresent()) {
+                rejectFile = new RejectFile(String.format("%s%03d.jsonl", task.getRejectFilePathPrefix().get(), taskIndex), schema);
+            }
+
+            PluginPageOutput output = new PluginPageOutput(reader, batches, columnSetters, task.getBatchSize(), task, destTable, rejectFile);
+            batches.clear();
+            LoadProgress.get(task.getTransactionId()).ifPresent(progress -> progress.addTask(taskIndex, output.getMetrics()));
             return output;
 
         } catch (SQLException ex) {
             throw new RuntimeException(ex);
 
         } finally {
-            if (batch != null) {
-                try {
-                    batch.close();
-                } catch (IOException | SQLException ex) {
-                    throw new RuntimeException(ex);
+            closeBatchInserts(batches);
+        }
+    }
+
+    private static void closeBatchInserts(List<BatchInsert> batches)
+    {
+        RuntimeException exception = null;
+        for (BatchInsert batch : batches) {
+            try {
+                batch.close();
+            } catch (IOException | SQLException ex) {
+                if (exception == null) {
+                    exception = new RuntimeException(ex);
+                } else {
+                    exception.addSuppressed(ex);
                 }
             }
         }
+        if (exception != null) {
+            throw exception;
+        }
     }
 
     public static File findPluginRoot(Class<?> cls)
@@ -1141,107 +1576,240 @@ public abstract class AbstractJdbcOutputPlugin
         }
     }
 
+    // time for which a task waits for other tasks to release max_total_buffer_bytes
+    private static final long BUDGET_WAIT_MILLIS = 1000;
+
     public class PluginPageOutput
             implements TransactionalPageOutput
     {
         protected final List<Column> columns;
-        protected final List<ColumnSetter> columnSetters;
-        protected final List<ColumnSetterVisitor> columnVisitors;
-        private final PageReaderRecord pageReader;
-        private final BatchInsert batch;
+        private final List<BatchWriter> writers;
         private final int batchSize;
-        private final int forceBatchFlushSize;
         private final PluginTask task;
+        private final BufferBudget budget;
+        private int nextWriter;
+        // flushes batches whose oldest row exceeds max_batch_latency even while no page is added
+        private final ScheduledExecutorService latencyTimer;
+        private volatile Exception latencyFlushFailure;
+        // set by finish or close so that a timer run waiting for the lock doesn't flush batches after them
+        private boolean latencyTimerStopped;
+        // rows rejected by the database are written to the file, or null if a failed batch fails the task
+        private final RejectFile rejectFile;
+        private final LoadMetrics metrics = new LoadMetrics();
+        // table to which rows are loaded, or null if unknown. used for events
+        private final TableIdentifier destTable;
 
         public PluginPageOutput(PageReader pageReader,
                 BatchInsert batch, List<ColumnSetter> columnSetters,
                 int batchSize, PluginTask task)
         {
-            this.pageReader = new PageReaderRecord(pageReader);
-            this.batch = batch;
-            this.columns = pageReader.getSchema().getColumns();
-            this.columnSetters = columnSetters;
+            this(pageReader, Collections.singletonList(batch), Collections.singletonList(columnSetters),
+                    batchSize, task);
+        }
+
+        /**
+         * Rows are written to the BatchInserts in round-robin.
+         * columnSetters.get(i) must be created for batches.get(i).
+         */
+        public PluginPageOutput(PageReader pageReader,
+                List<BatchInsert> batches, List<List<ColumnSetter>> columnSetters,
+                int batchSize, PluginTask task)
+        {
+            this(pageReader, batches, columnSetters, batchSize, task, null, null);
+        }
 
-            this.columnVisitors = Collections.unmodifiableList((ArrayList<ColumnSetterVisitor>) columnSetters.stream().map(setter -> {
-                                return new ColumnSetterVisitor(PluginPageOutput.this.pageReader, setter);
-                    }).collect(Collectors.toCollection(ArrayList::new)));
+        /**
+         * If rejectFile is not null, a batch failed by values of rows is bisected to find the rows,
+         * and the other rows are loaded.
+         */
+        public PluginPageOutput(PageReader pageReader,
+                List<BatchInsert> batches, List<List<ColumnSetter>> columnSetters,
+                int batchSize, PluginTask task, TableIdentifier destTable, RejectFile rejectFile)
+        {
+            this.columns = pageReader.getSchema().getColumns();
+            this.destTable = destTable;
             this.batchSize = batchSize;
             this.task = task;
-            this.forceBatchFlushSize = batchSize * 2;
+            // read records need not be saved if rows can't be added again for retry
+            final boolean replay = batches.stream().allMatch(BatchInsert::supportsReplay);
+            if (rejectFile != null && !replay) {
+                logger.warn("reject_file_path_prefix is ignored because rows can't be loaded again to isolate errors");
+                this.rejectFile = null;
+            } else {
+                this.rejectFile = rejectFile;
+            }
+            if (task.getMaxTotalBufferBytes().isPresent()) {
+                this.budget = BufferBudget.open(task.getTransactionId(), task.getMaxTotalBufferBytes().get());
+            } else {
+                this.budget = null;
+            }
+            // pages are shared by all writers only if they are retained
+            final RetainedPages retainedPages = replay && task.getRetryBuffer() == RetryBuffer.PAGES ? new RetainedPages(pageReader.getSchema()) : null;
+            final ArrayList<BatchWriter> writers = new ArrayList<>();
+            for (int i = 0; i < batches.size(); i++) {
+                // all writers share the PageReader. each writer saves only records written by itself for retry.
+                final ReplayableRecord replayableRecord;
+                if (!replay) {
+                    replayableRecord = null;
+                } else if (retainedPages != null) {
+                    replayableRecord = new PageRetainingRecord(retainedPages);
+                } else {
+                    replayableRecord = new PageReaderRecord(pageReader, task.getRetryBufferSpillThreshold().orElse(0L));
+                }
+                final PageRecord record = replay ? replayableRecord : new UnsavedPageReaderRecord(pageReader);
+                writers.add(new BatchWriter(record, replayableRecord, batches.get(i), columnSetters.get(i)));
+            }
+            this.writers = Collections.unmodifiableList(writers);
+            this.nextWriter = 0;
+            if (task.getMaxBatchLatency().isPresent()) {
+                final long maxBatchLatency = task.getMaxBatchLatency().get();
+                this.latencyTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "embulk-output-jdbc-latency-timer");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                long interval = Math.max(maxBatchLatency / 4, 1);
+                this.latencyTimer.scheduleWithFixedDelay(() -> flushLateBatches(maxBatchLatency), interval, interval, TimeUnit.MILLISECONDS);
+            } else {
+                this.latencyTimer = null;
+            }
         }
 
+        // PluginPageOutput is locked while rows are added or batches are flushed, because the timer flushes batches.
         @Override
-        public void add(Page page)
+        public synchronized void add(Page page)
         {
+            if (latencyFlushFailure != null) {
+                throw new RuntimeException(latencyFlushFailure);
+            }
+            final long startTime = System.nanoTime();
+            final long waitNanos = metrics.getWaitNanos();
+            long rows = 0;
             try {
-                pageReader.setPage(page);
-                while (pageReader.nextRecord()) {
-                    if (batch.getBatchWeight() > forceBatchFlushSize) {
-                        flush();
+                writers.get(0).pageReader.setPage(page);
+                while (true) {
+                    BatchWriter writer = writers.get(nextWriter);
+                    if (!writer.pageReader.nextRecord()) {
+                        break;
                     }
-                    handleColumnsSetters();
-                    batch.add();
+                    // at most twice max_batch_size, or twice batch_size by default, is buffered in a page
+                    if (writer.batch.getBatchWeight() > writer.getBatchSize() * 2) {
+                        writer.flush();
+                    }
+                    writer.handleColumnsSetters();
+                    writer.batch.add();
+                    writer.batchRows++;
+                    rows++;
+                    if (writer.oldestRowTime < 0) {
+                        writer.oldestRowTime = System.nanoTime();
+                    }
+                    if (budget != null && !writer.reserveBudget()) {
+                        // the budget is shared by all tasks of the transaction in the JVM
+                        writer.waitForBudget();
+                    }
+                    nextWriter = (nextWriter + 1) % writers.size();
                 }
-                if (batch.getBatchWeight() > batchSize) {
-                    flush();
+                for (BatchWriter writer : writers) {
+                    if (writer.batch.getBatchWeight() > writer.getBatchSize()) {
+                        writer.flush(true);
+                    }
                 }
             } catch (IOException | SQLException | InterruptedException ex) {
                 throw new RuntimeException(ex);
+            } finally {
+                // time spent by flushes in this method is recorded as wait time
+                metrics.addRows(rows);
+                metrics.addConvertTime(System.nanoTime() - startTime - (metrics.getWaitNanos() - waitNanos));
+                updateGauges();
             }
         }
 
-        private void flush() throws SQLException, InterruptedException
+        private void updateGauges()
         {
-            withRetry(task, new IdempotentSqlRunnable() {
-                private boolean first = true;
-
-                @Override
-                public void run() throws IOException, SQLException {
-                    try {
-                        if (!first) {
-                            retryColumnsSetters();
-                        }
-
-                        batch.flush();
+            long batchWeight = 0;
+            long inFlightRows = 0;
+            for (BatchWriter writer : writers) {
+                batchWeight += writer.batch.getBatchWeight();
+                inFlightRows += writer.batch.getInFlightRows();
+            }
+            metrics.setBatchWeight(batchWeight);
+            metrics.setInFlightRows(inFlightRows);
+        }
 
-                    } catch (IOException | SQLException ex) {
-                        if (!first && !isRetryableException(ex)) {
-                            logger.error("Retry failed : ", ex);
-                        }
-                        throw ex;
-                    } finally {
-                        first = false;
+        private synchronized void flushLateBatches(long maxBatchLatency)
+        {
+            if (latencyTimerStopped || latencyFlushFailure != null) {
+                return;
+            }
+            try {
+                final long now = System.nanoTime();
+                for (BatchWriter writer : writers) {
+                    if (writer.oldestRowTime >= 0 && now - writer.oldestRowTime >= TimeUnit.MILLISECONDS.toNanos(maxBatchLatency)) {
+                        logger.debug("Flushing a batch because its oldest row exceeds max_batch_latency");
+                        writer.flush();
                     }
                 }
-            });
+            } catch (Exception ex) {
+                // thrown by the next add or finish
+                latencyFlushFailure = ex;
+            }
+            updateGauges();
+        }
 
-            pageReader.clearReadRecords();
+        // called with the lock held. a timer run in progress holds the lock, so it has ended, and later runs do nothing
+        private void stopLatencyTimer()
+        {
+            latencyTimerStopped = true;
+            if (latencyTimer != null) {
+                latencyTimer.shutdownNow();
+            }
         }
 
         @Override
-        public void finish()
+        public synchronized void finish()
         {
+            stopLatencyTimer();
+            if (latencyFlushFailure != null) {
+                throw new RuntimeException(latencyFlushFailure);
+            }
             try {
-                flush();
-
-                withRetry(task, new IdempotentSqlRunnable() {
-                    @Override
-                    public void run() throws IOException, SQLException {
-                        batch.finish();
-                    }
-                });
+                for (BatchWriter writer : writers) {
+                    writer.flush();
+                }
+                for (BatchWriter writer : writers) {
+                    writer.finish();
+                }
             } catch (InterruptedException | SQLException ex) {
                 throw new RuntimeException(ex);
+            } finally {
+                updateGauges();
+            }
+            if (rejectFile != null && rejectFile.getRejectedRows() > 0) {
+                logger.warn(String.format("%,d rows were rejected and written to %s", rejectFile.getRejectedRows(), rejectFile.getPath()));
+                metrics.setRejectedRows(rejectFile.getRejectedRows());
             }
         }
 
         @Override
-        public void close()
+        public synchronized void close()
         {
-            try {
-                batch.close();
-            } catch (IOException | SQLException ex) {
-                throw new RuntimeException(ex);
+            stopLatencyTimer();
+            final ArrayList<BatchInsert> batches = new ArrayList<>();
+            for (BatchWriter writer : writers) {
+                writer.pageReader.close();
+                writer.releaseBudget(0);
+                batches.add(writer.batch);
+            }
+            if (budget != null) {
+                budget.close();
+            }
+            closeBatchInserts(batches);
+            if (rejectFile != null) {
+                try {
+                    rejectFile.close();
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
             }
         }
 
@@ -1253,36 +1821,419 @@ public abstract class AbstractJdbcOutputPlugin
         @Override
         public TaskReport commit()
         {
-            return CONFIG_MAPPER_FACTORY.newTaskReport();
+            TaskReport report = CONFIG_MAPPER_FACTORY.newTaskReport();
+            metrics.writeTo(report);
+            return report;
         }
 
-        protected void handleColumnsSetters()
+        public LoadMetrics getMetrics()
         {
-            int size = columnVisitors.size();
-            for (int i=0; i < size; i++) {
-                columns.get(i).visit(columnVisitors.get(i));
-            }
+            return metrics;
         }
 
-        protected void retryColumnsSetters() throws IOException, SQLException
+        private class BatchWriter
         {
-            int size = columnVisitors.size();
-            int[] updateCounts = batch.getLastUpdateCounts();
-            int index = 0;
-            for (Iterator<? extends Record> it = pageReader.getReadRecords().iterator(); it.hasNext();) {
-                Record record = it.next();
-                // retry failed records
-                if (index >= updateCounts.length || updateCounts[index] == Statement.EXECUTE_FAILED) {
-                    for (int i = 0; i < size; i++) {
-                        ColumnSetterVisitor columnVisitor = new ColumnSetterVisitor(record, columnSetters.get(i));
-                        columns.get(i).visit(columnVisitor);
+            private final PageRecord pageReader;
+            // the same as pageReader, or null if read records are not saved because the batch doesn't support replay
+            private final ReplayableRecord readRecords;
+            private final BatchInsert batch;
+            private final List<ColumnSetter> columnSetters;
+            private final List<ColumnSetterVisitor> columnVisitors;
+            // null if it can't be built. columnVisitors are used instead
+            private final MethodHandleRowWriter rowWriter;
+            // bound to readRecords.getReplayRecord(), or null if the batch doesn't support replay
+            private final List<ColumnSetterVisitor> replayVisitors;
+            private final MethodHandleRowWriter replayRowWriter;
+            private long reservedBytes;
+            // true if rows are added beyond the budget until the batch reaches the minimum size
+            private boolean exceedingBudget;
+            private final AdaptiveBatchSize adaptiveBatchSize;
+            private long lastFlushTime;
+            // System.nanoTime() when the first row of the batch was added, or -1 if the batch is empty
+            private long oldestRowTime = -1;
+            // rows added since the last flush
+            private long batchRows;
+
+            BatchWriter(PageRecord pageReader, ReplayableRecord readRecords, BatchInsert batch, List<ColumnSetter> columnSetters)
+            {
+                this.pageReader = pageReader;
+                this.readRecords = readRecords;
+                this.batch = batch;
+                this.columnSetters = columnSetters;
+                if (task.getBatchSizing() == BatchSizing.AUTO) {
+                    this.adaptiveBatchSize = new AdaptiveBatchSize(batchSize, getMinimumBatchSize(), getMaximumBatchSize());
+                } else {
+                    this.adaptiveBatchSize = null;
+                }
+                this.lastFlushTime = System.nanoTime();
+                this.columnVisitors = Collections.unmodifiableList((ArrayList<ColumnSetterVisitor>) columnSetters.stream().map(setter -> {
+                                    return new ColumnSetterVisitor(pageReader, setter);
+                        }).collect(Collectors.toCollection(ArrayList::new)));
+                this.rowWriter = MethodHandleRowWriter.build(pageReader, columns, columnSetters).orElse(null);
+                if (readRecords != null) {
+                    Record replayRecord = readRecords.getReplayRecord();
+                    this.replayVisitors = columnSetters.stream()
+                            .map(setter -> new ColumnSetterVisitor(replayRecord, setter))
+                            .collect(Collectors.toList());
+                    this.replayRowWriter = MethodHandleRowWriter.build(replayRecord, columns, columnSetters).orElse(null);
+                } else {
+                    this.replayVisitors = null;
+                    this.replayRowWriter = null;
+                }
+            }
+
+            long getBatchSize()
+            {
+                return adaptiveBatchSize != null ? adaptiveBatchSize.getSize() : batchSize;
+            }
+
+            long getMinimumBatchSize()
+            {
+                return Math.max(batchSize / 16, 1);
+            }
+
+            // upper bound of the adaptive batch size, which doesn't exceed the buffer budget of the transaction
+            long getMaximumBatchSize()
+            {
+                long size = task.getMaxBatchSize().orElse((long) batchSize);
+                if (budget != null) {
+                    size = Math.min(size, budget.getLimit());
+                }
+                return Math.max(size, getMinimumBatchSize());
+            }
+
+            void flush() throws SQLException, InterruptedException
+            {
+                flush(false);
+            }
+
+            /**
+             * If adaptive is true, the flush is measured to adjust the batch size.
+             * It should be false if the batch is flushed before it reaches the batch size.
+             */
+            void flush(boolean adaptive) throws SQLException, InterruptedException
+            {
+                final long weight = batch.getBatchWeight();
+                final long startTime = System.nanoTime();
+                final boolean[] retried = new boolean[1];
+                boolean isolated = false;
+                final PhaseEvents.Span span = PhaseEvents.begin(PhaseEvents.Phase.FLUSH, destTable)
+                        .setRows(batchRows).setBytes(weight);
+                batchRows = 0;
+                metrics.startFlush();
+                try {
+                    runWithRetry(new IdempotentSqlRunnable() {
+                        private boolean first = true;
+
+                        @Override
+                        public void run() throws IOException, SQLException {
+                            try {
+                                if (!first) {
+                                    retried[0] = true;
+                                    metrics.addRetries(1);
+                                    retryColumnsSetters();
+                                }
+
+                                batch.flush();
+
+                            } catch (IOException | SQLException ex) {
+                                if (!first && !isRetryableException(ex)) {
+                                    logger.error("Retry failed : ", ex);
+                                }
+                                throw ex;
+                            } finally {
+                                first = false;
+                            }
+                        }
+                    });
+                } catch (SQLException ex) {
+                    if (rejectFile == null || !isRejectableException(ex)) {
+                        span.setFailed();
+                        throw ex;
+                    }
+                    isolateErrors(ex);
+                    isolated = true;
+                } finally {
+                    span.close();
+                    metrics.endFlush();
+                }
+
+                // records of in-flight rows are kept until they are loaded
+                if (readRecords != null) {
+                    readRecords.clearReadRecords(batch.getInFlightRows());
+                }
+                releaseBudget(batch.getBatchWeight());
+                exceedingBudget = false;
+                oldestRowTime = -1;
+
+                final long endTime = System.nanoTime();
+                if (weight > 0) {
+                    metrics.recordFlush(weight, endTime - startTime);
+                }
+                if (adaptiveBatchSize != null) {
+                    if (retried[0]) {
+                        adaptiveBatchSize.onFailure();
+                    } else if (adaptive && !isolated) {
+                        adaptiveBatchSize.onFlush(weight, (endTime - startTime) / 1e9, (endTime - lastFlushTime) / 1e9);
+                    }
+                    logger.debug(String.format("Batch size: %,d bytes", adaptiveBatchSize.getSize()));
+                }
+                lastFlushTime = endTime;
+            }
+
+            /**
+             * Reserves the budget for the weight of the batch, or returns false if the budget is exhausted.
+             */
+            boolean reserveBudget()
+            {
+                long weight = batch.getBatchWeight();
+                if (weight <= reservedBytes) {
+                    return true;
+                }
+                long needed = weight - reservedBytes;
+                long bytes = Math.max(needed, BufferBudget.RESERVATION_UNIT);
+                if (!budget.tryReserve(bytes)) {
+                    if (bytes == needed || !budget.tryReserve(needed)) {
+                        return false;
                     }
+                    bytes = needed;
+                }
+                reservedBytes += bytes;
+                return true;
+            }
+
+            /**
+             * Called when the budget can't be reserved for the batch.
+             * A batch of the minimum size or larger is flushed to release its reservation. A smaller batch waits for
+             * other tasks to release the budget instead of being flushed row by row. If the budget is not released
+             * in time, rows are added beyond the budget until the batch reaches the minimum size, because all tasks
+             * may be waiting with small batches.
+             */
+            void waitForBudget() throws SQLException, InterruptedException
+            {
+                if (batch.getBatchWeight() >= getMinimumBatchSize()) {
+                    flush();
+                    return;
+                }
+                if (exceedingBudget) {
+                    return;
+                }
+                final long startTime = System.nanoTime();
+                final long deadline = startTime + TimeUnit.MILLISECONDS.toNanos(BUDGET_WAIT_MILLIS);
+                try {
+                    while (true) {
+                        long releaseCount = budget.getReleaseCount();
+                        if (reserveBudget()) {
+                            return;
+                        }
+                        if (!budget.awaitRelease(releaseCount, deadline)) {
+                            logger.debug("Adding rows beyond max_total_buffer_bytes until the batch reaches the minimum size");
+                            exceedingBudget = true;
+                            return;
+                        }
+                    }
+                } finally {
+                    metrics.addWaitTime(System.nanoTime() - startTime);
+                }
+            }
+
+            void releaseBudget(long retainedBytes)
+            {
+                if (budget != null && reservedBytes > retainedBytes) {
+                    budget.release(reservedBytes - retainedBytes);
+                    reservedBytes = retainedBytes;
+                }
+            }
+
+            void finish() throws SQLException, InterruptedException
+            {
+                final long startTime = System.nanoTime();
+                final PhaseEvents.Span span = PhaseEvents.begin(PhaseEvents.Phase.FINISH, destTable);
+                try {
+                    runWithRetry(new IdempotentSqlRunnable() {
+                        private boolean first = true;
+
+                        @Override
+                        public void run() throws IOException, SQLException {
+                            try {
+                                if (!first) {
+                                    metrics.addRetries(1);
+                                }
+                                if (!first && readRecords.getReadRecordCount() > 0) {
+                                    // in-flight rows failed
+                                    retryColumnsSetters();
+                                    batch.flush();
+                                }
+
+                                batch.finish();
+
+                            } catch (IOException | SQLException ex) {
+                                if (!first && !isRetryableException(ex)) {
+                                    logger.error("Retry failed : ", ex);
+                                }
+                                throw ex;
+                            } finally {
+                                first = false;
+                            }
+                        }
+                    });
+                } catch (SQLException ex) {
+                    if (rejectFile == null || !isRejectableException(ex)) {
+                        span.setFailed();
+                        throw ex;
+                    }
+                    isolateErrors(ex);
+                } finally {
+                    span.close();
+                }
+
+                if (readRecords != null) {
+                    readRecords.clearReadRecords();
+                }
+                metrics.addWaitTime(System.nanoTime() - startTime);
+            }
+
+            /**
+             * Runs the operation with retry if the batch supports replay.
+             * Otherwise the operation runs once, because failed rows can't be added to the batch again.
+             */
+            private void runWithRetry(IdempotentSqlRunnable op) throws SQLException, InterruptedException
+            {
+                if (readRecords != null) {
+                    withRetry(task, op);
+                    return;
+                }
+                try {
+                    op.run();
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+
+            /**
+             * Finds rows causing the error by loading failed rows again in halves recursively,
+             * and writes the rows to the reject file. The other rows are loaded.
+             */
+            void isolateErrors(SQLException cause) throws SQLException
+            {
+                int[] rows = failedRows(null, readRecords.getReadRecordCount(), batch.getLastUpdateCounts());
+                logger.warn(String.format("Isolating rows which caused the error among %,d rows: %s", rows.length, cause));
+                long rejectedRows = rejectFile.getRejectedRows();
+                try {
+                    bisect(rows);
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+                logger.warn(String.format("Rejected %,d rows", rejectFile.getRejectedRows() - rejectedRows));
+                readRecords.clearReadRecords();
+            }
+
+            private void bisect(int[] rows) throws IOException, SQLException
+            {
+                if (rows.length <= 1) {
+                    load(rows);
+                    return;
+                }
+                int half = rows.length / 2;
+                load(Arrays.copyOfRange(rows, 0, half));
+                load(Arrays.copyOfRange(rows, half, rows.length));
+            }
+
+            private void load(int[] rows) throws IOException, SQLException
+            {
+                if (rows.length == 0) {
+                    return;
+                }
+                for (int row : rows) {
+                    replay(row);
                     batch.add();
+                }
+                try {
+                    batch.flush();
+                    // waits for in-flight batches
+                    batch.finish();
+                } catch (SQLException ex) {
+                    if (!isRejectableException(ex)) {
+                        throw ex;
+                    }
+                    if (rows.length == 1) {
+                        readRecords.moveReplayRecord(rows[0]);
+                        rejectFile.write(readRecords.getReplayRecord(), ex);
+                        return;
+                    }
+                    int[] updateCounts = batch.getLastUpdateCounts();
+                    int reportedRows = Math.min(updateCounts.length, rows.length);
+                    int[] reported = failedRows(rows, reportedRows, updateCounts);
+                    if (reported.length == rows.length) {
+                        // the driver reported all rows as failed, which tells nothing about the error
+                        bisect(reported);
+                        return;
+                    }
+                    // rows reported as failed are loaded again one by one to get their own errors
+                    for (int row : reported) {
+                        load(new int[] {row});
+                    }
+                    // rows after the update counts are not reported. drivers such as PostgreSQL stop at the first
+                    // error, so they may include both good and bad rows.
+                    bisect(Arrays.copyOfRange(rows, reportedRows, rows.length));
+                }
+            }
+
+            /**
+             * Returns rows which are not loaded among rows (or 0 until count if rows is null).
+             */
+            private int[] failedRows(int[] rows, int count, int[] updateCounts)
+            {
+                int[] failed = new int[count];
+                int size = 0;
+                for (int i = 0; i < count; i++) {
+                    if (i >= updateCounts.length || updateCounts[i] == Statement.EXECUTE_FAILED) {
+                        failed[size++] = rows == null ? i : rows[i];
+                    }
+                }
+                return Arrays.copyOf(failed, size);
+            }
+
+            private void replay(int row) throws IOException, SQLException
+            {
+                readRecords.moveReplayRecord(row);
+                if (replayRowWriter != null) {
+                    replayRowWriter.write();
                 } else {
-                    // remove for re-retry
-                    it.remove();
+                    int size = replayVisitors.size();
+                    for (int i = 0; i < size; i++) {
+                        replayVisitors.get(i).visit(columns.get(i));
+                    }
+                }
+            }
+
+            void handleColumnsSetters() throws IOException, SQLException
+            {
+                if (rowWriter != null) {
+                    rowWriter.write();
+                    return;
+                }
+                int size = columnVisitors.size();
+                for (int i=0; i < size; i++) {
+                    columnVisitors.get(i).visit(columns.get(i));
+                }
+            }
+
+            void retryColumnsSetters() throws IOException, SQLException
+            {
+                int[] updateCounts = batch.getLastUpdateCounts();
+                int count = readRecords.getReadRecordCount();
+                BitSet failed = new BitSet(count);
+                for (int index = 0; index < count; index++) {
+                    // retry failed records
+                    if (index >= updateCounts.length || updateCounts[index] == Statement.EXECUTE_FAILED) {
+                        replay(index);
+                        batch.add();
+                        failed.set(index);
+                    }
                 }
-                index++;
+                // remove succeeded records at once, and keep failed records for re-retry
+                readRecords.retainReadRecords(failed);
             }
         }
     }
@@ -1302,6 +2253,22 @@ public abstract class AbstractJdbcOutputPlugin
         return false;
     }
 
+    /**
+     * Returns true if the error is caused by values of rows, such as a constraint violation or a value too long,
+     * so that the rows can be rejected.
+     */
+    protected boolean isRejectableException(SQLException exception)
+    {
+        for (SQLException ex = exception; ex != null; ex = ex.getNextException()) {
+            String sqlState = ex.getSQLState();
+            // class 22: data exception, class 23: integrity constraint violation
+            if (sqlState != null && (sqlState.startsWith("22") || sqlState.startsWith("23"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
 
     public static interface IdempotentSqlRunnable
     {
@@ -1344,6 +2311,7 @@ public abstract class AbstractJdbcOutputPlugin
     class RetryableSQLExecution implements Retryable<Void> {
         private final String errorMessage;
         private final IdempotentSqlRunnable op;
+        private int attempts;
 
         private final Logger logger = LoggerFactory.getLogger(RetryableSQLExecution.class);
 
@@ -1353,7 +2321,14 @@ public abstract class AbstractJdbcOutputPlugin
         }
 
         public Void call() throws Exception {
-            op.run();
+            try (PhaseEvents.Span span = PhaseEvents.beginAttempt(errorMessage, ++attempts)) {
+                try {
+                    op.run();
+                } catch (Exception ex) {
+                    span.setFailed();
+                    throw ex;
+                }
+            }
             return null;
         }
 
@@ -0,0 +1,87 @@
+package org.embulk.output.jdbc;
+
+/**
+ * Flush threshold of batch weight, adjusted by flushes.
+ * The threshold keeps growing or shrinking while throughput improves, and turns when throughput drops.
+ * It is halved when latency of a flush spikes or a flush fails.
+ */
+public class AdaptiveBatchSize
+{
+    private static final double STEP = 1.25;
+    // latency per byte which is this times larger than the average is a spike
+    private static final double SPIKE_RATIO = 3.0;
+    private static final double AVERAGE_WEIGHT = 0.2;
+
+    private final long minSize;
+    private final long maxSize;
+    private long size;
+    private boolean growing;
+    // bytes per second of the last flush cycle, or 0 if not measured
+    private double lastThroughput;
+    // moving average of seconds per byte of flushes, or -1 if not measured
+    private double averageLatency;
+
+    public AdaptiveBatchSize(long initialSize, long minSize, long maxSize)
+    {
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.size = clamp(initialSize);
+        this.growing = true;
+        this.lastThroughput = 0;
+        this.averageLatency = -1;
+    }
+
+    public long getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Called when a batch is flushed successfully.
+     *
+     * @param bytes weight of the flushed batch
+     * @param flushSeconds time spent by the flush
+     * @param cycleSeconds time since the previous flush, including time to build the batch
+     */
+    public void onFlush(long bytes, double flushSeconds, double cycleSeconds)
+    {
+        if (bytes <= 0 || cycleSeconds <= 0) {
+            return;
+        }
+
+        double latency = flushSeconds / bytes;
+        if (averageLatency >= 0 && latency > averageLatency * SPIKE_RATIO) {
+            // the spike is not included in the average so that the next spike is detected too
+            backOff();
+            return;
+        }
+        averageLatency = averageLatency < 0 ? latency : averageLatency * (1 - AVERAGE_WEIGHT) + latency * AVERAGE_WEIGHT;
+
+        double throughput = bytes / cycleSeconds;
+        if (lastThroughput > 0 && throughput < lastThroughput) {
+            growing = !growing;
+        }
+        lastThroughput = throughput;
+        size = clamp(growing ? (long) (size * STEP) : (long) (size / STEP));
+    }
+
+    /**
+     * Called when a flush failed, for example by a lock wait timeout or a deadlock.
+     */
+    public void onFailure()
+    {
+        backOff();
+    }
+
+    private void backOff()
+    {
+        size = clamp(size / 2);
+        growing = false;
+        lastThroughput = 0;
+    }
+
+    private long clamp(long size)
+    {
+        return Math.max(minSize, Math.min(maxSize, size));
+    }
+}
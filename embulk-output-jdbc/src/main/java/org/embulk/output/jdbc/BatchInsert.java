@@ -21,6 +21,20 @@ public interface BatchInsert
     // should be implemented for retry
     public int[] getLastUpdateCounts();
 
+    // whether failed rows can be added again for retry.
+    // read records are not saved if false.
+    public default boolean supportsReplay()
+    {
+        return true;
+    }
+
+    // number of the last added rows which are flushed but not loaded yet.
+    // should be implemented if flush() returns before loading rows.
+    public default int getInFlightRows()
+    {
+        return 0;
+    }
+
     public void finish() throws IOException, SQLException;
 
     public void setNull(int sqlType) throws IOException, SQLException;
@@ -0,0 +1,37 @@
+package org.embulk.output.jdbc;
+
+import java.util.Locale;
+
+import org.embulk.config.ConfigException;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * How the flush threshold of batches is decided.
+ */
+public enum BatchSizing
+{
+    // flush batches when they exceed batch_size
+    FIXED,
+    // adjust the threshold from throughput and latency of flushes, starting from batch_size
+    AUTO;
+
+    @JsonValue
+    @Override
+    public String toString()
+    {
+        return name().toLowerCase(Locale.ENGLISH);
+    }
+
+    @JsonCreator
+    public static BatchSizing fromString(String value)
+    {
+        for (BatchSizing sizing : values()) {
+            if (sizing.toString().equals(value)) {
+                return sizing;
+            }
+        }
+        throw new ConfigException(String.format("Unknown batch_sizing '%s'.", value));
+    }
+}
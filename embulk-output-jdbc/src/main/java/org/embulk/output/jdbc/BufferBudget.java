@@ -0,0 +1,112 @@
+package org.embulk.output.jdbc;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Budget of bytes buffered by BatchInserts of all tasks of a transaction in the JVM.
+ * Tasks of the same transaction share a budget, and budgets of different transactions are independent.
+ */
+public class BufferBudget
+{
+    // tasks reserve bytes at least by this unit to reduce contention
+    public static final long RESERVATION_UNIT = 1024 * 1024;
+
+    // budgets of transactions running in this JVM by their ids. guarded by the class
+    private static final Map<String, BufferBudget> budgets = new HashMap<>();
+
+    private final String transactionId;
+    private final long limit;
+    // number of tasks using the budget. guarded by the class
+    private int users;
+
+    private final AtomicLong reservedBytes = new AtomicLong();
+    // number of releases, so that a waiting task doesn't miss a release. guarded by this
+    private long releaseCount;
+
+    private BufferBudget(String transactionId, long limit)
+    {
+        this.transactionId = transactionId;
+        this.limit = limit;
+    }
+
+    /**
+     * Returns the budget of the transaction, which is created by the first task of the transaction in this JVM.
+     * The budget must be closed by each task.
+     */
+    public static BufferBudget open(String transactionId, long limit)
+    {
+        synchronized (BufferBudget.class) {
+            BufferBudget budget = budgets.computeIfAbsent(transactionId, id -> new BufferBudget(id, limit));
+            budget.users++;
+            return budget;
+        }
+    }
+
+    public void close()
+    {
+        synchronized (BufferBudget.class) {
+            if (--users == 0) {
+                budgets.remove(transactionId);
+            }
+        }
+    }
+
+    public long getLimit()
+    {
+        return limit;
+    }
+
+    public long getReservedBytes()
+    {
+        return reservedBytes.get();
+    }
+
+    /**
+     * Reserves bytes, or returns false if the reserved bytes would exceed the limit.
+     */
+    public boolean tryReserve(long bytes)
+    {
+        while (true) {
+            long current = reservedBytes.get();
+            if (current + bytes > limit) {
+                return false;
+            }
+            if (reservedBytes.compareAndSet(current, current + bytes)) {
+                return true;
+            }
+        }
+    }
+
+    public void release(long bytes)
+    {
+        reservedBytes.addAndGet(-bytes);
+        synchronized (this) {
+            releaseCount++;
+            notifyAll();
+        }
+    }
+
+    public synchronized long getReleaseCount()
+    {
+        return releaseCount;
+    }
+
+    /**
+     * Waits until bytes are released after getReleaseCount() returned releaseCount.
+     * Returns false if the deadline of System.nanoTime() passed.
+     */
+    public synchronized boolean awaitRelease(long releaseCount, long deadlineNanos) throws InterruptedException
+    {
+        while (this.releaseCount == releaseCount) {
+            long remaining = deadlineNanos - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,437 @@
+package org.embulk.output.jdbc;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import org.embulk.spi.Column;
+import org.embulk.spi.ColumnVisitor;
+import org.embulk.spi.Schema;
+import org.msgpack.value.Value;
+
+/**
+ * Records saved for retry.
+ * Values are stored in primitive arrays for each column instead of an object for each record,
+ * and characters of strings are stored in an arena shared by all string columns.
+ */
+public class ColumnarRecordBuffer
+{
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final List<Column> columns;
+
+    // bit of a row is set if the value is not null
+    private final long[][] nonNulls;
+    private final long[][] booleans;
+    // long values, and epoch seconds of timestamp values
+    private final long[][] longs;
+    private final double[][] doubles;
+    // nanoseconds of timestamp values
+    private final int[][] nanos;
+    private final int[][] stringOffsets;
+    private final int[][] stringLengths;
+    private final Value[][] jsons;
+
+    private char[] arena;
+    private int arenaSize;
+    private int capacity;
+    private int rows;
+    private int bytesPerRow;
+
+    public ColumnarRecordBuffer(Schema schema)
+    {
+        this.columns = schema.getColumns();
+        int columnCount = columns.size();
+        this.nonNulls = new long[columnCount][];
+        this.booleans = new long[columnCount][];
+        this.longs = new long[columnCount][];
+        this.doubles = new double[columnCount][];
+        this.nanos = new int[columnCount][];
+        this.stringOffsets = new int[columnCount][];
+        this.stringLengths = new int[columnCount][];
+        this.jsons = new Value[columnCount][];
+        this.arena = new char[0];
+        this.arenaSize = 0;
+        this.capacity = 0;
+        this.rows = 0;
+        allocate(INITIAL_CAPACITY);
+        this.bytesPerRow = 0;
+        for (int c = 0; c < columnCount; c++) {
+            // 8 bytes for a value, an offset and a length of a string, or a reference of JSON.
+            // and 4 more bytes for nanoseconds of a timestamp.
+            bytesPerRow += nanos[c] != null ? 12 : 8;
+        }
+    }
+
+    public int size()
+    {
+        return rows;
+    }
+
+    /**
+     * Returns approximate bytes used by values of the rows.
+     * Sizes of JSON values are not counted excepting their references.
+     */
+    public long getEstimatedBytes()
+    {
+        return (long) rows * bytesPerRow + (long) arenaSize * 2;
+    }
+
+    /**
+     * Adds a new row whose values are all null, and returns the index of the row.
+     */
+    public int addRow()
+    {
+        if (rows == capacity) {
+            allocate(capacity * 2);
+        }
+        int row = rows++;
+        for (long[] bits : nonNulls) {
+            clearBit(bits, row);
+        }
+        return row;
+    }
+
+    public void setBoolean(int row, Column column, boolean v)
+    {
+        int c = column.getIndex();
+        if (v) {
+            setBit(booleans[c], row);
+        } else {
+            clearBit(booleans[c], row);
+        }
+        setBit(nonNulls[c], row);
+    }
+
+    public void setLong(int row, Column column, long v)
+    {
+        int c = column.getIndex();
+        longs[c][row] = v;
+        setBit(nonNulls[c], row);
+    }
+
+    public void setDouble(int row, Column column, double v)
+    {
+        int c = column.getIndex();
+        doubles[c][row] = v;
+        setBit(nonNulls[c], row);
+    }
+
+    public void setString(int row, Column column, String v)
+    {
+        int c = column.getIndex();
+        int length = v.length();
+        ensureArena(arenaSize + length);
+        v.getChars(0, length, arena, arenaSize);
+        stringOffsets[c][row] = arenaSize;
+        stringLengths[c][row] = length;
+        arenaSize += length;
+        setBit(nonNulls[c], row);
+    }
+
+    public void setTimestamp(int row, Column column, Instant v)
+    {
+        int c = column.getIndex();
+        longs[c][row] = v.getEpochSecond();
+        nanos[c][row] = v.getNano();
+        setBit(nonNulls[c], row);
+    }
+
+    public void setJson(int row, Column column, Value v)
+    {
+        int c = column.getIndex();
+        jsons[c][row] = v;
+        setBit(nonNulls[c], row);
+    }
+
+    public boolean isNull(int row, Column column)
+    {
+        return !getBit(nonNulls[column.getIndex()], row);
+    }
+
+    public boolean getBoolean(int row, Column column)
+    {
+        return getBit(booleans[column.getIndex()], row);
+    }
+
+    public long getLong(int row, Column column)
+    {
+        return longs[column.getIndex()][row];
+    }
+
+    public double getDouble(int row, Column column)
+    {
+        return doubles[column.getIndex()][row];
+    }
+
+    public String getString(int row, Column column)
+    {
+        int c = column.getIndex();
+        return new String(arena, stringOffsets[c][row], stringLengths[c][row]);
+    }
+
+    public Instant getTimestamp(int row, Column column)
+    {
+        int c = column.getIndex();
+        return Instant.ofEpochSecond(longs[c][row], nanos[c][row]);
+    }
+
+    public Value getJson(int row, Column column)
+    {
+        return jsons[column.getIndex()][row];
+    }
+
+    /**
+     * Returns a Record which reads values of the row.
+     */
+    public Record getRecord(int row)
+    {
+        Cursor cursor = new Cursor();
+        cursor.moveTo(row);
+        return cursor;
+    }
+
+    /**
+     * Returns a Record which reads values of a row selected by Cursor.moveTo.
+     */
+    public Cursor newCursor()
+    {
+        return new Cursor();
+    }
+
+    public void clear()
+    {
+        clearJsons(0, rows);
+        rows = 0;
+        arenaSize = 0;
+    }
+
+    /**
+     * Removes rows excepting the last retainedRows rows.
+     */
+    public void retainLastRows(int retainedRows)
+    {
+        if (retainedRows <= 0) {
+            clear();
+            return;
+        }
+        if (retainedRows >= rows) {
+            return;
+        }
+
+        int first = rows - retainedRows;
+        for (int r = first; r < rows; r++) {
+            copyRow(r, r - first);
+        }
+        clearJsons(retainedRows, rows);
+        rows = retainedRows;
+        compactArena();
+    }
+
+    /**
+     * Removes rows excepting those whose bits (row + offset) are set, in a single pass.
+     */
+    public void retainRows(BitSet retained, int offset)
+    {
+        int size = 0;
+        for (int r = 0; r < rows; r++) {
+            if (retained.get(r + offset)) {
+                if (r != size) {
+                    copyRow(r, size);
+                }
+                size++;
+            }
+        }
+        clearJsons(size, rows);
+        rows = size;
+        compactArena();
+    }
+
+    private void copyRow(int from, int to)
+    {
+        for (int c = 0; c < columns.size(); c++) {
+            if (getBit(nonNulls[c], from)) {
+                setBit(nonNulls[c], to);
+            } else {
+                clearBit(nonNulls[c], to);
+            }
+            if (booleans[c] != null) {
+                if (getBit(booleans[c], from)) {
+                    setBit(booleans[c], to);
+                } else {
+                    clearBit(booleans[c], to);
+                }
+            }
+            if (longs[c] != null) {
+                longs[c][to] = longs[c][from];
+            }
+            if (doubles[c] != null) {
+                doubles[c][to] = doubles[c][from];
+            }
+            if (nanos[c] != null) {
+                nanos[c][to] = nanos[c][from];
+            }
+            if (stringOffsets[c] != null) {
+                stringOffsets[c][to] = stringOffsets[c][from];
+                stringLengths[c][to] = stringLengths[c][from];
+            }
+            if (jsons[c] != null) {
+                jsons[c][to] = jsons[c][from];
+            }
+        }
+    }
+
+    // Strings are appended in order of rows and columns, and rows are moved keeping the order.
+    // So packing them in the same order never overwrites strings which are not moved yet.
+    private void compactArena()
+    {
+        int size = 0;
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns.size(); c++) {
+                if (stringOffsets[c] != null && getBit(nonNulls[c], r)) {
+                    int length = stringLengths[c][r];
+                    System.arraycopy(arena, stringOffsets[c][r], arena, size, length);
+                    stringOffsets[c][r] = size;
+                    size += length;
+                }
+            }
+        }
+        arenaSize = size;
+    }
+
+    private void clearJsons(int from, int to)
+    {
+        // release references for GC
+        for (Value[] values : jsons) {
+            if (values != null) {
+                Arrays.fill(values, from, to, null);
+            }
+        }
+    }
+
+    private void ensureArena(int required)
+    {
+        if (required > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(required, Math.max(arena.length * 2, INITIAL_CAPACITY)));
+        }
+    }
+
+    private void allocate(int newCapacity)
+    {
+        final int words = (newCapacity + 63) >>> 6;
+        for (int c = 0; c < columns.size(); c++) {
+            final int index = c;
+            nonNulls[c] = grow(nonNulls[c], words);
+            columns.get(c).visit(new ColumnVisitor() {
+                public void booleanColumn(Column column)
+                {
+                    booleans[index] = grow(booleans[index], words);
+                }
+
+                public void longColumn(Column column)
+                {
+                    longs[index] = grow(longs[index], newCapacity);
+                }
+
+                public void doubleColumn(Column column)
+                {
+                    doubles[index] = doubles[index] == null ? new double[newCapacity] : Arrays.copyOf(doubles[index], newCapacity);
+                }
+
+                public void stringColumn(Column column)
+                {
+                    stringOffsets[index] = grow(stringOffsets[index], newCapacity);
+                    stringLengths[index] = grow(stringLengths[index], newCapacity);
+                }
+
+                public void jsonColumn(Column column)
+                {
+                    jsons[index] = jsons[index] == null ? new Value[newCapacity] : Arrays.copyOf(jsons[index], newCapacity);
+                }
+
+                public void timestampColumn(Column column)
+                {
+                    longs[index] = grow(longs[index], newCapacity);
+                    nanos[index] = grow(nanos[index], newCapacity);
+                }
+            });
+        }
+        capacity = newCapacity;
+    }
+
+    private static long[] grow(long[] array, int length)
+    {
+        return array == null ? new long[length] : Arrays.copyOf(array, length);
+    }
+
+    private static int[] grow(int[] array, int length)
+    {
+        return array == null ? new int[length] : Arrays.copyOf(array, length);
+    }
+
+    private static boolean getBit(long[] bits, int index)
+    {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static void setBit(long[] bits, int index)
+    {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    private static void clearBit(long[] bits, int index)
+    {
+        bits[index >>> 6] &= ~(1L << index);
+    }
+
+    public class Cursor
+            implements Record
+    {
+        private int row;
+
+        private Cursor()
+        {
+        }
+
+        public void moveTo(int row)
+        {
+            this.row = row;
+        }
+
+        public boolean isNull(Column column)
+        {
+            return ColumnarRecordBuffer.this.isNull(row, column);
+        }
+
+        public boolean getBoolean(Column column)
+        {
+            return ColumnarRecordBuffer.this.getBoolean(row, column);
+        }
+
+        public long getLong(Column column)
+        {
+            return ColumnarRecordBuffer.this.getLong(row, column);
+        }
+
+        public double getDouble(Column column)
+        {
+            return ColumnarRecordBuffer.this.getDouble(row, column);
+        }
+
+        public String getString(Column column)
+        {
+            return ColumnarRecordBuffer.this.getString(row, column);
+        }
+
+        public Instant getTimestamp(Column column)
+        {
+            return ColumnarRecordBuffer.this.getTimestamp(row, column);
+        }
+
+        public Value getJson(Column column)
+        {
+            return ColumnarRecordBuffer.this.getJson(row, column);
+        }
+    }
+}
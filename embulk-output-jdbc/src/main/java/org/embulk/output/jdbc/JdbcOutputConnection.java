@@ -343,7 +343,33 @@ public class JdbcOutputConnection
         return connection.prepareStatement(sql);
     }
 
-    protected String buildPreparedInsertSql(TableIdentifier toTable, JdbcSchema toTableSchema) throws SQLException
+    /**
+     * Prepares an INSERT statement which inserts the rows by multi-row VALUES.
+     */
+    public PreparedStatement prepareMultiRowInsertStatement(TableIdentifier toTable, JdbcSchema toTableSchema, int rows) throws SQLException
+    {
+        String sql = buildPreparedMultiRowInsertSql(toTable, toTableSchema, rows);
+        logger.debug("Prepared SQL for {} rows", rows);
+        return connection.prepareStatement(sql);
+    }
+
+    /**
+     * Returns the maximum number of parameters of a statement supported by the database and the driver.
+     */
+    public int getMaxParameterCount()
+    {
+        return 32767;
+    }
+
+    /**
+     * Returns the maximum number of rows in multi-row VALUES supported by the database.
+     */
+    public int getMaxMultiRowValues()
+    {
+        return Integer.MAX_VALUE;
+    }
+
+    protected String buildPreparedMultiRowInsertSql(TableIdentifier toTable, JdbcSchema toTableSchema, int rows) throws SQLException
     {
         StringBuilder sb = new StringBuilder();
 
@@ -355,16 +381,25 @@ public class JdbcOutputConnection
             if(i != 0) { sb.append(", "); }
             quoteIdentifierString(sb, toTableSchema.getColumnName(i));
         }
-        sb.append(") VALUES (");
-        for(int i=0; i < toTableSchema.getCount(); i++) {
-            if(i != 0) { sb.append(", "); }
-            sb.append("?");
+        sb.append(") VALUES ");
+        for (int row = 0; row < rows; row++) {
+            if (row != 0) { sb.append(", "); }
+            sb.append("(");
+            for (int i=0; i < toTableSchema.getCount(); i++) {
+                if(i != 0) { sb.append(", "); }
+                sb.append("?");
+            }
+            sb.append(")");
         }
-        sb.append(")");
 
         return sb.toString();
     }
 
+    protected String buildPreparedInsertSql(TableIdentifier toTable, JdbcSchema toTableSchema) throws SQLException
+    {
+        return buildPreparedMultiRowInsertSql(toTable, toTableSchema, 1);
+    }
+
     protected String buildPreparedMergeSql(TableIdentifier toTable, JdbcSchema toTableSchema, MergeConfig mergeConfig) throws SQLException
     {
         throw new UnsupportedOperationException("not implemented");
@@ -434,6 +469,61 @@ public class JdbcOutputConnection
         }
     }
 
+    /**
+     * Inserts rows of the tables into toTable without committing, so that the transaction can be committed
+     * together with the other connections inserting rows in parallel.
+     */
+    protected void collectInsertWithoutCommit(List<TableIdentifier> fromTables, JdbcSchema schema, TableIdentifier toTable,
+            boolean truncateDestinationFirst) throws SQLException
+    {
+        if (fromTables.isEmpty() && !truncateDestinationFirst) {
+            return;
+        }
+
+        try (Statement stmt = connection.createStatement()) {
+            if (truncateDestinationFirst) {
+                String sql = buildTruncateSql(toTable);
+                executeUpdate(stmt, sql);
+            }
+            if (fromTables.isEmpty()) {
+                return;
+            }
+
+            String sql = buildCollectInsertSql(fromTables, schema, toTable);
+            executeUpdate(stmt, sql);
+        }
+    }
+
+    protected void commit() throws SQLException
+    {
+        commitIfNecessary(connection);
+    }
+
+    protected void rollback() throws SQLException
+    {
+        if (!connection.getAutoCommit()) {
+            connection.rollback();
+        }
+    }
+
+    /**
+     * Returns true if the table has a primary key or a unique index.
+     */
+    public boolean hasUniqueIndex(TableIdentifier table) throws SQLException
+    {
+        try (ResultSet rs = connection.getMetaData().getIndexInfo(table.getDatabase(), table.getSchemaName(), table.getTableName(), true, true)) {
+            while (rs.next()) {
+                // statistics of the table are returned as an index
+                if (rs.getShort("TYPE") != DatabaseMetaData.tableIndexStatistic) {
+                    return true;
+                }
+            }
+        }
+        try (ResultSet rs = connection.getMetaData().getPrimaryKeys(table.getDatabase(), table.getSchemaName(), table.getTableName())) {
+            return rs.next();
+        }
+    }
+
     protected String buildTruncateSql(TableIdentifier table)
     {
         StringBuilder sb = new StringBuilder();
@@ -0,0 +1,216 @@
+package org.embulk.output.jdbc;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.embulk.config.TaskReport;
+
+/**
+ * Metrics of loading rows in a task, which are returned in TaskReport and aggregated into ConfigDiff.
+ * bytes is the sum of the weights of flushed batches, which is estimated bytes of values for JDBC batches
+ * and bytes of encoded rows for COPY and the native client of SQL Server.
+ */
+public class LoadMetrics
+{
+    public static final String ROWS = "rows";
+    public static final String REJECTED_ROWS = "rejected_rows";
+    public static final String BYTES = "bytes";
+    public static final String FLUSHES = "flushes";
+    public static final String RETRIES = "retries";
+    public static final String FLUSH_TIME_P50 = "flush_time_p50_ms";
+    public static final String FLUSH_TIME_P90 = "flush_time_p90_ms";
+    public static final String FLUSH_TIME_P99 = "flush_time_p99_ms";
+    public static final String FLUSH_TIME_MAX = "flush_time_max_ms";
+    // time spent converting values and adding rows to batches
+    public static final String CONVERT_TIME = "convert_time_ms";
+    // time spent waiting for flushing batches and finishing loads
+    public static final String WAIT_TIME = "wait_time_ms";
+
+    public static final String TASKS = "tasks";
+
+    private static final List<String> SUMMED_KEYS = Arrays.asList(ROWS, REJECTED_ROWS, BYTES, FLUSHES, RETRIES, CONVERT_TIME, WAIT_TIME);
+    private static final List<String> MAX_KEYS = Arrays.asList(FLUSH_TIME_P50, FLUSH_TIME_P90, FLUSH_TIME_P99, FLUSH_TIME_MAX);
+
+    private long rows;
+    private long rejectedRows;
+    private long bytes;
+    private long retries;
+    private long convertNanos;
+    private long waitNanos;
+    private long[] flushNanos = new long[64];
+    private int flushes;
+
+    // gauges read by LoadProgress while loading
+    private volatile long batchWeight;
+    private volatile long inFlightRows;
+    private volatile int flushesInProgress;
+
+    public synchronized void addRows(long rows)
+    {
+        this.rows += rows;
+    }
+
+    public synchronized void setRejectedRows(long rejectedRows)
+    {
+        this.rejectedRows = rejectedRows;
+    }
+
+    public synchronized void addRetries(long retries)
+    {
+        this.retries += retries;
+    }
+
+    public synchronized void addConvertTime(long nanos)
+    {
+        convertNanos += nanos;
+    }
+
+    public synchronized void addWaitTime(long nanos)
+    {
+        waitNanos += nanos;
+    }
+
+    public synchronized long getWaitNanos()
+    {
+        return waitNanos;
+    }
+
+    public synchronized long getRows()
+    {
+        return rows;
+    }
+
+    public synchronized long getBytes()
+    {
+        return bytes;
+    }
+
+    public synchronized long getRetries()
+    {
+        return retries;
+    }
+
+    public long getBatchWeight()
+    {
+        return batchWeight;
+    }
+
+    public void setBatchWeight(long batchWeight)
+    {
+        this.batchWeight = batchWeight;
+    }
+
+    public long getInFlightRows()
+    {
+        return inFlightRows;
+    }
+
+    public void setInFlightRows(long inFlightRows)
+    {
+        this.inFlightRows = inFlightRows;
+    }
+
+    public int getFlushesInProgress()
+    {
+        return flushesInProgress;
+    }
+
+    public synchronized void startFlush()
+    {
+        flushesInProgress++;
+    }
+
+    public synchronized void endFlush()
+    {
+        flushesInProgress--;
+    }
+
+    /**
+     * Records a flushed batch. The time is also added to the wait time.
+     */
+    public synchronized void recordFlush(long weight, long nanos)
+    {
+        bytes += weight;
+        waitNanos += nanos;
+        if (flushes == flushNanos.length) {
+            flushNanos = Arrays.copyOf(flushNanos, flushNanos.length * 2);
+        }
+        flushNanos[flushes++] = nanos;
+    }
+
+    public synchronized Map<String, Long> toMap()
+    {
+        long[] sorted = Arrays.copyOf(flushNanos, flushes);
+        Arrays.sort(sorted);
+
+        Map<String, Long> map = new LinkedHashMap<>();
+        map.put(ROWS, rows);
+        map.put(REJECTED_ROWS, rejectedRows);
+        map.put(BYTES, bytes);
+        map.put(FLUSHES, (long) flushes);
+        map.put(RETRIES, retries);
+        map.put(FLUSH_TIME_P50, toMillis(percentile(sorted, 50)));
+        map.put(FLUSH_TIME_P90, toMillis(percentile(sorted, 90)));
+        map.put(FLUSH_TIME_P99, toMillis(percentile(sorted, 99)));
+        map.put(FLUSH_TIME_MAX, toMillis(percentile(sorted, 100)));
+        map.put(CONVERT_TIME, toMillis(convertNanos));
+        map.put(WAIT_TIME, toMillis(waitNanos));
+        return map;
+    }
+
+    public void writeTo(TaskReport report)
+    {
+        for (Map.Entry<String, Long> entry : toMap().entrySet()) {
+            report.set(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Aggregates metrics of tasks. Counts and times are summed up, and flush times are the maximum among tasks.
+     */
+    public static Map<String, Long> aggregate(List<TaskReport> reports)
+    {
+        return aggregateMaps(reports.stream().map(report -> {
+            Map<String, Long> map = new LinkedHashMap<>();
+            for (String key : SUMMED_KEYS) {
+                map.put(key, report.get(Long.class, key, 0L));
+            }
+            for (String key : MAX_KEYS) {
+                map.put(key, report.get(Long.class, key, 0L));
+            }
+            return map;
+        }).collect(Collectors.toList()));
+    }
+
+    static Map<String, Long> aggregateMaps(List<Map<String, Long>> tasks)
+    {
+        Map<String, Long> aggregated = new LinkedHashMap<>();
+        aggregated.put(TASKS, (long) tasks.size());
+        for (String key : SUMMED_KEYS) {
+            aggregated.put(key, tasks.stream().mapToLong(task -> task.getOrDefault(key, 0L)).sum());
+        }
+        for (String key : MAX_KEYS) {
+            aggregated.put(key, tasks.stream().mapToLong(task -> task.getOrDefault(key, 0L)).max().orElse(0L));
+        }
+        return aggregated;
+    }
+
+    // nearest-rank percentile
+    private static long percentile(long[] sorted, int percent)
+    {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(sorted.length * percent / 100.0);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+
+    private static long toMillis(long nanos)
+    {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
@@ -0,0 +1,176 @@
+package org.embulk.output.jdbc;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Progress of an output transaction registered as an MBean while the transaction runs.
+ * Tasks running in the same JVM as the transaction add their LoadMetrics, which are read by JMX clients.
+ */
+public class LoadProgress
+        implements LoadProgressMXBean
+{
+    private static final Logger logger = LoggerFactory.getLogger(LoadProgress.class);
+
+    public enum Status
+    {
+        LOADING,
+        COMMITTING,
+        COMMITTED,
+        FAILED;
+    }
+
+    // transactions running in this JVM by their ids
+    private static final Map<String, LoadProgress> transactions = new ConcurrentHashMap<>();
+
+    private final String transactionId;
+    private final String table;
+    private final int taskCount;
+    private final Map<Integer, LoadMetrics> tasks = new ConcurrentSkipListMap<>();
+    private volatile Status status = Status.LOADING;
+    private ObjectName objectName;
+
+    private LoadProgress(String transactionId, String table, int taskCount)
+    {
+        this.transactionId = transactionId;
+        this.table = table;
+        this.taskCount = taskCount;
+    }
+
+    public static String newTransactionId()
+    {
+        return UUID.randomUUID().toString();
+    }
+
+    /**
+     * Registers the progress of a transaction as an MBean. A failure to register it is logged and ignored.
+     */
+    public static LoadProgress register(String transactionId, String table, int taskCount)
+    {
+        LoadProgress progress = new LoadProgress(transactionId, table, taskCount);
+        transactions.put(transactionId, progress);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(String.format("org.embulk.output.jdbc:type=LoadProgress,table=%s,transaction=%s",
+                        ObjectName.quote(table), transactionId));
+            server.registerMBean(progress, name);
+            progress.objectName = name;
+        } catch (JMException | RuntimeException ex) {
+            logger.warn("Failed to register the MBean of the progress: {}", ex.toString());
+        }
+        return progress;
+    }
+
+    /**
+     * Returns the progress of the transaction, or empty if the transaction doesn't run in this JVM.
+     */
+    public static Optional<LoadProgress> get(String transactionId)
+    {
+        return transactionId == null ? Optional.empty() : Optional.ofNullable(transactions.get(transactionId));
+    }
+
+    public void unregister()
+    {
+        transactions.remove(transactionId);
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException ex) {
+                logger.warn("Failed to unregister the MBean of the progress: {}", ex.toString());
+            }
+            objectName = null;
+        }
+    }
+
+    /**
+     * Adds metrics of a task. Metrics added before for the same task (which has been retried) are replaced.
+     */
+    public void addTask(int taskIndex, LoadMetrics metrics)
+    {
+        tasks.put(taskIndex, metrics);
+    }
+
+    public void setStatus(Status status)
+    {
+        this.status = status;
+    }
+
+    @Override
+    public String getTable()
+    {
+        return table;
+    }
+
+    @Override
+    public String getStatus()
+    {
+        return status.name();
+    }
+
+    @Override
+    public int getTaskCount()
+    {
+        return taskCount;
+    }
+
+    @Override
+    public long getRows()
+    {
+        return tasks.values().stream().mapToLong(LoadMetrics::getRows).sum();
+    }
+
+    @Override
+    public long getBytes()
+    {
+        return tasks.values().stream().mapToLong(LoadMetrics::getBytes).sum();
+    }
+
+    @Override
+    public long getRetries()
+    {
+        return tasks.values().stream().mapToLong(LoadMetrics::getRetries).sum();
+    }
+
+    @Override
+    public long getBatchWeight()
+    {
+        return tasks.values().stream().mapToLong(LoadMetrics::getBatchWeight).sum();
+    }
+
+    @Override
+    public long getInFlightRows()
+    {
+        return tasks.values().stream().mapToLong(LoadMetrics::getInFlightRows).sum();
+    }
+
+    @Override
+    public int getFlushesInProgress()
+    {
+        return tasks.values().stream().mapToInt(LoadMetrics::getFlushesInProgress).sum();
+    }
+
+    @Override
+    public List<TaskProgress> getTasks()
+    {
+        List<TaskProgress> list = new ArrayList<>();
+        for (Map.Entry<Integer, LoadMetrics> entry : tasks.entrySet()) {
+            LoadMetrics metrics = entry.getValue();
+            list.add(new TaskProgress(entry.getKey(), metrics.getRows(), metrics.getBytes(), metrics.getRetries(),
+                        metrics.getBatchWeight(), metrics.getInFlightRows(), metrics.getFlushesInProgress()));
+        }
+        return list;
+    }
+}
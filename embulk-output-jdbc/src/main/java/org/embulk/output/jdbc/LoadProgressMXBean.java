@@ -0,0 +1,32 @@
+package org.embulk.output.jdbc;
+
+import java.util.List;
+
+/**
+ * Live progress of an output transaction, which is exposed by JMX as org.embulk.output.jdbc:type=LoadProgress.
+ */
+public interface LoadProgressMXBean
+{
+    String getTable();
+
+    /**
+     * LOADING, COMMITTING, COMMITTED or FAILED.
+     */
+    String getStatus();
+
+    int getTaskCount();
+
+    long getRows();
+
+    long getBytes();
+
+    long getRetries();
+
+    long getBatchWeight();
+
+    long getInFlightRows();
+
+    int getFlushesInProgress();
+
+    List<TaskProgress> getTasks();
+}
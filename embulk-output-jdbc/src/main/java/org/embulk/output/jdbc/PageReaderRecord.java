@@ -1,28 +1,50 @@
 package org.embulk.output.jdbc;
 
+import java.io.IOException;
 import java.time.Instant;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.BitSet;
 
 import org.embulk.spi.Column;
 import org.embulk.spi.Page;
 import org.embulk.spi.PageReader;
 import org.msgpack.value.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Record read by PageReader.
  * The class will save read records for retry.
+ * Older records are spilled to a temporary file when saved records in memory exceed the threshold.
  */
-public class PageReaderRecord implements Record
+public class PageReaderRecord implements ReplayableRecord
 {
+    private static final Logger logger = LoggerFactory.getLogger(PageReaderRecord.class);
+
     private final PageReader pageReader;
-    private final List<MemoryRecord> readRecords;
-    private MemoryRecord lastRecord;
+    // records spilled to a file precede records in memory
+    private final RecordJournal spilledRecords;
+    private final long spillThreshold;
+    private final ColumnarRecordBuffer readRecords;
+    private int lastRecord = -1;
+    private final ColumnarRecordBuffer.Cursor readRecordCursor;
+    private final ReplayRecord replayRecord;
 
     public PageReaderRecord(PageReader pageReader)
+    {
+        this(pageReader, 0);
+    }
+
+    /**
+     * Records are never spilled if spillThreshold is 0.
+     */
+    public PageReaderRecord(PageReader pageReader, long spillThreshold)
     {
         this.pageReader = pageReader;
-        readRecords = new ArrayList<>();
+        this.spilledRecords = spillThreshold > 0 ? new RecordJournal(pageReader.getSchema()) : null;
+        this.spillThreshold = spillThreshold;
+        readRecords = new ColumnarRecordBuffer(pageReader.getSchema());
+        readRecordCursor = readRecords.newCursor();
+        replayRecord = new ReplayRecord();
     }
 
     public void setPage(Page page)
@@ -32,63 +54,193 @@ public class PageReaderRecord implements Record
 
     public boolean nextRecord()
     {
-        lastRecord = null; // lastRecord will be created in next `save` method execution.
+        lastRecord = -1; // lastRecord will be added in next `isNull` or getter method execution.
+        if (spilledRecords != null && readRecords.getEstimatedBytes() > spillThreshold) {
+            spill();
+        }
         return pageReader.nextRecord();
     }
 
     public boolean isNull(Column column)
     {
+        // the row is saved even if all values are null, so that saved records match added rows.
+        lastRecord();
         return pageReader.isNull(column);
     }
 
     public boolean getBoolean(Column column)
     {
-        return save(column, pageReader.getBoolean(column));
+        boolean value = pageReader.getBoolean(column);
+        readRecords.setBoolean(lastRecord(), column, value);
+        return value;
     }
 
     public long getLong(Column column)
     {
-        return save(column, pageReader.getLong(column));
+        long value = pageReader.getLong(column);
+        readRecords.setLong(lastRecord(), column, value);
+        return value;
     }
 
     public double getDouble(Column column)
     {
-        return save(column, pageReader.getDouble(column));
+        double value = pageReader.getDouble(column);
+        readRecords.setDouble(lastRecord(), column, value);
+        return value;
     }
 
     public String getString(Column column)
     {
-        return save(column, pageReader.getString(column));
+        String value = pageReader.getString(column);
+        readRecords.setString(lastRecord(), column, value);
+        return value;
     }
 
     public Instant getTimestamp(Column column)
     {
-        return save(column, pageReader.getTimestamp(column).getInstant());
+        Instant value = pageReader.getTimestamp(column).getInstant();
+        readRecords.setTimestamp(lastRecord(), column, value);
+        return value;
     }
 
     public Value getJson(Column column)
     {
-        return save(column, pageReader.getJson(column));
+        Value value = pageReader.getJson(column);
+        readRecords.setJson(lastRecord(), column, value);
+        return value;
+    }
+
+    public int getReadRecordCount()
+    {
+        return spilledSize() + readRecords.size();
     }
 
-    public List<? extends Record> getReadRecords()
+    public Record getReplayRecord()
     {
-        return readRecords;
+        return replayRecord;
+    }
+
+    public void moveReplayRecord(int index)
+    {
+        int spilled = spilledSize();
+        if (index < spilled) {
+            try {
+                replayRecord.record = spilledRecords.get(index);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        } else {
+            readRecordCursor.moveTo(index - spilled);
+            replayRecord.record = readRecordCursor;
+        }
+    }
+
+    public void retainReadRecords(BitSet retained)
+    {
+        int spilled = spilledSize();
+        if (spilled > 0) {
+            try {
+                spilledRecords.retainRecords(retained);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+        readRecords.retainRows(retained, spilled);
+        lastRecord = -1;
     }
 
     public void clearReadRecords()
     {
+        clearReadRecords(0);
+    }
+
+    public void clearReadRecords(int retainedRecords)
+    {
+        try {
+            if (spilledRecords == null || retainedRecords <= readRecords.size()) {
+                if (spilledRecords != null) {
+                    spilledRecords.clear();
+                }
+                readRecords.retainLastRows(retainedRecords);
+            } else {
+                spilledRecords.retainLastRecords(retainedRecords - readRecords.size());
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+        lastRecord = -1;
+    }
+
+    public void close()
+    {
+        clearReadRecords();
+    }
+
+    private int spilledSize()
+    {
+        return spilledRecords == null ? 0 : spilledRecords.size();
+    }
+
+    private void spill()
+    {
+        logger.debug(String.format("Spilling %,d records (%,d bytes) for retry", readRecords.size(), readRecords.getEstimatedBytes()));
+        try {
+            spilledRecords.append(readRecords);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
         readRecords.clear();
-        lastRecord = null;
     }
 
-    private <T> T save(Column column, T value)
+    private int lastRecord()
     {
-        if (lastRecord == null) {
-            lastRecord = new MemoryRecord(pageReader.getSchema().getColumnCount());
-            readRecords.add(lastRecord);
+        if (lastRecord < 0) {
+            lastRecord = readRecords.addRow();
+        }
+        return lastRecord;
+    }
+
+    /**
+     * Reads a spilled record or a record in memory selected by moveReplayRecord.
+     */
+    private static class ReplayRecord
+            implements Record
+    {
+        private Record record;
+
+        public boolean isNull(Column column)
+        {
+            return record.isNull(column);
+        }
+
+        public boolean getBoolean(Column column)
+        {
+            return record.getBoolean(column);
+        }
+
+        public long getLong(Column column)
+        {
+            return record.getLong(column);
+        }
+
+        public double getDouble(Column column)
+        {
+            return record.getDouble(column);
+        }
+
+        public String getString(Column column)
+        {
+            return record.getString(column);
+        }
+
+        public Instant getTimestamp(Column column)
+        {
+            return record.getTimestamp(column);
+        }
+
+        public Value getJson(Column column)
+        {
+            return record.getJson(column);
         }
-        lastRecord.setValue(column, value);
-        return value;
     }
 }
@@ -0,0 +1,15 @@
+package org.embulk.output.jdbc;
+
+import org.embulk.spi.Page;
+
+/**
+ * Record read from pages.
+ */
+public interface PageRecord extends Record
+{
+    void setPage(Page page);
+
+    boolean nextRecord();
+
+    void close();
+}
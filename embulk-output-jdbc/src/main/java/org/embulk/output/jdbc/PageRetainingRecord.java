@@ -0,0 +1,230 @@
+package org.embulk.output.jdbc;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.embulk.output.jdbc.RetainedPages.RetainedPage;
+import org.embulk.spi.Column;
+import org.embulk.spi.Page;
+import org.embulk.spi.PageReader;
+import org.msgpack.value.Value;
+
+/**
+ * Record read by PageReader.
+ * The class will retain pages of read records instead of copying values,
+ * and read the records again for retry.
+ */
+public class PageRetainingRecord implements ReplayableRecord
+{
+    private final RetainedPages pages;
+    private RetainedPage[] recordPages;
+    private int[] recordRows;
+    private int size;
+    private boolean lastRecordSaved;
+
+    private final ReplayRecord replayRecord;
+
+    public PageRetainingRecord(RetainedPages pages)
+    {
+        this.pages = pages;
+        this.recordPages = new RetainedPage[1024];
+        this.recordRows = new int[1024];
+        this.size = 0;
+        this.replayRecord = new ReplayRecord();
+    }
+
+    public void setPage(Page page)
+    {
+        pages.setPage(page);
+    }
+
+    public boolean nextRecord()
+    {
+        lastRecordSaved = false; // the record will be saved in next `isNull` or getter method execution.
+        return pages.nextRecord();
+    }
+
+    public boolean isNull(Column column)
+    {
+        save();
+        return pages.getPageReader().isNull(column);
+    }
+
+    public boolean getBoolean(Column column)
+    {
+        save();
+        return pages.getPageReader().getBoolean(column);
+    }
+
+    public long getLong(Column column)
+    {
+        save();
+        return pages.getPageReader().getLong(column);
+    }
+
+    public double getDouble(Column column)
+    {
+        save();
+        return pages.getPageReader().getDouble(column);
+    }
+
+    public String getString(Column column)
+    {
+        save();
+        return pages.getPageReader().getString(column);
+    }
+
+    public Instant getTimestamp(Column column)
+    {
+        save();
+        return pages.getPageReader().getTimestamp(column).getInstant();
+    }
+
+    public Value getJson(Column column)
+    {
+        save();
+        return pages.getPageReader().getJson(column);
+    }
+
+    public int getReadRecordCount()
+    {
+        return size;
+    }
+
+    public Record getReplayRecord()
+    {
+        return replayRecord;
+    }
+
+    public void moveReplayRecord(int index)
+    {
+        replayRecord.moveTo(recordPages[index], recordRows[index]);
+    }
+
+    public void retainReadRecords(BitSet retained)
+    {
+        int newSize = 0;
+        for (int i = 0; i < size; i++) {
+            if (retained.get(i)) {
+                recordPages[newSize] = recordPages[i];
+                recordRows[newSize] = recordRows[i];
+                newSize++;
+            } else {
+                recordPages[i].release();
+            }
+        }
+        Arrays.fill(recordPages, newSize, size, null);
+        size = newSize;
+        lastRecordSaved = false;
+        replayRecord.reset();
+    }
+
+    public void clearReadRecords()
+    {
+        clearReadRecords(0);
+    }
+
+    public void clearReadRecords(int retainedRecords)
+    {
+        int removed = Math.max(0, size - Math.max(0, retainedRecords));
+        for (int i = 0; i < removed; i++) {
+            recordPages[i].release();
+        }
+        System.arraycopy(recordPages, removed, recordPages, 0, size - removed);
+        System.arraycopy(recordRows, removed, recordRows, 0, size - removed);
+        Arrays.fill(recordPages, size - removed, size, null);
+        size -= removed;
+        lastRecordSaved = false;
+        replayRecord.reset();
+    }
+
+    public void close()
+    {
+        clearReadRecords();
+        pages.close();
+    }
+
+    private void save()
+    {
+        if (!lastRecordSaved) {
+            if (size == recordPages.length) {
+                recordPages = Arrays.copyOf(recordPages, size * 2);
+                recordRows = Arrays.copyOf(recordRows, size * 2);
+            }
+            RetainedPage page = pages.getCurrentPage();
+            page.retain();
+            recordPages[size] = page;
+            recordRows[size] = pages.getCurrentRow();
+            size++;
+            lastRecordSaved = true;
+        }
+    }
+
+    /**
+     * Reads a retained record with a PageReader other than the one reading the current page.
+     */
+    private class ReplayRecord
+            implements Record
+    {
+        private RetainedPage page;
+        private PageReader reader;
+        private int row;
+
+        void moveTo(RetainedPage page, int row)
+        {
+            if (page != this.page || row < this.row) {
+                // the reader is not closed because closing releases the page
+                this.page = page;
+                this.reader = pages.newPageReader(page);
+                this.row = -1;
+            }
+            while (this.row < row) {
+                reader.nextRecord();
+                this.row++;
+            }
+        }
+
+        void reset()
+        {
+            page = null;
+            reader = null;
+            row = -1;
+        }
+
+        public boolean isNull(Column column)
+        {
+            return reader.isNull(column);
+        }
+
+        public boolean getBoolean(Column column)
+        {
+            return reader.getBoolean(column);
+        }
+
+        public long getLong(Column column)
+        {
+            return reader.getLong(column);
+        }
+
+        public double getDouble(Column column)
+        {
+            return reader.getDouble(column);
+        }
+
+        public String getString(Column column)
+        {
+            return reader.getString(column);
+        }
+
+        public Instant getTimestamp(Column column)
+        {
+            return reader.getTimestamp(column).getInstant();
+        }
+
+        public Value getJson(Column column)
+        {
+            return reader.getJson(column);
+        }
+    }
+}
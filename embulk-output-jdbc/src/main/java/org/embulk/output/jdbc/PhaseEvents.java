@@ -0,0 +1,136 @@
+package org.embulk.output.jdbc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Emits Java Flight Recorder events around phases of loading, so that GC and I/O stalls in a recording can be
+ * correlated with the phases. If the JVM doesn't have JFR, events are not emitted and the plugin runs as usual.
+ * JfrRecorder is compiled with --release 11 in src/jfr, so events are not emitted on Java 8 either.
+ *
+ * <pre>
+ * try (PhaseEvents.Span span = PhaseEvents.begin(PhaseEvents.Phase.FLUSH, table)) {
+ *     span.setRows(rows);
+ *     ...
+ * }
+ * </pre>
+ */
+public final class PhaseEvents
+{
+    private static final Logger logger = LoggerFactory.getLogger(PhaseEvents.class);
+
+    public enum Phase
+    {
+        FLUSH,
+        FINISH,
+        UPLOAD,
+        COPY,
+        CREATE_INTERMEDIATE_TABLES,
+        COMMIT;
+    }
+
+    public interface Span
+            extends AutoCloseable
+    {
+        Span setRows(long rows);
+
+        Span setBytes(long bytes);
+
+        /**
+         * Marks the phase failed. A span closed by an exception should be marked.
+         */
+        Span setFailed();
+
+        /**
+         * Ends the phase and commits the event.
+         */
+        @Override
+        void close();
+    }
+
+    interface Recorder
+    {
+        Span begin(Phase phase, String table);
+
+        Span beginAttempt(String operation, int attempt);
+    }
+
+    static final Span NOOP_SPAN = new Span() {
+        public Span setRows(long rows)
+        {
+            return this;
+        }
+
+        public Span setBytes(long bytes)
+        {
+            return this;
+        }
+
+        public Span setFailed()
+        {
+            return this;
+        }
+
+        public void close()
+        {
+        }
+    };
+
+    private static final Recorder RECORDER = loadRecorder();
+
+    private PhaseEvents()
+    {
+    }
+
+    public static Span begin(Phase phase, String table)
+    {
+        return RECORDER.begin(phase, table);
+    }
+
+    public static Span begin(Phase phase, TableIdentifier table)
+    {
+        return RECORDER.begin(phase, table == null ? null : toString(table));
+    }
+
+    /**
+     * Begins an attempt of an operation retried by withRetry. attempt starts at 1.
+     */
+    public static Span beginAttempt(String operation, int attempt)
+    {
+        return RECORDER.beginAttempt(operation, attempt);
+    }
+
+    private static String toString(TableIdentifier table)
+    {
+        StringBuilder sb = new StringBuilder();
+        if (table.getDatabase() != null) {
+            sb.append(table.getDatabase()).append('.');
+        }
+        if (table.getSchemaName() != null) {
+            sb.append(table.getSchemaName()).append('.');
+        }
+        return sb.append(table.getTableName()).toString();
+    }
+
+    private static Recorder loadRecorder()
+    {
+        try {
+            // JfrRecorder must not be loaded before it's known that jdk.jfr exists. It fails to load on Java 8.
+            Class.forName("jdk.jfr.Event", false, PhaseEvents.class.getClassLoader());
+            return (Recorder) Class.forName("org.embulk.output.jdbc.JfrRecorder").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            logger.debug("JFR events are disabled: {}", ex.toString());
+            return new Recorder() {
+                public Span begin(Phase phase, String table)
+                {
+                    return NOOP_SPAN;
+                }
+
+                public Span beginAttempt(String operation, int attempt)
+                {
+                    return NOOP_SPAN;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package org.embulk.output.jdbc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.BitSet;
+import java.util.List;
+
+import org.embulk.spi.Column;
+import org.embulk.spi.ColumnVisitor;
+import org.embulk.spi.Schema;
+import org.msgpack.core.MessageBufferPacker;
+import org.msgpack.core.MessagePack;
+import org.msgpack.core.MessageUnpacker;
+import org.msgpack.value.Value;
+
+/**
+ * Records saved for retry in a temporary file.
+ * Records are read sequentially, and removed records are skipped without rewriting the file.
+ */
+public class RecordJournal
+{
+    private static final byte BOOLEAN = 0;
+    private static final byte LONG = 1;
+    private static final byte DOUBLE = 2;
+    private static final byte STRING = 3;
+    private static final byte TIMESTAMP = 4;
+    private static final byte JSON = 5;
+
+    private final List<Column> columns;
+    private final byte[] types;
+
+    private File file;
+    private DataOutputStream out;
+    // number of rows written to the file
+    private int rows;
+    // number of rows excepting removed rows
+    private int size;
+    private final BitSet removed;
+
+    private DataInputStream in;
+    // number of rows read from the file, and number of them excepting removed rows
+    private int readRows;
+    private int readSize;
+    private boolean currentReadable;
+    // holds the last read row
+    private final ColumnarRecordBuffer current;
+    private final Record currentRecord;
+    private byte[] bytes;
+
+    public RecordJournal(Schema schema)
+    {
+        this.columns = schema.getColumns();
+        this.types = new byte[columns.size()];
+        for (Column column : columns) {
+            column.visit(new ColumnVisitor() {
+                public void booleanColumn(Column column)
+                {
+                    types[column.getIndex()] = BOOLEAN;
+                }
+
+                public void longColumn(Column column)
+                {
+                    types[column.getIndex()] = LONG;
+                }
+
+                public void doubleColumn(Column column)
+                {
+                    types[column.getIndex()] = DOUBLE;
+                }
+
+                public void stringColumn(Column column)
+                {
+                    types[column.getIndex()] = STRING;
+                }
+
+                public void jsonColumn(Column column)
+                {
+                    types[column.getIndex()] = JSON;
+                }
+
+                public void timestampColumn(Column column)
+                {
+                    types[column.getIndex()] = TIMESTAMP;
+                }
+            });
+        }
+        this.removed = new BitSet();
+        this.current = new ColumnarRecordBuffer(schema);
+        this.currentRecord = current.getRecord(0);
+        this.bytes = new byte[1024];
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public long getFileSize()
+    {
+        return file == null ? 0 : file.length();
+    }
+
+    /**
+     * Appends all rows of the buffer.
+     */
+    public void append(ColumnarRecordBuffer buffer) throws IOException
+    {
+        if (out == null) {
+            file = File.createTempFile("embulk-output-jdbc-retry-", ".tmp");
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        }
+        closeInput();
+        for (int row = 0; row < buffer.size(); row++) {
+            writeRow(out, buffer, row);
+        }
+        rows += buffer.size();
+        size += buffer.size();
+    }
+
+    /**
+     * Returns the index-th record excepting removed records.
+     * The record is valid until the next record is got.
+     */
+    public Record get(int index) throws IOException
+    {
+        seek(index);
+        return currentRecord;
+    }
+
+    /**
+     * Removes records excepting those whose bits are set, in a single pass without rewriting the file.
+     */
+    public void retainRecords(BitSet retained) throws IOException
+    {
+        closeInput();
+        int index = 0;
+        for (int row = 0; row < rows; row++) {
+            if (!removed.get(row)) {
+                if (!retained.get(index)) {
+                    removed.set(row);
+                    size--;
+                }
+                index++;
+            }
+        }
+    }
+
+    /**
+     * Removes records excepting the last retainedRecords records.
+     * The file is rewritten with the retained records.
+     */
+    public void retainLastRecords(int retainedRecords) throws IOException
+    {
+        if (retainedRecords <= 0) {
+            clear();
+            return;
+        }
+        if (retainedRecords >= size) {
+            return;
+        }
+
+        File newFile = File.createTempFile("embulk-output-jdbc-retry-", ".tmp");
+        int skipped = size - retainedRecords;
+        try (DataOutputStream newOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(newFile)))) {
+            for (int i = skipped; i < size; i++) {
+                seek(i);
+                writeRow(newOut, current, 0);
+            }
+        }
+        clear();
+        file = newFile;
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        rows = retainedRecords;
+        size = retainedRecords;
+    }
+
+    public void clear() throws IOException
+    {
+        closeInput();
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+        if (file != null) {
+            file.delete();
+            file = null;
+        }
+        rows = 0;
+        size = 0;
+        removed.clear();
+    }
+
+    private void seek(int index) throws IOException
+    {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(String.format("Index: %d, Size: %d", index, size));
+        }
+        if (currentReadable && index == readSize - 1) {
+            return;
+        }
+        if (in == null || index < readSize) {
+            closeInput();
+            out.flush();
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        }
+        while (true) {
+            current.clear();
+            readRow(in, current);
+            readRows++;
+            if (!removed.get(readRows - 1)) {
+                readSize++;
+                if (readSize - 1 == index) {
+                    currentReadable = true;
+                    return;
+                }
+            }
+        }
+    }
+
+    private void closeInput() throws IOException
+    {
+        if (in != null) {
+            in.close();
+            in = null;
+        }
+        readRows = 0;
+        readSize = 0;
+        currentReadable = false;
+    }
+
+    private void writeRow(DataOutputStream out, ColumnarRecordBuffer buffer, int row) throws IOException
+    {
+        for (Column column : columns) {
+            if (buffer.isNull(row, column)) {
+                out.writeBoolean(false);
+                continue;
+            }
+            out.writeBoolean(true);
+            switch (types[column.getIndex()]) {
+            case BOOLEAN:
+                out.writeBoolean(buffer.getBoolean(row, column));
+                break;
+            case LONG:
+                out.writeLong(buffer.getLong(row, column));
+                break;
+            case DOUBLE:
+                out.writeDouble(buffer.getDouble(row, column));
+                break;
+            case STRING:
+                writeBytes(out, buffer.getString(row, column).getBytes(StandardCharsets.UTF_8));
+                break;
+            case TIMESTAMP:
+                Instant instant = buffer.getTimestamp(row, column);
+                out.writeLong(instant.getEpochSecond());
+                out.writeInt(instant.getNano());
+                break;
+            default:
+                try (MessageBufferPacker packer = MessagePack.newDefaultBufferPacker()) {
+                    packer.packValue(buffer.getJson(row, column));
+                    writeBytes(out, packer.toByteArray());
+                }
+                break;
+            }
+        }
+    }
+
+    private void readRow(DataInputStream in, ColumnarRecordBuffer buffer) throws IOException
+    {
+        int row = buffer.addRow();
+        for (Column column : columns) {
+            if (!in.readBoolean()) {
+                continue;
+            }
+            switch (types[column.getIndex()]) {
+            case BOOLEAN:
+                buffer.setBoolean(row, column, in.readBoolean());
+                break;
+            case LONG:
+                buffer.setLong(row, column, in.readLong());
+                break;
+            case DOUBLE:
+                buffer.setDouble(row, column, in.readDouble());
+                break;
+            case STRING:
+                int length = readBytes(in);
+                buffer.setString(row, column, new String(bytes, 0, length, StandardCharsets.UTF_8));
+                break;
+            case TIMESTAMP:
+                long seconds = in.readLong();
+                buffer.setTimestamp(row, column, Instant.ofEpochSecond(seconds, in.readInt()));
+                break;
+            default:
+                int size = readBytes(in);
+                try (MessageUnpacker unpacker = MessagePack.newDefaultUnpacker(bytes, 0, size)) {
+                    Value value = unpacker.unpackValue();
+                    buffer.setJson(row, column, value);
+                }
+                break;
+            }
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException
+    {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private int readBytes(DataInputStream in) throws IOException
+    {
+        int length = in.readInt();
+        if (bytes.length < length) {
+            bytes = new byte[Math.max(length, bytes.length * 2)];
+        }
+        in.readFully(bytes, 0, length);
+        return length;
+    }
+}
@@ -0,0 +1,130 @@
+package org.embulk.output.jdbc;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.embulk.spi.Column;
+import org.embulk.spi.ColumnVisitor;
+import org.embulk.spi.Schema;
+
+/**
+ * Local file to which rows rejected by the database are written in JSON Lines.
+ * Each line has SQLState, the error code and the message of the error, and values of the row.
+ * The file is created when the first row is rejected.
+ */
+public class RejectFile
+        implements AutoCloseable
+{
+    private final File file;
+    private final List<Column> columns;
+    private final JsonFactory factory;
+    private JsonGenerator generator;
+    private long rejectedRows;
+
+    public RejectFile(String path, Schema schema)
+    {
+        this.file = new File(path);
+        this.columns = schema.getColumns();
+        this.factory = new JsonFactory();
+    }
+
+    public String getPath()
+    {
+        return file.getPath();
+    }
+
+    public long getRejectedRows()
+    {
+        return rejectedRows;
+    }
+
+    public void write(final Record record, SQLException cause) throws IOException
+    {
+        if (generator == null) {
+            generator = factory.createGenerator(new BufferedOutputStream(new FileOutputStream(file)), JsonEncoding.UTF8);
+            generator.setRootValueSeparator(null);
+        }
+
+        // BatchUpdateException of some drivers has the error of the row as the next exception
+        SQLException error = cause.getNextException() != null ? cause.getNextException() : cause;
+
+        generator.writeStartObject();
+        generator.writeStringField("sql_state", error.getSQLState());
+        generator.writeNumberField("error_code", error.getErrorCode());
+        generator.writeStringField("message", error.getMessage());
+        generator.writeObjectFieldStart("record");
+        for (Column column : columns) {
+            generator.writeFieldName(column.getName());
+            if (record.isNull(column)) {
+                generator.writeNull();
+                continue;
+            }
+            column.visit(new ColumnVisitor() {
+                public void booleanColumn(Column column)
+                {
+                    write(() -> generator.writeBoolean(record.getBoolean(column)));
+                }
+
+                public void longColumn(Column column)
+                {
+                    write(() -> generator.writeNumber(record.getLong(column)));
+                }
+
+                public void doubleColumn(Column column)
+                {
+                    write(() -> generator.writeNumber(record.getDouble(column)));
+                }
+
+                public void stringColumn(Column column)
+                {
+                    write(() -> generator.writeString(record.getString(column)));
+                }
+
+                public void jsonColumn(Column column)
+                {
+                    write(() -> generator.writeRawValue(record.getJson(column).toJson()));
+                }
+
+                public void timestampColumn(Column column)
+                {
+                    write(() -> generator.writeString(record.getTimestamp(column).toString()));
+                }
+            });
+        }
+        generator.writeEndObject();
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+        generator.flush();
+        rejectedRows++;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (generator != null) {
+            generator.close();
+            generator = null;
+        }
+    }
+
+    private interface JsonWrite
+    {
+        void run() throws IOException;
+    }
+
+    private static void write(JsonWrite write)
+    {
+        try {
+            write.run();
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package org.embulk.output.jdbc;
+
+import java.util.BitSet;
+
+/**
+ * Record read from pages, which keeps read records until they are cleared so that they can be replayed for retry.
+ */
+public interface ReplayableRecord extends PageRecord
+{
+    int getReadRecordCount();
+
+    /**
+     * Returns the record which reads the read record selected by moveReplayRecord.
+     * The same instance is always returned, so that ColumnSetterVisitors can be bound to it.
+     */
+    Record getReplayRecord();
+
+    void moveReplayRecord(int index);
+
+    /**
+     * Removes read records excepting those whose bits are set, keeping their order.
+     */
+    void retainReadRecords(BitSet retained);
+
+    void clearReadRecords();
+
+    /**
+     * Clears read records excepting the last retainedRecords records,
+     * which are still necessary for retry.
+     */
+    void clearReadRecords(int retainedRecords);
+}
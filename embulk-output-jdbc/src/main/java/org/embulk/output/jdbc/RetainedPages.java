@@ -0,0 +1,108 @@
+package org.embulk.output.jdbc;
+
+import org.embulk.spi.Page;
+import org.embulk.spi.PageReader;
+import org.embulk.spi.Schema;
+
+/**
+ * Reads pages and retains them while read records refer to them.
+ * A PageReader releases its page when the next page is set, so a PageReader is created for each page
+ * and closed when the page is no longer referred to.
+ */
+public class RetainedPages
+{
+    private final Schema schema;
+    private RetainedPage currentPage;
+    private int currentRow;
+
+    public RetainedPages(Schema schema)
+    {
+        this.schema = schema;
+    }
+
+    public Schema getSchema()
+    {
+        return schema;
+    }
+
+    public void setPage(Page page)
+    {
+        if (currentPage != null) {
+            currentPage.release();
+        }
+        // the reference is held while the page is read
+        currentPage = new RetainedPage(page);
+        currentPage.reader = newPageReader(currentPage);
+        currentRow = -1;
+    }
+
+    public boolean nextRecord()
+    {
+        currentRow++;
+        return currentPage.reader.nextRecord();
+    }
+
+    public PageReader getPageReader()
+    {
+        return currentPage.reader;
+    }
+
+    public RetainedPage getCurrentPage()
+    {
+        return currentPage;
+    }
+
+    public int getCurrentRow()
+    {
+        return currentRow;
+    }
+
+    /**
+     * Returns a new PageReader which reads the page from the first row.
+     */
+    protected PageReader newPageReader(RetainedPage page)
+    {
+        PageReader reader = new PageReader(schema);
+        reader.setPage(page.getPage());
+        return reader;
+    }
+
+    public void close()
+    {
+        if (currentPage != null) {
+            currentPage.release();
+            currentPage = null;
+        }
+    }
+
+    public static class RetainedPage
+    {
+        private final Page page;
+        // closing the reader releases the page
+        private PageReader reader;
+        private int references;
+
+        private RetainedPage(Page page)
+        {
+            this.page = page;
+            this.references = 1;
+        }
+
+        public Page getPage()
+        {
+            return page;
+        }
+
+        public void retain()
+        {
+            references++;
+        }
+
+        public void release()
+        {
+            if (--references == 0) {
+                reader.close();
+            }
+        }
+    }
+}
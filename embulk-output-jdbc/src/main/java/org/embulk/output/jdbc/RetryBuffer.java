@@ -0,0 +1,37 @@
+package org.embulk.output.jdbc;
+
+import java.util.Locale;
+
+import org.embulk.config.ConfigException;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * How read records are kept for retry until they are loaded.
+ */
+public enum RetryBuffer
+{
+    // copy values of records
+    VALUES,
+    // retain pages of records, and read them again for retry
+    PAGES;
+
+    @JsonValue
+    @Override
+    public String toString()
+    {
+        return name().toLowerCase(Locale.ENGLISH);
+    }
+
+    @JsonCreator
+    public static RetryBuffer fromString(String value)
+    {
+        for (RetryBuffer buffer : values()) {
+            if (buffer.toString().equals(value)) {
+                return buffer;
+            }
+        }
+        throw new ConfigException(String.format("Unknown retry_buffer '%s'.", value));
+    }
+}
@@ -1,15 +1,30 @@
 package org.embulk.output.jdbc;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.sql.BatchUpdateException;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Date;
+import java.sql.Statement;
 import java.sql.Time;
 import java.time.Instant;
 import java.util.Optional;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -20,8 +35,18 @@ public class StandardBatchInsert
 
     private final JdbcOutputConnector connector;
     private final Optional<MergeConfig> mergeConfig;
+    private final int maxInFlightBatches;
+    private final WeightEstimator weightEstimator;
+    private final int multiRowValues;
 
     private JdbcOutputConnection connection;
+    private TableIdentifier loadTable;
+    private JdbcSchema insertSchema;
+    // rows inserted by a statement, which is 1 unless multi-row VALUES is used
+    private int rowsPerStatement;
+    // values of rows which are not bound to a multi-row statement yet
+    private RowValues pendingValues;
+    private int pendingRows;
     private PreparedStatement batch;
     private int index;
     private int batchWeight;
@@ -29,27 +54,123 @@ public class StandardBatchInsert
     private long totalRows;
     private int[] lastUpdateCounts;
 
+    // used only if maxInFlightBatches > 0
+    private ExecutorService executorService;
+    private Lane currentLane;
+    private final Deque<Lane> idleLanes = new ArrayDeque<>();
+    private final Deque<InFlightBatch> inFlightBatches = new ArrayDeque<>();
+    private final List<InFlightBatch> unconfirmedBatches = new ArrayList<>();
+    private final List<JdbcOutputConnection> laneConnections = new ArrayList<>();
+
     public StandardBatchInsert(JdbcOutputConnector connector, Optional<MergeConfig> mergeConfig) throws IOException, SQLException
+    {
+        this(connector, mergeConfig, 0);
+    }
+
+    /**
+     * If maxInFlightBatches is greater than 0, flush() returns right after submitting the batch
+     * to a background thread, and the next batch is built on another connection while it runs.
+     */
+    public StandardBatchInsert(JdbcOutputConnector connector, Optional<MergeConfig> mergeConfig,
+            int maxInFlightBatches) throws IOException, SQLException
+    {
+        this(connector, mergeConfig, maxInFlightBatches, new WeightEstimator());
+    }
+
+    /**
+     * weightEstimator should match the encoding of the driver
+     * so that batch_size corresponds to bytes sent to the database.
+     */
+    public StandardBatchInsert(JdbcOutputConnector connector, Optional<MergeConfig> mergeConfig,
+            int maxInFlightBatches, WeightEstimator weightEstimator) throws IOException, SQLException
+    {
+        this(connector, mergeConfig, maxInFlightBatches, weightEstimator, 0);
+    }
+
+    /**
+     * If multiRowValues is greater than 1, up to multiRowValues rows are inserted by an INSERT statement with
+     * multi-row VALUES, within the maximum number of parameters of the connection.
+     * Rows which don't fill a statement are inserted by a tail statement when the batch is flushed.
+     */
+    public StandardBatchInsert(JdbcOutputConnector connector, Optional<MergeConfig> mergeConfig,
+            int maxInFlightBatches, WeightEstimator weightEstimator, int multiRowValues) throws IOException, SQLException
     {
         this.connector = connector;
         this.mergeConfig = mergeConfig;
+        this.maxInFlightBatches = maxInFlightBatches;
+        this.weightEstimator = weightEstimator;
+        this.multiRowValues = multiRowValues;
     }
 
     public void prepare(TableIdentifier loadTable, JdbcSchema insertSchema) throws SQLException
     {
         this.connection = connector.connect(true);
+        this.loadTable = loadTable;
+        this.insertSchema = insertSchema;
+        this.rowsPerStatement = getRowsPerStatement(insertSchema);
+        if (rowsPerStatement > 1) {
+            this.pendingValues = new RowValues(rowsPerStatement * insertSchema.getCount());
+            this.pendingRows = 0;
+            logger.info("Inserting up to {} rows by a statement", rowsPerStatement);
+        }
         this.index = 1;  // PreparedStatement index begings from 1
         this.batchRows = 0;
         this.totalRows = 0;
         this.batch = prepareStatement(loadTable, insertSchema);
         batch.clearBatch();
+
+        if (maxInFlightBatches > 0) {
+            // each lane has its own connection because JDBC connections can't run statements concurrently.
+            laneConnections.add(connection);
+            Lane first = new Lane(connection, batch);
+            for (int i = 0; i < maxInFlightBatches; i++) {
+                this.connection = connector.connect(true);
+                laneConnections.add(connection);
+                this.batch = prepareStatement(loadTable, insertSchema);
+                batch.clearBatch();
+                idleLanes.add(new Lane(connection, batch));
+            }
+            useLane(first);
+            // merge statements of batches on different connections must not run concurrently, or a row updated by
+            // an older batch could be overwritten by it after a newer batch. a single thread runs them in order.
+            int threads = mergeConfig.isPresent() ? 1 : maxInFlightBatches;
+            this.executorService = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "embulk-output-jdbc-batch");
+                thread.setDaemon(true);
+                return thread;
+            });
+            if (mergeConfig.isPresent()) {
+                logger.info("Flushing batches asynchronously in order (max {} in-flight batches)", maxInFlightBatches);
+            } else {
+                logger.info("Flushing batches asynchronously (max {} in-flight batches)", maxInFlightBatches);
+            }
+        }
     }
 
     protected PreparedStatement prepareStatement(TableIdentifier loadTable, JdbcSchema insertSchema) throws SQLException
     {
+        if (rowsPerStatement > 1) {
+            return connection.prepareMultiRowInsertStatement(loadTable, insertSchema, rowsPerStatement);
+        }
         return connection.prepareBatchInsertStatement(loadTable, insertSchema, mergeConfig);
     }
 
+    private int getRowsPerStatement(JdbcSchema insertSchema)
+    {
+        if (multiRowValues <= 1) {
+            return 1;
+        }
+        if (mergeConfig.isPresent()) {
+            logger.warn("multi_row_values is ignored because merge statements insert a row by a statement");
+            return 1;
+        }
+        int rows = Math.min(multiRowValues, connection.getMaxMultiRowValues());
+        if (insertSchema.getCount() > 0) {
+            rows = Math.min(rows, connection.getMaxParameterCount() / insertSchema.getCount());
+        }
+        return Math.max(rows, 1);
+    }
+
     public int getBatchWeight()
     {
         return batchWeight;
@@ -57,29 +178,60 @@ public class StandardBatchInsert
 
     public void add() throws IOException, SQLException
     {
-        batch.addBatch();
+        if (pendingValues != null) {
+            pendingRows++;
+            if (pendingRows == rowsPerStatement) {
+                pendingValues.bind(batch);
+                batch.addBatch();
+                pendingValues.clear();
+                pendingRows = 0;
+            }
+        } else {
+            batch.addBatch();
+        }
         index = 1;  // PreparedStatement index begins from 1
         batchRows++;
-        batchWeight += 32;  // add weight as overhead of each rows
+        batchWeight += weightEstimator.getRowOverhead();
     }
 
     public void close() throws IOException, SQLException
     {
-        if (connection != null) {
-            connection.close();
+        if (executorService != null) {
+            executorService.shutdownNow();
+            try {
+                executorService.awaitTermination(60, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (laneConnections.isEmpty()) {
+            if (connection != null) {
+                connection.close();
+            }
+        } else {
+            for (JdbcOutputConnection con : laneConnections) {
+                con.close();
+            }
         }
     }
 
     public void flush() throws IOException, SQLException
     {
+        if (maxInFlightBatches > 0) {
+            flushAsync();
+            return;
+        }
+
         lastUpdateCounts = new int[]{};
 
         if (batchWeight == 0) return;
 
         logger.info(String.format("Loading %,d rows", batchRows));
         long startTime = System.currentTimeMillis();
+        int tailRows = pendingRows;
         try {
-            lastUpdateCounts = batch.executeBatch();  // here can't use returned value because MySQL Connector/J returns SUCCESS_NO_INFO as a batch result
+            PreparedStatement tail = prepareTailStatement(connection);
+            lastUpdateCounts = executeStatements(batch, tail, tailRows);  // here can't use returned value because MySQL Connector/J returns SUCCESS_NO_INFO as a batch result
             double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
 
             totalRows += batchRows;
@@ -93,95 +245,345 @@ public class StandardBatchInsert
         } finally {
             // clear for retry
             batch.clearBatch();
+            clearPendingValues();
             batchRows = 0;
             batchWeight = 0;
         }
     }
 
+    private void flushAsync() throws IOException, SQLException
+    {
+        lastUpdateCounts = new int[]{};
+
+        if (batchWeight != 0) {
+            logger.info(String.format("Loading %,d rows", batchRows));
+            int tailRows = pendingRows;
+            PreparedStatement tail;
+            try {
+                tail = prepareTailStatement(connection);
+            } catch (SQLException ex) {
+                failInFlightBatches(ex);
+                throw ex;
+            }
+            InFlightBatch submitted = new InFlightBatch(currentLane, batchRows, tail, tailRows);
+            currentLane = null;
+            submitted.future = executorService.submit(submitted);
+            inFlightBatches.add(submitted);
+            unconfirmedBatches.add(submitted);
+            batchRows = 0;
+            batchWeight = 0;
+
+            if (idleLanes.isEmpty()) {
+                // wait for the oldest batch to reuse its lane
+                waitInFlightBatch();
+            }
+            useLane(idleLanes.poll());
+        }
+
+        // rows of completed batches are no longer necessary for retry
+        confirmCompletedBatches();
+    }
+
+    private void waitInFlightBatch() throws IOException, SQLException
+    {
+        InFlightBatch oldest = inFlightBatches.poll();
+        try {
+            oldest.await();
+            idleLanes.add(oldest.lane);
+        } catch (IOException | SQLException ex) {
+            idleLanes.add(oldest.lane);
+            failInFlightBatches(ex);
+            throw ex;
+        }
+    }
+
+    private void failInFlightBatches(Exception cause)
+    {
+        // wait for all batches so that they don't run concurrently with retry
+        while (!inFlightBatches.isEmpty()) {
+            InFlightBatch b = inFlightBatches.poll();
+            try {
+                b.await();
+            } catch (IOException | SQLException ex) {
+                cause.addSuppressed(ex);
+            }
+            idleLanes.add(b.lane);
+        }
+
+        // rows of the current lane are not executed yet. they are cleared here and
+        // will be added again by retry together with the failed rows.
+        if (currentLane != null) {
+            try {
+                currentLane.statement.clearBatch();
+            } catch (SQLException ex) {
+                cause.addSuppressed(ex);
+            }
+        } else {
+            useLane(idleLanes.poll());
+        }
+        index = 1;
+        batchRows = 0;
+        batchWeight = 0;
+        clearPendingValues();
+
+        // update counts of all unconfirmed batches in the order of submission, so that they
+        // match with records saved for retry.
+        int rows = 0;
+        for (InFlightBatch b : unconfirmedBatches) {
+            rows += b.rows;
+        }
+        int[] counts = new int[rows];
+        int offset = 0;
+        for (InFlightBatch b : unconfirmedBatches) {
+            Arrays.fill(counts, offset, offset + b.rows, b.failed ? Statement.EXECUTE_FAILED : Statement.SUCCESS_NO_INFO);
+            if (b.updateCounts != null) {
+                System.arraycopy(b.updateCounts, 0, counts, offset, Math.min(b.updateCounts.length, b.rows));
+            }
+            offset += b.rows;
+        }
+        unconfirmedBatches.clear();
+        lastUpdateCounts = counts;
+    }
+
+    /**
+     * Moves values of rows which don't fill a multi-row statement to a new statement for the rows.
+     * Returns null if there are no such rows.
+     */
+    private PreparedStatement prepareTailStatement(JdbcOutputConnection connection) throws SQLException
+    {
+        if (pendingRows == 0) {
+            return null;
+        }
+        PreparedStatement tail = connection.prepareMultiRowInsertStatement(loadTable, insertSchema, pendingRows);
+        try {
+            pendingValues.bind(tail);
+        } catch (SQLException ex) {
+            tail.close();
+            throw ex;
+        }
+        pendingValues.clear();
+        pendingRows = 0;
+        return tail;
+    }
+
+    private void clearPendingValues()
+    {
+        if (pendingValues != null) {
+            pendingValues.clear();
+            pendingRows = 0;
+        }
+    }
+
+    /**
+     * Executes the batch and the tail statement, and returns update counts of each row.
+     * The tail statement is closed.
+     */
+    private int[] executeStatements(PreparedStatement statement, PreparedStatement tail, int tailRows) throws SQLException
+    {
+        try {
+            int[] counts;
+            try {
+                counts = toRowUpdateCounts(statement.executeBatch());
+            } catch (BatchUpdateException ex) {
+                if (rowsPerStatement == 1) {
+                    throw ex;
+                }
+                throw new BatchUpdateException(ex.getMessage(), ex.getSQLState(), ex.getErrorCode(),
+                        toRowUpdateCounts(ex.getUpdateCounts()), ex);
+            }
+            if (tail == null) {
+                return counts;
+            }
+            try {
+                tail.executeUpdate();
+            } catch (SQLException ex) {
+                // rows of the tail statement are not included in the update counts, and will be retried.
+                throw new BatchUpdateException(ex.getMessage(), ex.getSQLState(), ex.getErrorCode(), counts, ex);
+            }
+            int[] rowCounts = Arrays.copyOf(counts, counts.length + tailRows);
+            Arrays.fill(rowCounts, counts.length, rowCounts.length, Statement.SUCCESS_NO_INFO);
+            return rowCounts;
+        } finally {
+            if (tail != null) {
+                tail.close();
+            }
+        }
+    }
+
+    /**
+     * Converts update counts of multi-row statements to update counts of each row.
+     */
+    private int[] toRowUpdateCounts(int[] statementCounts)
+    {
+        if (rowsPerStatement == 1 || statementCounts == null) {
+            return statementCounts;
+        }
+        int[] counts = new int[statementCounts.length * rowsPerStatement];
+        for (int i = 0; i < statementCounts.length; i++) {
+            int count = statementCounts[i] == Statement.EXECUTE_FAILED ? Statement.EXECUTE_FAILED : Statement.SUCCESS_NO_INFO;
+            Arrays.fill(counts, i * rowsPerStatement, (i + 1) * rowsPerStatement, count);
+        }
+        return counts;
+    }
+
+    private void confirmCompletedBatches()
+    {
+        unconfirmedBatches.retainAll(inFlightBatches);
+    }
+
+    private void useLane(Lane lane)
+    {
+        this.currentLane = lane;
+        this.connection = lane.connection;
+        this.batch = lane.statement;
+        this.index = 1;
+    }
+
     @Override
     public int[] getLastUpdateCounts()
     {
         return lastUpdateCounts;
     }
 
+    @Override
+    public int getInFlightRows()
+    {
+        int rows = 0;
+        for (InFlightBatch b : inFlightBatches) {
+            rows += b.rows;
+        }
+        return rows;
+    }
+
     public void finish() throws IOException, SQLException
     {
+        if (maxInFlightBatches > 0) {
+            lastUpdateCounts = new int[]{};
+            while (!inFlightBatches.isEmpty()) {
+                waitInFlightBatch();
+            }
+            confirmCompletedBatches();
+        }
     }
 
     public void setNull(int sqlType) throws IOException, SQLException
     {
-        batch.setNull(index, sqlType);
-        nextColumn(0);
+        if (pendingValues != null) {
+            pendingValues.addNull(sqlType);
+        } else {
+            batch.setNull(index, sqlType);
+        }
+        nextColumn(weightEstimator.getNullWeight());
     }
 
     public void setBoolean(boolean v) throws IOException, SQLException
     {
-        batch.setBoolean(index, v);
-        nextColumn(1);
+        if (pendingValues != null) {
+            pendingValues.add(RowValues.BOOLEAN, v, null);
+        } else {
+            batch.setBoolean(index, v);
+        }
+        nextColumn(weightEstimator.getBooleanWeight(v));
     }
 
     public void setByte(byte v) throws IOException, SQLException
     {
-        batch.setByte(index, v);
-        nextColumn(1);
+        if (pendingValues != null) {
+            pendingValues.add(RowValues.BYTE, v, null);
+        } else {
+            batch.setByte(index, v);
+        }
+        nextColumn(weightEstimator.getByteWeight(v));
     }
 
     public void setShort(short v) throws IOException, SQLException
     {
-        batch.setShort(index, v);
-        nextColumn(2);
+        if (pendingValues != null) {
+            pendingValues.add(RowValues.SHORT, v, null);
+        } else {
+            batch.setShort(index, v);
+        }
+        nextColumn(weightEstimator.getShortWeight(v));
     }
 
     public void setInt(int v) throws IOException, SQLException
     {
-        batch.setInt(index, v);
-        nextColumn(4);
+        if (pendingValues != null) {
+            pendingValues.add(RowValues.INT, v, null);
+        } else {
+            batch.setInt(index, v);
+        }
+        nextColumn(weightEstimator.getIntWeight(v));
     }
 
     public void setLong(long v) throws IOException, SQLException
     {
-        batch.setLong(index, v);
-        nextColumn(8);
+        if (pendingValues != null) {
+            pendingValues.add(RowValues.LONG, v, null);
+        } else {
+            batch.setLong(index, v);
+        }
+        nextColumn(weightEstimator.getLongWeight(v));
     }
 
     public void setFloat(float v) throws IOException, SQLException
     {
-        batch.setFloat(index, v);
-        nextColumn(4);
+        if (pendingValues != null) {
+            pendingValues.add(RowValues.FLOAT, v, null);
+        } else {
+            batch.setFloat(index, v);
+        }
+        nextColumn(weightEstimator.getFloatWeight(v));
     }
 
     public void setDouble(double v) throws IOException, SQLException
     {
-        batch.setDouble(index, v);
-        nextColumn(8);
+        if (pendingValues != null) {
+            pendingValues.add(RowValues.DOUBLE, v, null);
+        } else {
+            batch.setDouble(index, v);
+        }
+        nextColumn(weightEstimator.getDoubleWeight(v));
     }
 
     public void setBigDecimal(BigDecimal v) throws IOException, SQLException
     {
-        // use estimated number of necessary bytes + 8 byte for the weight
-        // assuming one place needs 4 bits. ceil(v.precision() / 2.0) + 8
-        batch.setBigDecimal(index, v);
-        nextColumn((v.precision() & ~2) / 2 + 8);
+        if (pendingValues != null) {
+            pendingValues.add(RowValues.BIG_DECIMAL, v, null);
+        } else {
+            batch.setBigDecimal(index, v);
+        }
+        nextColumn(weightEstimator.getBigDecimalWeight(v));
     }
 
     public void setString(String v) throws IOException, SQLException
     {
-        batch.setString(index, v);
-        // estimate all chracters use 2 bytes; almost enough for the worst case
-        nextColumn(v.length() * 2 + 4);
+        if (pendingValues != null) {
+            pendingValues.add(RowValues.STRING, v, null);
+        } else {
+            batch.setString(index, v);
+        }
+        nextColumn(weightEstimator.getStringWeight(v));
     }
 
     public void setNString(String v) throws IOException, SQLException
     {
-        batch.setNString(index, v);
-        // estimate all chracters use 2 bytes; almost enough for the worst case
-        nextColumn(v.length() * 2 + 4);
+        if (pendingValues != null) {
+            pendingValues.add(RowValues.NSTRING, v, null);
+        } else {
+            batch.setNString(index, v);
+        }
+        nextColumn(weightEstimator.getNStringWeight(v));
     }
 
     public void setBytes(byte[] v) throws IOException, SQLException
     {
-        batch.setBytes(index, v);
-        nextColumn(v.length + 4);
+        if (pendingValues != null) {
+            pendingValues.add(RowValues.BYTES, v, null);
+        } else {
+            batch.setBytes(index, v);
+        }
+        nextColumn(weightEstimator.getBytesWeight(v));
     }
 
     public void setSqlDate(final Instant v, final Calendar cal) throws IOException, SQLException
@@ -193,28 +595,231 @@ public class StandardBatchInsert
         cal.set(Calendar.MINUTE, 0);
         cal.set(Calendar.HOUR_OF_DAY, 0);
         Date normalized = new Date(cal.getTimeInMillis());
-        batch.setDate(index, normalized, cal);
-        nextColumn(32);
+        if (pendingValues != null) {
+            pendingValues.add(RowValues.DATE, normalized, cal);
+        } else {
+            batch.setDate(index, normalized, cal);
+        }
+        nextColumn(weightEstimator.getDateWeight());
     }
 
     public void setSqlTime(final Instant v, final Calendar cal) throws IOException, SQLException
     {
         Time t = new Time(v.toEpochMilli());
-        batch.setTime(index, t, cal);
-        nextColumn(32);
+        if (pendingValues != null) {
+            pendingValues.add(RowValues.TIME, t, cal);
+        } else {
+            batch.setTime(index, t, cal);
+        }
+        nextColumn(weightEstimator.getTimeWeight());
     }
 
     public void setSqlTimestamp(final Instant v, final Calendar cal) throws IOException, SQLException
     {
         java.sql.Timestamp t = new java.sql.Timestamp(v.toEpochMilli());
         t.setNanos(v.getNano());
-        batch.setTimestamp(index, t, cal);
-        nextColumn(32);
+        if (pendingValues != null) {
+            pendingValues.add(RowValues.TIMESTAMP, t, cal);
+        } else {
+            batch.setTimestamp(index, t, cal);
+        }
+        nextColumn(weightEstimator.getTimestampWeight());
     }
 
     private void nextColumn(int weight)
     {
         index++;
-        batchWeight += weight + 4;  // add weight as overhead of each columns
+        batchWeight += weight + weightEstimator.getColumnOverhead();
+    }
+
+    /**
+     * Values of rows which are bound to a multi-row statement when the statement is filled.
+     * Calendars given by setters are shared and modified for the next values, so only their time zones are kept.
+     */
+    private static class RowValues
+    {
+        static final byte NULL = 0;
+        static final byte BOOLEAN = 1;
+        static final byte BYTE = 2;
+        static final byte SHORT = 3;
+        static final byte INT = 4;
+        static final byte LONG = 5;
+        static final byte FLOAT = 6;
+        static final byte DOUBLE = 7;
+        static final byte BIG_DECIMAL = 8;
+        static final byte STRING = 9;
+        static final byte NSTRING = 10;
+        static final byte BYTES = 11;
+        static final byte DATE = 12;
+        static final byte TIME = 13;
+        static final byte TIMESTAMP = 14;
+
+        private final byte[] types;
+        private final Object[] values;
+        private final TimeZone[] timeZones;
+        // calendars used to bind values by their time zones
+        private final Map<TimeZone, Calendar> calendars = new HashMap<>();
+        private int size;
+
+        RowValues(int capacity)
+        {
+            this.types = new byte[capacity];
+            this.values = new Object[capacity];
+            this.timeZones = new TimeZone[capacity];
+        }
+
+        void addNull(int sqlType)
+        {
+            add(NULL, sqlType, null);
+        }
+
+        void add(byte type, Object value, Calendar calendar)
+        {
+            types[size] = type;
+            values[size] = value;
+            timeZones[size] = calendar == null ? null : calendar.getTimeZone();
+            size++;
+        }
+
+        void bind(PreparedStatement statement) throws SQLException
+        {
+            for (int i = 0; i < size; i++) {
+                int index = i + 1;  // PreparedStatement index begins from 1
+                Object value = values[i];
+                switch (types[i]) {
+                case NULL:
+                    statement.setNull(index, (Integer) value);
+                    break;
+                case BOOLEAN:
+                    statement.setBoolean(index, (Boolean) value);
+                    break;
+                case BYTE:
+                    statement.setByte(index, (Byte) value);
+                    break;
+                case SHORT:
+                    statement.setShort(index, (Short) value);
+                    break;
+                case INT:
+                    statement.setInt(index, (Integer) value);
+                    break;
+                case LONG:
+                    statement.setLong(index, (Long) value);
+                    break;
+                case FLOAT:
+                    statement.setFloat(index, (Float) value);
+                    break;
+                case DOUBLE:
+                    statement.setDouble(index, (Double) value);
+                    break;
+                case BIG_DECIMAL:
+                    statement.setBigDecimal(index, (BigDecimal) value);
+                    break;
+                case STRING:
+                    statement.setString(index, (String) value);
+                    break;
+                case NSTRING:
+                    statement.setNString(index, (String) value);
+                    break;
+                case BYTES:
+                    statement.setBytes(index, (byte[]) value);
+                    break;
+                case DATE:
+                    statement.setDate(index, (Date) value, getCalendar(timeZones[i]));
+                    break;
+                case TIME:
+                    statement.setTime(index, (Time) value, getCalendar(timeZones[i]));
+                    break;
+                default:
+                    statement.setTimestamp(index, (java.sql.Timestamp) value, getCalendar(timeZones[i]));
+                    break;
+                }
+            }
+        }
+
+        private Calendar getCalendar(TimeZone timeZone)
+        {
+            return calendars.computeIfAbsent(timeZone, Calendar::getInstance);
+        }
+
+        void clear()
+        {
+            Arrays.fill(values, 0, size, null);
+            Arrays.fill(timeZones, 0, size, null);
+            size = 0;
+        }
+    }
+
+    private static class Lane
+    {
+        private final JdbcOutputConnection connection;
+        private final PreparedStatement statement;
+
+        Lane(JdbcOutputConnection connection, PreparedStatement statement)
+        {
+            this.connection = connection;
+            this.statement = statement;
+        }
+    }
+
+    private class InFlightBatch
+            implements Callable<int[]>
+    {
+        private final Lane lane;
+        private final int rows;
+        private final PreparedStatement tail;
+        private final int tailRows;
+        private Future<int[]> future;
+        private int[] updateCounts;
+        private boolean failed;
+
+        InFlightBatch(Lane lane, int rows, PreparedStatement tail, int tailRows)
+        {
+            this.lane = lane;
+            this.rows = rows;
+            this.tail = tail;
+            this.tailRows = tailRows;
+        }
+
+        @Override
+        public int[] call() throws SQLException
+        {
+            long startTime = System.currentTimeMillis();
+            try {
+                int[] counts = executeStatements(lane.statement, tail, tailRows);
+                double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
+                logger.info(String.format("> %.2f seconds (loaded %,d rows)", seconds, rows));
+                return counts;
+            } finally {
+                lane.statement.clearBatch();
+            }
+        }
+
+        void await() throws IOException, SQLException
+        {
+            try {
+                updateCounts = future.get();
+                totalRows += rows;
+                logger.info(String.format("Loaded %,d rows in total", totalRows));
+            } catch (InterruptedException ex) {
+                failed = true;
+                Thread.currentThread().interrupt();
+                throw new IOException(ex);
+            } catch (ExecutionException ex) {
+                failed = true;
+                Throwable cause = ex.getCause();
+                if (cause instanceof BatchUpdateException) {
+                    // will be used for retry
+                    updateCounts = ((BatchUpdateException) cause).getUpdateCounts();
+                    throw (BatchUpdateException) cause;
+                } else if (cause instanceof SQLException) {
+                    throw (SQLException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new SQLException(cause);
+            }
+        }
     }
 }
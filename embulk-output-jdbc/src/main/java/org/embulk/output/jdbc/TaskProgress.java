@@ -0,0 +1,65 @@
+package org.embulk.output.jdbc;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Snapshot of the progress of a task in LoadProgressMXBean.
+ */
+public class TaskProgress
+{
+    private final int taskIndex;
+    private final long rows;
+    private final long bytes;
+    private final long retries;
+    private final long batchWeight;
+    private final long inFlightRows;
+    private final int flushesInProgress;
+
+    @ConstructorProperties({"taskIndex", "rows", "bytes", "retries", "batchWeight", "inFlightRows", "flushesInProgress"})
+    public TaskProgress(int taskIndex, long rows, long bytes, long retries,
+            long batchWeight, long inFlightRows, int flushesInProgress)
+    {
+        this.taskIndex = taskIndex;
+        this.rows = rows;
+        this.bytes = bytes;
+        this.retries = retries;
+        this.batchWeight = batchWeight;
+        this.inFlightRows = inFlightRows;
+        this.flushesInProgress = flushesInProgress;
+    }
+
+    public int getTaskIndex()
+    {
+        return taskIndex;
+    }
+
+    public long getRows()
+    {
+        return rows;
+    }
+
+    public long getBytes()
+    {
+        return bytes;
+    }
+
+    public long getRetries()
+    {
+        return retries;
+    }
+
+    public long getBatchWeight()
+    {
+        return batchWeight;
+    }
+
+    public long getInFlightRows()
+    {
+        return inFlightRows;
+    }
+
+    public int getFlushesInProgress()
+    {
+        return flushesInProgress;
+    }
+}
@@ -0,0 +1,72 @@
+package org.embulk.output.jdbc;
+
+import java.time.Instant;
+
+import org.embulk.spi.Column;
+import org.embulk.spi.Page;
+import org.embulk.spi.PageReader;
+import org.msgpack.value.Value;
+
+/**
+ * Record read by PageReader.
+ * The class doesn't save read records, for BatchInserts which don't support replay.
+ * It is not a ReplayableRecord, so that rows are never replayed from it for retry.
+ */
+public class UnsavedPageReaderRecord implements PageRecord
+{
+    private final PageReader pageReader;
+
+    public UnsavedPageReaderRecord(PageReader pageReader)
+    {
+        this.pageReader = pageReader;
+    }
+
+    public void setPage(Page page)
+    {
+        pageReader.setPage(page);
+    }
+
+    public boolean nextRecord()
+    {
+        return pageReader.nextRecord();
+    }
+
+    public boolean isNull(Column column)
+    {
+        return pageReader.isNull(column);
+    }
+
+    public boolean getBoolean(Column column)
+    {
+        return pageReader.getBoolean(column);
+    }
+
+    public long getLong(Column column)
+    {
+        return pageReader.getLong(column);
+    }
+
+    public double getDouble(Column column)
+    {
+        return pageReader.getDouble(column);
+    }
+
+    public String getString(Column column)
+    {
+        return pageReader.getString(column);
+    }
+
+    public Instant getTimestamp(Column column)
+    {
+        return pageReader.getTimestamp(column).getInstant();
+    }
+
+    public Value getJson(Column column)
+    {
+        return pageReader.getJson(column);
+    }
+
+    public void close()
+    {
+    }
+}
@@ -0,0 +1,140 @@
+package org.embulk.output.jdbc;
+
+import java.math.BigDecimal;
+
+/**
+ * Estimates bytes of values sent by StandardBatchInsert, which are summed up to the weight of a batch.
+ * The default implementation follows binary protocols which send strings in UTF-8 with their lengths.
+ * Subclasses should override methods to match the encoding of the driver.
+ */
+public class WeightEstimator
+{
+    public int getRowOverhead()
+    {
+        return 32;
+    }
+
+    public int getColumnOverhead()
+    {
+        return 4;
+    }
+
+    public int getNullWeight()
+    {
+        return 0;
+    }
+
+    public int getBooleanWeight(boolean v)
+    {
+        return 1;
+    }
+
+    public int getByteWeight(byte v)
+    {
+        return 1;
+    }
+
+    public int getShortWeight(short v)
+    {
+        return 2;
+    }
+
+    public int getIntWeight(int v)
+    {
+        return 4;
+    }
+
+    public int getLongWeight(long v)
+    {
+        return 8;
+    }
+
+    public int getFloatWeight(float v)
+    {
+        return 4;
+    }
+
+    public int getDoubleWeight(double v)
+    {
+        return 8;
+    }
+
+    public int getBigDecimalWeight(BigDecimal v)
+    {
+        // bytes of the unscaled value (log2(10) / 8 = 0.416 bytes per digit) + 4 bytes for the scale
+        return (int) (v.precision() * 0.416) + 1 + 4;
+    }
+
+    public int getStringWeight(String v)
+    {
+        return utf8Length(v) + 4;
+    }
+
+    public int getNStringWeight(String v)
+    {
+        return getStringWeight(v);
+    }
+
+    public int getBytesWeight(byte[] v)
+    {
+        return v.length + 4;
+    }
+
+    public int getDateWeight()
+    {
+        return 4;
+    }
+
+    public int getTimeWeight()
+    {
+        return 8;
+    }
+
+    public int getTimestampWeight()
+    {
+        return 12;
+    }
+
+    /**
+     * Returns number of bytes of the string encoded in UTF-8, without encoding it.
+     */
+    public static int utf8Length(String v)
+    {
+        int length = v.length();
+        int bytes = length;
+        for (int i = 0; i < length; i++) {
+            char c = v.charAt(i);
+            if (c >= 0x80) {
+                if (c < 0x800) {
+                    bytes += 1;
+                } else if (Character.isSurrogate(c)) {
+                    // a surrogate pair is encoded in 4 bytes
+                    bytes += 1;
+                } else {
+                    bytes += 2;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns number of characters of the value in decimal, including the sign.
+     */
+    public static int decimalLength(long v)
+    {
+        if (v == Long.MIN_VALUE) {
+            return 20;
+        }
+        int length = 1;
+        if (v < 0) {
+            length++;
+            v = -v;
+        }
+        while (v >= 10) {
+            v /= 10;
+            length++;
+        }
+        return length;
+    }
+}
@@ -19,6 +19,23 @@ public class ColumnSetterVisitor
         this.setter = setter;
     }
 
+    /**
+     * Visits the column, and throws exceptions of the setter as they are as well as MethodHandleRowWriter.
+     * Column.visit(this) throws them wrapped in RuntimeException instead.
+     */
+    public void visit(Column column) throws IOException, SQLException
+    {
+        try {
+            column.visit(this);
+        } catch (SetterException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw (SQLException) cause;
+        }
+    }
+
     @Override
     public void booleanColumn(Column column)
     {
@@ -29,8 +46,7 @@ public class ColumnSetterVisitor
                 setter.booleanValue(record.getBoolean(column));
             }
         } catch (IOException | SQLException ex) {
-            // TODO exception class
-            throw new RuntimeException(ex);
+            throw new SetterException(ex);
         }
     }
 
@@ -44,8 +60,7 @@ public class ColumnSetterVisitor
                 setter.longValue(record.getLong(column));
             }
         } catch (IOException | SQLException ex) {
-            // TODO exception class
-            throw new RuntimeException(ex);
+            throw new SetterException(ex);
         }
     }
 
@@ -59,8 +74,7 @@ public class ColumnSetterVisitor
                 setter.doubleValue(record.getDouble(column));
             }
         } catch (IOException | SQLException ex) {
-            // TODO exception class
-            throw new RuntimeException(ex);
+            throw new SetterException(ex);
         }
     }
 
@@ -74,8 +88,7 @@ public class ColumnSetterVisitor
                 setter.stringValue(record.getString(column));
             }
         } catch (IOException | SQLException ex) {
-            // TODO exception class
-            throw new RuntimeException(ex);
+            throw new SetterException(ex);
         }
     }
 
@@ -89,8 +102,7 @@ public class ColumnSetterVisitor
                 setter.jsonValue(record.getJson(column));
             }
         } catch (IOException | SQLException ex) {
-            // TODO exception class
-            throw new RuntimeException(ex);
+            throw new SetterException(ex);
         }
     }
 
@@ -104,8 +116,17 @@ public class ColumnSetterVisitor
                 setter.timestampValue(record.getTimestamp(column));
             }
         } catch (IOException | SQLException ex) {
-            // TODO exception class
-            throw new RuntimeException(ex);
+            throw new SetterException(ex);
+        }
+    }
+
+    // wraps exceptions of the setter, which ColumnVisitor can't throw
+    private static class SetterException
+            extends RuntimeException
+    {
+        SetterException(Exception cause)
+        {
+            super(cause);
         }
     }
 }
@@ -0,0 +1,388 @@
+package org.embulk.output.jdbc.setter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.embulk.output.jdbc.Record;
+import org.embulk.spi.Column;
+import org.embulk.spi.ColumnVisitor;
+import org.msgpack.value.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes a record to BatchInsert through ColumnSetters, like ColumnSetterVisitor does for each column.
+ * A MethodHandle is built once for each column. It is bound to the exact classes of the record and the setter
+ * and to the type of the column. The MethodHandles are held in static final fields of a class generated for the
+ * schema, so the JIT treats them as constants and inlines the calls for each column without dispatching through
+ * Column.visit and megamorphic call sites. The generated write() calls methods of up to CHUNK_SIZE columns,
+ * so that the size of a compiled method doesn't grow with the number of columns.
+ * Exceptions thrown by setters are thrown as they are.
+ */
+public abstract class MethodHandleRowWriter
+{
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandleRowWriter.class);
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    // max number of columns written by a generated method
+    static final int CHUNK_SIZE = 8;
+
+    private static final String GENERATED_CLASS = "org/embulk/output/jdbc/setter/GeneratedMethodHandleRowWriter";
+    private static final String WRITER_CLASS = "org/embulk/output/jdbc/setter/MethodHandleRowWriter";
+    private static final String METHOD_HANDLE_CLASS = "java/lang/invoke/MethodHandle";
+
+    protected MethodHandleRowWriter()
+    {
+    }
+
+    public abstract void write() throws IOException, SQLException;
+
+    /**
+     * Returns empty if the writer can't be built. ColumnSetterVisitor should be used in that case.
+     */
+    public static Optional<MethodHandleRowWriter> build(Record record, List<Column> columns, List<ColumnSetter> setters)
+    {
+        try {
+            MethodHandle[] handles = new MethodHandle[columns.size()];
+            for (int i = 0; i < handles.length; i++) {
+                handles[i] = buildColumn(record, columns.get(i), setters.get(i));
+            }
+            // each writer has its own class loader, so that the class is unloaded with the writer
+            GeneratedClassLoader loader = new GeneratedClassLoader(MethodHandleRowWriter.class.getClassLoader(), handles);
+            Class<?> type = loader.define(generateClass(handles.length));
+            return Optional.of((MethodHandleRowWriter) type.getDeclaredConstructor().newInstance());
+        } catch (ReflectiveOperationException | IOException | RuntimeException | LinkageError ex) {
+            logger.warn("Failed to build a row writer. Falling back to ColumnSetterVisitor: {}", ex.toString());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Returns the MethodHandles of the columns. This is called by the static initializer of a generated class.
+     */
+    public static MethodHandle[] getHandles(Class<?> generatedClass)
+    {
+        return ((GeneratedClassLoader) generatedClass.getClassLoader()).handles;
+    }
+
+    private static MethodHandle buildColumn(Record record, Column column, ColumnSetter setter)
+            throws ReflectiveOperationException
+    {
+        final Class<?>[] valueType = new Class<?>[1];
+        final String[] names = new String[2];
+        column.visit(new ColumnVisitor() {
+            public void booleanColumn(Column column)
+            {
+                set(boolean.class, "getBoolean", "booleanValue");
+            }
+
+            public void longColumn(Column column)
+            {
+                set(long.class, "getLong", "longValue");
+            }
+
+            public void doubleColumn(Column column)
+            {
+                set(double.class, "getDouble", "doubleValue");
+            }
+
+            public void stringColumn(Column column)
+            {
+                set(String.class, "getString", "stringValue");
+            }
+
+            public void jsonColumn(Column column)
+            {
+                set(Value.class, "getJson", "jsonValue");
+            }
+
+            public void timestampColumn(Column column)
+            {
+                set(Instant.class, "getTimestamp", "timestampValue");
+            }
+
+            private void set(Class<?> type, String getter, String setterName)
+            {
+                valueType[0] = type;
+                names[0] = getter;
+                names[1] = setterName;
+            }
+        });
+
+        // () -> boolean
+        MethodHandle isNull = MethodHandles.insertArguments(
+                findVirtual(record, Record.class, "isNull", MethodType.methodType(boolean.class, Column.class)), 0, column);
+        // () -> value
+        MethodHandle get = MethodHandles.insertArguments(
+                findVirtual(record, Record.class, names[0], MethodType.methodType(valueType[0], Column.class)), 0, column);
+        // (value) -> void
+        MethodHandle set = findVirtual(setter, ColumnSetter.class, names[1], MethodType.methodType(void.class, valueType[0]));
+        // () -> void
+        MethodHandle nullValue = findVirtual(setter, ColumnSetter.class, "nullValue", MethodType.methodType(void.class));
+
+        return MethodHandles.guardWithTest(isNull, nullValue, MethodHandles.collectArguments(set, 0, get));
+    }
+
+    /**
+     * Finds the method on the exact class of the receiver, or on declaredType if the class is not accessible,
+     * and binds the receiver.
+     */
+    private static MethodHandle findVirtual(Object receiver, Class<?> declaredType, String name, MethodType type)
+            throws ReflectiveOperationException
+    {
+        MethodHandle method;
+        try {
+            method = LOOKUP.findVirtual(receiver.getClass(), name, type);
+        } catch (IllegalAccessException ex) {
+            method = LOOKUP.findVirtual(declaredType, name, type);
+        }
+        return method.bindTo(receiver);
+    }
+
+    /**
+     * Generates a subclass of MethodHandleRowWriter which is equivalent to:
+     * <pre>
+     * public final class GeneratedMethodHandleRowWriter extends MethodHandleRowWriter {
+     *     private static final MethodHandle h0 = getHandles(GeneratedMethodHandleRowWriter.class)[0];
+     *     ...
+     *     public void write() { w0(); w1(); ... }
+     *     private static void w0() { h0.invokeExact(); ... h7.invokeExact(); }
+     *     ...
+     * }
+     * </pre>
+     * The class has no branches, so it needs no StackMapTable.
+     */
+    static byte[] generateClass(int columns) throws IOException
+    {
+        ConstantPool pool = new ConstantPool();
+        int thisClass = pool.classRef(GENERATED_CLASS);
+        int superClass = pool.classRef(WRITER_CLASS);
+        int handleType = pool.utf8("L" + METHOD_HANDLE_CLASS + ";");
+        int[] fields = new int[columns];
+        int[] fieldNames = new int[columns];
+        for (int i = 0; i < columns; i++) {
+            fieldNames[i] = pool.utf8("h" + i);
+            fields[i] = pool.memberRef(9 /* Fieldref */, thisClass, fieldNames[i], handleType);
+        }
+        int voidType = pool.utf8("()V");
+        int init = pool.utf8("<init>");
+        int superInit = pool.memberRef(10 /* Methodref */, superClass, init, voidType);
+        int getHandles = pool.memberRef(10, superClass, pool.utf8("getHandles"),
+                pool.utf8("(Ljava/lang/Class;)[L" + METHOD_HANDLE_CLASS + ";"));
+        int invokeExact = pool.memberRef(10, pool.classRef(METHOD_HANDLE_CLASS), pool.utf8("invokeExact"), voidType);
+        int chunks = (columns + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        int[] chunkNames = new int[chunks];
+        int[] chunkMethods = new int[chunks];
+        for (int c = 0; c < chunks; c++) {
+            chunkNames[c] = pool.utf8("w" + c);
+            chunkMethods[c] = pool.memberRef(10, thisClass, chunkNames[c], voidType);
+        }
+        int clinit = pool.utf8("<clinit>");
+        int write = pool.utf8("write");
+        int code = pool.utf8("Code");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xcafebabe);
+        out.writeShort(0);
+        out.writeShort(52);  // Java 8
+        pool.writeTo(out);
+        out.writeShort(0x0001 | 0x0010 | 0x0020);  // public final super
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(0);  // interfaces
+
+        out.writeShort(columns);
+        for (int i = 0; i < columns; i++) {
+            out.writeShort(0x0002 | 0x0008 | 0x0010);  // private static final
+            out.writeShort(fieldNames[i]);
+            out.writeShort(handleType);
+            out.writeShort(0);
+        }
+
+        out.writeShort(3 + chunks);
+        // public GeneratedMethodHandleRowWriter() { super(); }
+        Code body = new Code();
+        body.op(0x2a);  // aload_0
+        body.op(0xb7).u2(superInit);  // invokespecial
+        body.op(0xb1);  // return
+        writeMethod(out, 0x0001, init, voidType, code, 1, 1, body);
+
+        // static { MethodHandle[] handles = getHandles(GeneratedMethodHandleRowWriter.class); h0 = handles[0]; ... }
+        body = new Code();
+        body.op(0x13).u2(thisClass);  // ldc_w
+        body.op(0xb8).u2(getHandles);  // invokestatic
+        body.op(0x4b);  // astore_0
+        for (int i = 0; i < columns; i++) {
+            body.op(0x2a);  // aload_0
+            body.pushInt(i);
+            body.op(0x32);  // aaload
+            body.op(0xb3).u2(fields[i]);  // putstatic
+        }
+        body.op(0xb1);
+        writeMethod(out, 0x0008, clinit, voidType, code, 2, 1, body);
+
+        // public void write() { w0(); w1(); ... }
+        body = new Code();
+        for (int c = 0; c < chunks; c++) {
+            body.op(0xb8).u2(chunkMethods[c]);  // invokestatic
+        }
+        body.op(0xb1);
+        writeMethod(out, 0x0001, write, voidType, code, 0, 1, body);
+
+        // private static void wN() { h0.invokeExact(); ... }
+        for (int c = 0; c < chunks; c++) {
+            body = new Code();
+            for (int i = c * CHUNK_SIZE; i < Math.min((c + 1) * CHUNK_SIZE, columns); i++) {
+                body.op(0xb2).u2(fields[i]);  // getstatic
+                body.op(0xb6).u2(invokeExact);  // invokevirtual
+            }
+            body.op(0xb1);
+            writeMethod(out, 0x0002 | 0x0008, chunkNames[c], voidType, code, 1, 0, body);
+        }
+
+        out.writeShort(0);  // attributes
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeMethod(DataOutputStream out, int access, int name, int descriptor, int codeName,
+            int maxStack, int maxLocals, Code body) throws IOException
+    {
+        byte[] code = body.toByteArray();
+        out.writeShort(access);
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);  // attributes
+        out.writeShort(codeName);
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0);  // exception table
+        out.writeShort(0);  // attributes of Code
+    }
+
+    private static class ConstantPool
+    {
+        private final Map<String, Integer> indexes = new LinkedHashMap<>();
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private int count = 1;
+
+        int utf8(String value) throws IOException
+        {
+            Integer index = indexes.get("U" + value);
+            if (index != null) {
+                return index;
+            }
+            out.writeByte(1);
+            out.writeUTF(value);
+            return register("U" + value);
+        }
+
+        int classRef(String internalName) throws IOException
+        {
+            int name = utf8(internalName);
+            Integer index = indexes.get("C" + internalName);
+            if (index != null) {
+                return index;
+            }
+            out.writeByte(7);
+            out.writeShort(name);
+            return register("C" + internalName);
+        }
+
+        int memberRef(int tag, int owner, int name, int descriptor) throws IOException
+        {
+            String key = "N" + name + ":" + descriptor;
+            Integer nameAndType = indexes.get(key);
+            if (nameAndType == null) {
+                out.writeByte(12);
+                out.writeShort(name);
+                out.writeShort(descriptor);
+                nameAndType = register(key);
+            }
+            out.writeByte(tag);
+            out.writeShort(owner);
+            out.writeShort(nameAndType);
+            return register("M" + tag + ":" + owner + ":" + nameAndType);
+        }
+
+        private int register(String key)
+        {
+            if (count > 0xffff) {
+                throw new IllegalStateException("Too many columns to generate a row writer");
+            }
+            indexes.put(key, count);
+            return count++;
+        }
+
+        void writeTo(DataOutputStream target) throws IOException
+        {
+            out.flush();
+            if (count > 0xffff) {
+                throw new IllegalStateException("Too many columns to generate a row writer");
+            }
+            target.writeShort(count);
+            bytes.writeTo(target);
+        }
+    }
+
+    private static class Code
+            extends ByteArrayOutputStream
+    {
+        Code op(int opcode)
+        {
+            write(opcode);
+            return this;
+        }
+
+        Code u2(int value)
+        {
+            write(value >> 8);
+            write(value);
+            return this;
+        }
+
+        void pushInt(int value)
+        {
+            if (value <= 5) {
+                op(0x03 + value);  // iconst_<n>
+            } else if (value <= Byte.MAX_VALUE) {
+                op(0x10).op(value);  // bipush
+            } else {
+                op(0x11).u2(value);  // sipush
+            }
+        }
+    }
+
+    private static class GeneratedClassLoader
+            extends ClassLoader
+    {
+        private final MethodHandle[] handles;
+
+        GeneratedClassLoader(ClassLoader parent, MethodHandle[] handles)
+        {
+            super(parent);
+            this.handles = handles;
+        }
+
+        Class<?> define(byte[] bytes)
+        {
+            return defineClass(GENERATED_CLASS.replace('/', '.'), bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.embulk.output.jdbc;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class AdaptiveBatchSizeTest
+{
+    @Test
+    public void testGrowWhileThroughputImproves()
+    {
+        AdaptiveBatchSize size = new AdaptiveBatchSize(1000, 100, 10000);
+        size.onFlush(1000, 1.0, 2.0);
+        assertEquals(1250, size.getSize());
+        size.onFlush(1250, 1.25, 2.0);
+        assertEquals(1562, size.getSize());
+
+        // throughput dropped
+        size.onFlush(1562, 1.5, 4.0);
+        assertEquals(1249, size.getSize());
+    }
+
+    @Test
+    public void testBackOff()
+    {
+        AdaptiveBatchSize size = new AdaptiveBatchSize(1000, 100, 10000);
+        size.onFlush(1000, 1.0, 2.0);
+        assertEquals(1250, size.getSize());
+
+        // latency spike
+        size.onFlush(1250, 10.0, 11.0);
+        assertEquals(625, size.getSize());
+
+        size.onFailure();
+        assertEquals(312, size.getSize());
+        size.onFailure();
+        size.onFailure();
+        assertEquals(100, size.getSize());
+    }
+
+    @Test
+    public void testBounds()
+    {
+        AdaptiveBatchSize size = new AdaptiveBatchSize(100000, 100, 10000);
+        assertEquals(10000, size.getSize());
+        for (int i = 1; i <= 10; i++) {
+            size.onFlush(10000, 1.0, 10.0 / i);
+        }
+        assertEquals(10000, size.getSize());
+    }
+}
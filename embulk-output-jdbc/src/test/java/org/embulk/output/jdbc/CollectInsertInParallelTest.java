@@ -0,0 +1,174 @@
+package org.embulk.output.jdbc;
+
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import org.embulk.output.jdbc.AbstractJdbcOutputPlugin.Features;
+import org.embulk.output.jdbc.AbstractJdbcOutputPlugin.Mode;
+import org.embulk.output.jdbc.AbstractJdbcOutputPlugin.PluginTask;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CollectInsertInParallelTest
+{
+    private static final List<TableIdentifier> INTERMEDIATE_TABLES = Arrays.asList(
+            new TableIdentifier(null, null, "t_000"), new TableIdentifier(null, null, "t_001"),
+            new TableIdentifier(null, null, "t_002"), new TableIdentifier(null, null, "t_003"));
+
+    // operations of all connections in order, such as "collect 1 [t_000, t_001]" for the second connection
+    private final List<String> operations = Collections.synchronizedList(new ArrayList<>());
+    private final FakeOutputConnections<TestConnection> connector = new FakeOutputConnections<>(TestConnection::new);
+    // the connection whose commit fails, or -1
+    private int failingCommit = -1;
+    // the connection whose INSERT fails, or -1
+    private int failingCollect = -1;
+    private SQLException uniqueIndexFailure;
+
+    @Test
+    public void testCommitAll() throws Exception
+    {
+        TestConnection con = connector.open();
+        new FakePlugin(connector).doCommit(con, newTask(), 4);
+
+        // only the first transaction truncates the target table
+        assertTrue(operations.contains("truncate and collect 1 [t_000, t_001]"));
+        assertTrue(operations.contains("collect 2 [t_002, t_003]"));
+        assertEquals(Arrays.asList("commit 1", "commit 2", "close 1", "close 2"),
+                operations.subList(2, operations.size()));
+    }
+
+    @Test
+    public void testCollectFailure() throws Exception
+    {
+        failingCollect = 2;
+        TestConnection con = connector.open();
+        try {
+            new FakePlugin(connector).doCommit(con, newTask(), 4);
+            fail("doCommit should fail");
+        } catch (SQLException ex) {
+            // retryable because nothing is committed
+            assertEquals("40001", ex.getSQLState());
+        }
+        assertEquals(Arrays.asList("rollback 1", "rollback 2", "close 1", "close 2"),
+                operations.subList(operations.size() - 4, operations.size()));
+        assertFalse(operations.contains("commit 1"));
+    }
+
+    @Test
+    public void testPartialCommitFailure() throws Exception
+    {
+        failingCommit = 2;
+        TestConnection con = connector.open();
+        try {
+            new FakePlugin(connector).doCommit(con, newTask(), 4);
+            fail("doCommit should fail");
+        } catch (SQLException ex) {
+            // a retry truncates the target table again, which has rows of the first transaction
+            assertEquals("08006", ex.getSQLState());
+        }
+        assertEquals(Arrays.asList("commit 1", "commit 2", "rollback 2", "close 1", "close 2"),
+                operations.subList(2, operations.size()));
+    }
+
+    @Test
+    public void testUniqueIndexCheckFailure() throws Exception
+    {
+        uniqueIndexFailure = new SQLException("permission denied", "42501");
+        TestConnection con = connector.open();
+        new FakePlugin(connector).doCommit(con, newTask(), 4);
+
+        // rows are collected by a statement of the main connection
+        assertEquals(Arrays.asList("truncate and collectInsert 0 [t_000, t_001, t_002, t_003]"), operations);
+        assertEquals(1, connector.connections.size());
+    }
+
+    private PluginTask newTask()
+    {
+        JdbcSchema schema = new JdbcSchema(Arrays.asList(
+                JdbcColumn.newGenericTypeColumn("id", Types.BIGINT, "BIGINT", 0, 0, false, false)));
+        return FakePluginTask.of(
+                "getMode", Mode.TRUNCATE_INSERT,
+                "getCommitParallelism", 2,
+                "getIntermediateTables", Optional.of(INTERMEDIATE_TABLES),
+                "getTargetTableSchema", schema,
+                "getActualTable", new TableIdentifier(null, null, "t"),
+                "getFeatures", new Features().setParallelCommit(true));
+    }
+
+    private class TestConnection
+            extends JdbcOutputConnection
+    {
+        private final int id;
+
+        TestConnection(int id) throws SQLException
+        {
+            super(new FakeConnection().newConnection(), null);
+            this.id = id;
+        }
+
+        @Override
+        public boolean hasUniqueIndex(TableIdentifier table) throws SQLException
+        {
+            if (uniqueIndexFailure != null) {
+                throw uniqueIndexFailure;
+            }
+            return false;
+        }
+
+        @Override
+        protected void collectInsert(List<TableIdentifier> fromTables, JdbcSchema schema, TableIdentifier toTable,
+                boolean truncateDestinationFirst, Optional<String> preSql, Optional<String> postSql)
+        {
+            operations.add((truncateDestinationFirst ? "truncate and " : "") + "collectInsert " + id + " " + names(fromTables));
+        }
+
+        @Override
+        protected void collectInsertWithoutCommit(List<TableIdentifier> fromTables, JdbcSchema schema, TableIdentifier toTable,
+                boolean truncateDestinationFirst) throws SQLException
+        {
+            operations.add((truncateDestinationFirst ? "truncate and " : "") + "collect " + id + " " + names(fromTables));
+            if (id == failingCollect) {
+                throw new SQLException("Deadlock", "40001");
+            }
+        }
+
+        @Override
+        protected void commit() throws SQLException
+        {
+            operations.add("commit " + id);
+            if (id == failingCommit) {
+                throw new SQLException("Connection reset", "08006");
+            }
+        }
+
+        @Override
+        protected void rollback()
+        {
+            operations.add("rollback " + id);
+        }
+
+        @Override
+        public void close()
+        {
+            operations.add("close " + id);
+        }
+
+        private List<String> names(List<TableIdentifier> tables)
+        {
+            List<String> names = new ArrayList<>();
+            for (TableIdentifier table : tables) {
+                names.add(table.getTableName());
+            }
+            return names;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package org.embulk.output.jdbc;
+
+import java.time.Instant;
+import java.util.BitSet;
+
+import org.embulk.spi.Column;
+import org.embulk.spi.Schema;
+import org.embulk.spi.type.Types;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ColumnarRecordBufferTest
+{
+    private final Schema schema = Schema.builder()
+            .add("b", Types.BOOLEAN)
+            .add("l", Types.LONG)
+            .add("d", Types.DOUBLE)
+            .add("s", Types.STRING)
+            .add("t", Types.TIMESTAMP)
+            .build();
+    private final Column b = schema.getColumn(0);
+    private final Column l = schema.getColumn(1);
+    private final Column d = schema.getColumn(2);
+    private final Column s = schema.getColumn(3);
+    private final Column t = schema.getColumn(4);
+
+    @Test
+    public void testValues()
+    {
+        ColumnarRecordBuffer buffer = new ColumnarRecordBuffer(schema);
+        int row = buffer.addRow();
+        buffer.setBoolean(row, b, true);
+        buffer.setLong(row, l, 123L);
+        buffer.setDouble(row, d, 1.5);
+        buffer.setString(row, s, "abc");
+        buffer.setTimestamp(row, t, Instant.ofEpochSecond(1500000000L, 123456789));
+        buffer.addRow();
+
+        assertEquals(2, buffer.size());
+        Record record = buffer.getRecord(0);
+        assertEquals(true, record.getBoolean(b));
+        assertEquals(123L, record.getLong(l));
+        assertEquals(1.5, record.getDouble(d), 0.0);
+        assertEquals("abc", record.getString(s));
+        assertEquals(Instant.ofEpochSecond(1500000000L, 123456789), record.getTimestamp(t));
+
+        Record nullRecord = buffer.getRecord(1);
+        for (Column column : schema.getColumns()) {
+            assertFalse(record.isNull(column));
+            assertTrue(nullRecord.isNull(column));
+        }
+    }
+
+    @Test
+    public void testRetain()
+    {
+        ColumnarRecordBuffer buffer = new ColumnarRecordBuffer(schema);
+        // more rows than the initial capacity
+        for (int i = 0; i < 3000; i++) {
+            int row = buffer.addRow();
+            buffer.setLong(row, l, i);
+            buffer.setString(row, s, "value" + i);
+            if (i % 2 == 0) {
+                buffer.setBoolean(row, b, true);
+            }
+        }
+
+        BitSet retained = new BitSet();
+        retained.set(1, 3000);
+        buffer.retainRows(retained, 0);
+        assertEquals(2999, buffer.size());
+        assertEquals(1L, buffer.getLong(0, l));
+        assertEquals("value1", buffer.getString(0, s));
+        assertTrue(buffer.isNull(0, b));
+
+        buffer.retainLastRows(10);
+        assertEquals(10, buffer.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(2990L + i, buffer.getLong(i, l));
+            assertEquals("value" + (2990 + i), buffer.getString(i, s));
+            assertEquals(i % 2 == 0, !buffer.isNull(i, b));
+        }
+
+        int row = buffer.addRow();
+        buffer.setString(row, s, "new");
+        assertEquals("new", buffer.getString(row, s));
+        assertEquals("value2999", buffer.getString(row - 1, s));
+
+        buffer.clear();
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void testRetainRows()
+    {
+        ColumnarRecordBuffer buffer = new ColumnarRecordBuffer(schema);
+        BitSet retained = new BitSet();
+        for (int i = 0; i < 100; i++) {
+            int row = buffer.addRow();
+            buffer.setLong(row, l, i);
+            buffer.setString(row, s, "value" + i);
+            if (i % 3 == 0) {
+                // bits are offset by 5
+                retained.set(i + 5);
+            }
+        }
+
+        buffer.retainRows(retained, 5);
+        assertEquals(34, buffer.size());
+        ColumnarRecordBuffer.Cursor cursor = buffer.newCursor();
+        for (int i = 0; i < 34; i++) {
+            cursor.moveTo(i);
+            assertEquals(i * 3L, cursor.getLong(l));
+            assertEquals("value" + (i * 3), cursor.getString(s));
+            assertTrue(cursor.isNull(b));
+        }
+    }
+}
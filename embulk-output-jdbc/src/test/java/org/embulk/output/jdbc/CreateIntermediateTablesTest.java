@@ -0,0 +1,133 @@
+package org.embulk.output.jdbc;
+
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+
+import org.embulk.output.jdbc.AbstractJdbcOutputPlugin.Features;
+import org.embulk.output.jdbc.AbstractJdbcOutputPlugin.Mode;
+import org.embulk.output.jdbc.AbstractJdbcOutputPlugin.PluginTask;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CreateIntermediateTablesTest
+{
+    private static final JdbcSchema SCHEMA = new JdbcSchema(Arrays.asList(
+            JdbcColumn.newGenericTypeColumn("id", Types.BIGINT, "BIGINT", 0, 0, false, false)));
+
+    // operations of all connections in order, such as "create 0 t_..._000" for the first connection
+    private final List<String> operations = Collections.synchronizedList(new ArrayList<>());
+    private final FakeOutputConnections<TestConnection> connector = new FakeOutputConnections<>(TestConnection::new);
+    // the first creation of the table whose name ends with this fails because the table already exists
+    private static final String EXISTING_TABLE_SUFFIX = "003";
+    private volatile boolean existingTable;
+
+    @Test
+    public void testParallel() throws Exception
+    {
+        TestConnection con = connector.open();
+        List<TableIdentifier> tables = new FakePlugin(connector).createIntermediateTables(con, newTask(), 4, SCHEMA);
+
+        assertEquals(4, tables.size());
+        assertTrue(tables.get(3).getTableName().endsWith("003"));
+        // tables are divided between the connection of the caller and a new connection
+        assertEquals(2, connector.connections.size());
+        assertTrue(operations.contains("create 0 " + tables.get(1).getTableName()));
+        assertTrue(operations.contains("create 1 " + tables.get(2).getTableName()));
+        assertTrue(operations.contains("close 1"));
+        assertFalse(operations.contains("close 0"));
+    }
+
+    @Test
+    public void testRetryDropsTablesOfFailedAttempt() throws Exception
+    {
+        existingTable = true;
+        TestConnection con = connector.open();
+        List<TableIdentifier> tables = new FakePlugin(connector).createIntermediateTables(con, newTask(), 4, SCHEMA);
+        assertEquals(4, tables.size());
+
+        // the first attempt stops at the existing table, and the other connection may stop before its next table
+        List<String> created = new ArrayList<>();
+        List<String> dropped = new ArrayList<>();
+        int index = 0;
+        for (; !operations.get(index).startsWith("drop "); index++) {
+            String operation = operations.get(index);
+            if (operation.startsWith("create ") && !operation.endsWith(EXISTING_TABLE_SUFFIX)) {
+                created.add(operation.substring("create ".length() + 2));
+            }
+        }
+        for (; operations.get(index).startsWith("drop "); index++) {
+            dropped.add(operations.get(index).substring("drop ".length() + 2));
+        }
+        assertFalse(created.isEmpty());
+        // only tables created by the failed attempt are dropped, not the existing table
+        assertEquals(new HashSet<>(created), new HashSet<>(dropped));
+        assertEquals(created.size(), dropped.size());
+
+        // the second attempt creates all tables again
+        assertEquals(4, operations.subList(index, operations.size()).stream()
+                .filter(operation -> operation.startsWith("create ")).count());
+        // connections are reused by the drop and the retry
+        assertEquals(2, connector.connections.size());
+        assertEquals("close 1", operations.get(operations.size() - 1));
+    }
+
+    private PluginTask newTask()
+    {
+        return FakePluginTask.of(
+                "getMode", Mode.INSERT,
+                "getDdlParallelism", 2,
+                "getRetryLimit", 1,
+                "getActualTable", new TableIdentifier(null, null, "t"),
+                "getFeatures", new Features());
+    }
+
+    private class TestConnection
+            extends JdbcOutputConnection
+    {
+        private final int id;
+
+        TestConnection(int id) throws SQLException
+        {
+            super(new FakeConnection().newConnection(), null);
+            this.id = id;
+        }
+
+        @Override
+        public void createTable(TableIdentifier table, JdbcSchema schema,
+                Optional<String> tableConstraint, Optional<String> tableOption) throws SQLException
+        {
+            operations.add("create " + id + " " + table.getTableName());
+            if (existingTable && table.getTableName().endsWith(EXISTING_TABLE_SUFFIX)) {
+                existingTable = false;
+                throw new SQLException("Table already exists", "42P07");
+            }
+        }
+
+        @Override
+        public boolean tableExists(TableIdentifier table)
+        {
+            return true;
+        }
+
+        @Override
+        public void dropTableIfExists(TableIdentifier table)
+        {
+            operations.add("drop " + id + " " + table.getTableName());
+        }
+
+        @Override
+        public void close()
+        {
+            operations.add("close " + id);
+        }
+    }
+}
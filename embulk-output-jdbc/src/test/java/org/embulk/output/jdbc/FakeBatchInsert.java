@@ -0,0 +1,218 @@
+package org.embulk.output.jdbc;
+
+import java.math.BigDecimal;
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * BatchInsert which loads rows into a list instead of a database.
+ * Values are recorded in order of setter calls, and tests inject failures of rows or of whole batches.
+ */
+class FakeBatchInsert
+        implements BatchInsert
+{
+    // rows containing one of the values fail with a constraint violation
+    final Set<Object> failingValues = new HashSet<>();
+    // if true, update counts end at the first failed row as pgjdbc does. otherwise failed rows are EXECUTE_FAILED.
+    boolean stopAtFirstError;
+    // number of the next batches which fail with a retryable error
+    int transientFailures;
+    boolean replay = true;
+    int rowWeight = 1;
+
+    final List<List<Object>> loadedRows = new ArrayList<>();
+    final List<String> calls = new ArrayList<>();
+    // number of batches sent to the database
+    volatile int executes;
+    int finishes;
+    volatile boolean closed;
+
+    private List<Object> row = new ArrayList<>();
+    private List<List<Object>> batchRows = new ArrayList<>();
+    private int batchWeight;
+    private int[] lastUpdateCounts = new int[0];
+
+    @Override
+    public void prepare(TableIdentifier loadTable, JdbcSchema insertSchema)
+    {
+    }
+
+    @Override
+    public int getBatchWeight()
+    {
+        return batchWeight;
+    }
+
+    @Override
+    public void add()
+    {
+        batchRows.add(row);
+        row = new ArrayList<>();
+        batchWeight += rowWeight;
+    }
+
+    @Override
+    public void close()
+    {
+        closed = true;
+    }
+
+    @Override
+    public void flush() throws SQLException
+    {
+        List<List<Object>> rows = batchRows;
+        batchRows = new ArrayList<>();
+        batchWeight = 0;
+        lastUpdateCounts = new int[0];
+        if (rows.isEmpty()) {
+            return;
+        }
+        executes++;
+        if (transientFailures > 0) {
+            transientFailures--;
+            throw new BatchUpdateException("Transient failure", "40001", 0, new int[0]);
+        }
+
+        int[] counts = new int[rows.size()];
+        boolean failed = false;
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).stream().anyMatch(failingValues::contains)) {
+                failed = true;
+                if (stopAtFirstError) {
+                    counts = Arrays.copyOf(counts, i);
+                    break;
+                }
+                counts[i] = Statement.EXECUTE_FAILED;
+            } else {
+                counts[i] = 1;
+                loadedRows.add(rows.get(i));
+            }
+        }
+        lastUpdateCounts = counts;
+        if (failed) {
+            throw new BatchUpdateException("Duplicate key", "23505", 0, counts);
+        }
+    }
+
+    @Override
+    public int[] getLastUpdateCounts()
+    {
+        return lastUpdateCounts;
+    }
+
+    @Override
+    public boolean supportsReplay()
+    {
+        return replay;
+    }
+
+    @Override
+    public void finish()
+    {
+        finishes++;
+    }
+
+    private void set(String method, Object v)
+    {
+        row.add(v);
+        calls.add(method + "(" + v + ")");
+    }
+
+    @Override
+    public void setNull(int sqlType)
+    {
+        set("setNull", sqlType);
+    }
+
+    @Override
+    public void setBoolean(boolean v)
+    {
+        set("setBoolean", v);
+    }
+
+    @Override
+    public void setByte(byte v)
+    {
+        set("setByte", v);
+    }
+
+    @Override
+    public void setShort(short v)
+    {
+        set("setShort", v);
+    }
+
+    @Override
+    public void setInt(int v)
+    {
+        set("setInt", v);
+    }
+
+    @Override
+    public void setLong(long v)
+    {
+        set("setLong", v);
+    }
+
+    @Override
+    public void setFloat(float v)
+    {
+        set("setFloat", v);
+    }
+
+    @Override
+    public void setDouble(double v)
+    {
+        set("setDouble", v);
+    }
+
+    @Override
+    public void setBigDecimal(BigDecimal v)
+    {
+        set("setBigDecimal", v);
+    }
+
+    @Override
+    public void setString(String v)
+    {
+        set("setString", v);
+    }
+
+    @Override
+    public void setNString(String v)
+    {
+        set("setNString", v);
+    }
+
+    @Override
+    public void setBytes(byte[] v)
+    {
+        set("setBytes", Arrays.toString(v));
+    }
+
+    @Override
+    public void setSqlDate(Instant v, Calendar cal)
+    {
+        set("setSqlDate", v);
+    }
+
+    @Override
+    public void setSqlTime(Instant v, Calendar cal)
+    {
+        set("setSqlTime", v);
+    }
+
+    @Override
+    public void setSqlTimestamp(Instant v, Calendar cal)
+    {
+        set("setSqlTimestamp", v);
+    }
+}
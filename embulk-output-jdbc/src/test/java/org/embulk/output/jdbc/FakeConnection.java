@@ -0,0 +1,127 @@
+package org.embulk.output.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Connection which records statements prepared on it instead of running them on a database.
+ * Parameters are recorded by set* methods of the statements, and executeBatch returns or throws as tests set.
+ */
+class FakeConnection
+        implements InvocationHandler
+{
+    final List<FakeStatement> statements = new ArrayList<>();
+    // result of executeBatch of the next statements, or null to return 1 for each batch
+    int[] executeBatchCounts;
+    // thrown by executeBatch of the next statements if not null
+    SQLException executeBatchFailure;
+
+    Connection newConnection()
+    {
+        return proxy(Connection.class, this);
+    }
+
+    JdbcOutputConnector newConnector()
+    {
+        return autoCommit -> new JdbcOutputConnection(newConnection(), null);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args)
+    {
+        switch (method.getName()) {
+        case "prepareStatement":
+            FakeStatement statement = new FakeStatement((String) args[0], executeBatchCounts, executeBatchFailure);
+            statements.add(statement);
+            return proxy(PreparedStatement.class, statement);
+        case "getMetaData":
+            return proxy(DatabaseMetaData.class, (p, m, a) -> m.getName().equals("getIdentifierQuoteString") ? "\"" : null);
+        case "isClosed":
+            return false;
+        default:
+            return null;
+        }
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler)
+    {
+        return type.cast(Proxy.newProxyInstance(FakeConnection.class.getClassLoader(), new Class<?>[] {type}, handler));
+    }
+
+    static class FakeStatement
+            implements InvocationHandler
+    {
+        final String sql;
+        // parameters of each addBatch executed by executeBatch
+        final List<List<Object>> executedBatches = new ArrayList<>();
+        // parameters of each executeUpdate
+        final List<List<Object>> updates = new ArrayList<>();
+        boolean closed;
+
+        private final int[] executeBatchCounts;
+        private final SQLException executeBatchFailure;
+        private final List<List<Object>> batches = new ArrayList<>();
+        private TreeMap<Integer, Object> parameters = new TreeMap<>();
+
+        FakeStatement(String sql, int[] executeBatchCounts, SQLException executeBatchFailure)
+        {
+            this.sql = sql;
+            this.executeBatchCounts = executeBatchCounts;
+            this.executeBatchFailure = executeBatchFailure;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws SQLException
+        {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                // values are recorded with calendars if given
+                parameters.put((Integer) args[0], args.length == 2 ? args[1] : Arrays.asList(args[1], args[2]));
+                return null;
+            }
+            switch (name) {
+            case "addBatch":
+                batches.add(takeParameters());
+                return null;
+            case "clearBatch":
+                batches.clear();
+                return null;
+            case "executeBatch":
+                executedBatches.addAll(batches);
+                if (executeBatchFailure != null) {
+                    throw executeBatchFailure;
+                }
+                if (executeBatchCounts != null) {
+                    return executeBatchCounts;
+                }
+                int[] counts = new int[batches.size()];
+                Arrays.fill(counts, 1);
+                return counts;
+            case "executeUpdate":
+                updates.add(takeParameters());
+                return 1;
+            case "close":
+                closed = true;
+                return null;
+            default:
+                return null;
+            }
+        }
+
+        private List<Object> takeParameters()
+        {
+            List<Object> values = new ArrayList<>(parameters.values());
+            parameters = new TreeMap<>();
+            return values;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package org.embulk.output.jdbc;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Connector which opens connections of tests with ids in the order of opening, so that tests can tell
+ * which connection ran an operation. The first connection opened by the test itself has id 0.
+ */
+class FakeOutputConnections<C extends JdbcOutputConnection>
+        implements JdbcOutputConnector
+{
+    interface Factory<C>
+    {
+        C newConnection(int id) throws SQLException;
+    }
+
+    private final Factory<C> factory;
+    // opened connections in order
+    final List<C> connections = new ArrayList<>();
+
+    FakeOutputConnections(Factory<C> factory)
+    {
+        this.factory = factory;
+    }
+
+    C open() throws SQLException
+    {
+        C con = factory.newConnection(connections.size());
+        connections.add(con);
+        return con;
+    }
+
+    @Override
+    public JdbcOutputConnection connect(boolean autoCommit) throws SQLException
+    {
+        return open();
+    }
+}
@@ -0,0 +1,118 @@
+package org.embulk.output.jdbc;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.embulk.spi.Column;
+import org.embulk.spi.Page;
+import org.embulk.spi.PageReader;
+import org.embulk.spi.Schema;
+import org.embulk.spi.time.Timestamp;
+import org.msgpack.value.Value;
+
+/**
+ * PageReader which reads rows given by tests instead of pages.
+ * setPage starts reading the next rows added by addPage, and the given page is ignored.
+ */
+class FakePageReader
+        extends PageReader
+{
+    private final Schema schema;
+    private final Deque<Object[][]> pages = new ArrayDeque<>();
+    private Object[][] rows;
+    private int row;
+    // number of calls of close, which releases the page
+    int closes;
+
+    FakePageReader(Schema schema)
+    {
+        super(schema);
+        this.schema = schema;
+    }
+
+    FakePageReader addPage(Object[]... rows)
+    {
+        pages.add(rows);
+        return this;
+    }
+
+    @Override
+    public Schema getSchema()
+    {
+        return schema;
+    }
+
+    @Override
+    public void setPage(Page page)
+    {
+        rows = pages.poll();
+        row = -1;
+    }
+
+    @Override
+    public boolean nextRecord()
+    {
+        return rows != null && ++row < rows.length;
+    }
+
+    @Override
+    public boolean isNull(Column column)
+    {
+        return value(column) == null;
+    }
+
+    @Override
+    public boolean getBoolean(Column column)
+    {
+        return (Boolean) value(column);
+    }
+
+    @Override
+    public long getLong(Column column)
+    {
+        return ((Number) value(column)).longValue();
+    }
+
+    @Override
+    public double getDouble(Column column)
+    {
+        return ((Number) value(column)).doubleValue();
+    }
+
+    @Override
+    public String getString(Column column)
+    {
+        return (String) value(column);
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public Timestamp getTimestamp(Column column)
+    {
+        return Timestamp.ofInstant((Instant) value(column));
+    }
+
+    @Override
+    public Instant getTimestampInstant(Column column)
+    {
+        return (Instant) value(column);
+    }
+
+    @Override
+    public Value getJson(Column column)
+    {
+        return (Value) value(column);
+    }
+
+    @Override
+    public void close()
+    {
+        closes++;
+    }
+
+    private Object value(Column column)
+    {
+        return rows[row][column.getIndex()];
+    }
+}
@@ -0,0 +1,51 @@
+package org.embulk.output.jdbc;
+
+import java.util.Optional;
+
+/**
+ * Plugin whose connections are opened by a connector of tests, such as FakeOutputConnections.
+ * SQLState 40001 (serialization failure) is retryable.
+ */
+class FakePlugin
+        extends AbstractJdbcOutputPlugin
+{
+    private final JdbcOutputConnector connector;
+
+    // a plugin which doesn't open connections
+    FakePlugin()
+    {
+        this(null);
+    }
+
+    FakePlugin(JdbcOutputConnector connector)
+    {
+        this.connector = connector;
+    }
+
+    @Override
+    protected Features getFeatures(PluginTask task)
+    {
+        return new Features();
+    }
+
+    @Override
+    protected JdbcOutputConnector getConnector(PluginTask task, boolean retryableMetadataOperation)
+    {
+        if (connector == null) {
+            throw new UnsupportedOperationException();
+        }
+        return connector;
+    }
+
+    @Override
+    protected BatchInsert newBatchInsert(PluginTask task, Optional<MergeConfig> mergeConfig)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected boolean isRetryableException(String sqlState, int errorCode)
+    {
+        return "40001".equals(sqlState);
+    }
+}
@@ -0,0 +1,92 @@
+package org.embulk.output.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+import org.embulk.output.jdbc.AbstractJdbcOutputPlugin.PluginTask;
+import org.embulk.util.config.ConfigDefault;
+
+/**
+ * PluginTask which returns values set by tests, or defaults of @ConfigDefault without a config mapper.
+ * Retry is disabled by default.
+ */
+class FakePluginTask
+        implements InvocationHandler
+{
+    private final Map<String, Object> values = new HashMap<>();
+
+    private FakePluginTask()
+    {
+        values.put("getRetryLimit", 0);
+        values.put("getRetryWait", 0);
+        values.put("getMaxRetryWait", 0);
+        values.put("getTransactionId", "test");
+    }
+
+    /**
+     * keyValues are pairs of a getter name and its value, such as "getBatchSize", 100.
+     */
+    static PluginTask of(Object... keyValues)
+    {
+        FakePluginTask handler = new FakePluginTask();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            handler.values.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        return (PluginTask) Proxy.newProxyInstance(PluginTask.class.getClassLoader(),
+                new Class<?>[] {PluginTask.class}, handler);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args)
+    {
+        String name = method.getName();
+        if (name.startsWith("set") && args != null && args.length == 1) {
+            values.put("get" + name.substring(3), args[0]);
+            return null;
+        }
+        if (values.containsKey(name)) {
+            return values.get(name);
+        }
+        switch (name) {
+        case "hashCode":
+            return System.identityHashCode(proxy);
+        case "equals":
+            return proxy == args[0];
+        case "toString":
+            return "FakePluginTask" + values;
+        default:
+            return defaultValue(method);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object defaultValue(Method method)
+    {
+        Class<?> type = method.getReturnType();
+        ConfigDefault annotation = method.getAnnotation(ConfigDefault.class);
+        String value = annotation == null ? null : annotation.value();
+        if (type == Optional.class) {
+            return Optional.empty();
+        } else if (type == int.class) {
+            return value == null ? 0 : Integer.parseInt(value);
+        } else if (type == long.class) {
+            return value == null ? 0L : Long.parseLong(value);
+        } else if (type == boolean.class) {
+            return value != null && Boolean.parseBoolean(value);
+        } else if (type == Map.class) {
+            return Collections.emptyMap();
+        } else if (type == ZoneId.class) {
+            return ZoneId.of("UTC");
+        } else if (type.isEnum() && value != null) {
+            return Enum.valueOf((Class<Enum>) type, value.replace("\"", "").toUpperCase(Locale.ENGLISH));
+        }
+        return null;
+    }
+}
@@ -0,0 +1,67 @@
+package org.embulk.output.jdbc;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LoadMetricsTest
+{
+    @Test
+    public void testFlushTimePercentiles()
+    {
+        LoadMetrics metrics = new LoadMetrics();
+        // 1..100 ms
+        for (int i = 100; i >= 1; i--) {
+            metrics.recordFlush(1000, TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        metrics.addRows(500);
+        metrics.addRetries(2);
+
+        Map<String, Long> map = metrics.toMap();
+        assertEquals(Long.valueOf(500), map.get(LoadMetrics.ROWS));
+        assertEquals(Long.valueOf(100000), map.get(LoadMetrics.BYTES));
+        assertEquals(Long.valueOf(100), map.get(LoadMetrics.FLUSHES));
+        assertEquals(Long.valueOf(2), map.get(LoadMetrics.RETRIES));
+        assertEquals(Long.valueOf(50), map.get(LoadMetrics.FLUSH_TIME_P50));
+        assertEquals(Long.valueOf(90), map.get(LoadMetrics.FLUSH_TIME_P90));
+        assertEquals(Long.valueOf(99), map.get(LoadMetrics.FLUSH_TIME_P99));
+        assertEquals(Long.valueOf(100), map.get(LoadMetrics.FLUSH_TIME_MAX));
+        // flush time is included in wait time
+        assertEquals(Long.valueOf(5050), map.get(LoadMetrics.WAIT_TIME));
+    }
+
+    @Test
+    public void testNoFlush()
+    {
+        Map<String, Long> map = new LoadMetrics().toMap();
+        assertEquals(Long.valueOf(0), map.get(LoadMetrics.FLUSHES));
+        assertEquals(Long.valueOf(0), map.get(LoadMetrics.FLUSH_TIME_P50));
+        assertEquals(Long.valueOf(0), map.get(LoadMetrics.FLUSH_TIME_MAX));
+    }
+
+    @Test
+    public void testAggregate()
+    {
+        LoadMetrics task1 = new LoadMetrics();
+        task1.addRows(100);
+        task1.recordFlush(2000, TimeUnit.MILLISECONDS.toNanos(30));
+        LoadMetrics task2 = new LoadMetrics();
+        task2.addRows(200);
+        task2.setRejectedRows(3);
+        task2.recordFlush(5000, TimeUnit.MILLISECONDS.toNanos(10));
+
+        Map<String, Long> map = LoadMetrics.aggregateMaps(Arrays.asList(task1.toMap(), task2.toMap()));
+        assertEquals(Long.valueOf(2), map.get(LoadMetrics.TASKS));
+        assertEquals(Long.valueOf(300), map.get(LoadMetrics.ROWS));
+        assertEquals(Long.valueOf(3), map.get(LoadMetrics.REJECTED_ROWS));
+        assertEquals(Long.valueOf(7000), map.get(LoadMetrics.BYTES));
+        assertEquals(Long.valueOf(2), map.get(LoadMetrics.FLUSHES));
+        assertEquals(Long.valueOf(40), map.get(LoadMetrics.WAIT_TIME));
+        // the slowest task
+        assertEquals(Long.valueOf(30), map.get(LoadMetrics.FLUSH_TIME_MAX));
+    }
+}
@@ -0,0 +1,228 @@
+package org.embulk.output.jdbc;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.embulk.output.jdbc.setter.BooleanColumnSetter;
+import org.embulk.output.jdbc.setter.ColumnSetter;
+import org.embulk.output.jdbc.setter.ColumnSetterVisitor;
+import org.embulk.output.jdbc.setter.DoubleColumnSetter;
+import org.embulk.output.jdbc.setter.JsonColumnSetter;
+import org.embulk.output.jdbc.setter.LongColumnSetter;
+import org.embulk.output.jdbc.setter.MethodHandleRowWriter;
+import org.embulk.output.jdbc.setter.NullDefaultValueSetter;
+import org.embulk.output.jdbc.setter.SqlTimestampColumnSetter;
+import org.embulk.output.jdbc.setter.StringColumnSetter;
+import org.embulk.spi.Column;
+import org.embulk.spi.Schema;
+import org.embulk.spi.type.Type;
+import org.junit.Test;
+import org.msgpack.value.ValueFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MethodHandleRowWriterTest
+{
+    private static final Type[] TYPES = {
+        org.embulk.spi.type.Types.BOOLEAN,
+        org.embulk.spi.type.Types.LONG,
+        org.embulk.spi.type.Types.DOUBLE,
+        org.embulk.spi.type.Types.STRING,
+        org.embulk.spi.type.Types.JSON,
+        org.embulk.spi.type.Types.TIMESTAMP,
+    };
+
+    // 3 copies of the types, so that the 18 columns span 3 chunks of MethodHandleRowWriter
+    private static final int COPIES = 3;
+
+    @Test
+    public void testSameCallsAsVisitor() throws Exception
+    {
+        Schema.Builder builder = Schema.builder();
+        for (int copy = 0; copy < COPIES; copy++) {
+            for (int i = 0; i < TYPES.length; i++) {
+                builder.add("c" + copy + "_" + i, TYPES[i]);
+            }
+        }
+        Schema schema = builder.build();
+        List<Column> columns = schema.getColumns();
+
+        ColumnarRecordBuffer records = new ColumnarRecordBuffer(schema);
+        // a row without nulls, a row of nulls, and a row of nulls in every other column
+        for (int row = 0; row < 3; row++) {
+            int index = records.addRow();
+            for (Column column : columns) {
+                if (row == 1 || (row == 2 && column.getIndex() % 2 == 0)) {
+                    continue;
+                }
+                setValue(records, index, column);
+            }
+        }
+        ColumnarRecordBuffer.Cursor cursor = records.newCursor();
+
+        FakeBatchInsert visitorBatch = new FakeBatchInsert();
+        List<ColumnSetter> visitorSetters = newColumnSetters(visitorBatch, columns);
+        List<ColumnSetterVisitor> visitors = new ArrayList<>();
+        for (ColumnSetter setter : visitorSetters) {
+            visitors.add(new ColumnSetterVisitor(cursor, setter));
+        }
+        FakeBatchInsert writerBatch = new FakeBatchInsert();
+        MethodHandleRowWriter writer = MethodHandleRowWriter.build(cursor, columns, newColumnSetters(writerBatch, columns)).get();
+        // handles are held by a class generated for the schema
+        assertEquals("org.embulk.output.jdbc.setter.GeneratedMethodHandleRowWriter", writer.getClass().getName());
+
+        for (int row = 0; row < records.size(); row++) {
+            cursor.moveTo(row);
+            for (int i = 0; i < columns.size(); i++) {
+                columns.get(i).visit(visitors.get(i));
+            }
+            writer.write();
+        }
+
+        assertEquals(columns.size() * records.size(), visitorBatch.calls.size());
+        assertEquals(visitorBatch.calls, writerBatch.calls);
+        assertTrue(writerBatch.calls.contains("setNull(" + Types.BOOLEAN + ")"));
+        assertTrue(writerBatch.calls.contains("setSqlTimestamp(1970-01-01T00:00:01Z)"));
+    }
+
+    @Test
+    public void testSetterException() throws Exception
+    {
+        Schema schema = Schema.builder().add("id", org.embulk.spi.type.Types.LONG).build();
+        ColumnarRecordBuffer records = new ColumnarRecordBuffer(schema);
+        records.setLong(records.addRow(), schema.getColumn(0), 1L);
+        ColumnarRecordBuffer.Cursor cursor = records.newCursor();
+        cursor.moveTo(0);
+
+        final SQLException failure = new SQLIntegrityConstraintViolationException("invalid value");
+        FakeBatchInsert batch = new FakeBatchInsert();
+        JdbcColumn id = JdbcColumn.newGenericTypeColumn("id", Types.BIGINT, "BIGINT", 0, 0, false, false);
+        ColumnSetter setter = new LongColumnSetter(batch, id, new NullDefaultValueSetter(batch, id)) {
+            @Override
+            public void longValue(long v) throws IOException, SQLException
+            {
+                throw failure;
+            }
+        };
+        MethodHandleRowWriter writer = MethodHandleRowWriter.build(cursor, schema.getColumns(), Arrays.asList(setter)).get();
+        try {
+            writer.write();
+            fail("write should fail");
+        } catch (SQLException ex) {
+            // thrown as is so that the error can be rejected or retried by its SQLState
+            assertSame(failure, ex);
+        }
+        // ColumnSetterVisitor throws the same exception
+        try {
+            new ColumnSetterVisitor(cursor, setter).visit(schema.getColumn(0));
+            fail("visit should fail");
+        } catch (SQLException ex) {
+            assertSame(failure, ex);
+        }
+    }
+
+    @Test
+    public void testWideSchema() throws Exception
+    {
+        // 1000 columns span more than a hundred generated methods
+        Schema.Builder builder = Schema.builder();
+        for (int i = 0; i < 1000; i++) {
+            builder.add("c" + i, org.embulk.spi.type.Types.LONG);
+        }
+        Schema schema = builder.build();
+        ColumnarRecordBuffer records = new ColumnarRecordBuffer(schema);
+        int row = records.addRow();
+        for (Column column : schema.getColumns()) {
+            records.setLong(row, column, column.getIndex());
+        }
+        ColumnarRecordBuffer.Cursor cursor = records.newCursor();
+        cursor.moveTo(row);
+
+        FakeBatchInsert batch = new FakeBatchInsert();
+        List<ColumnSetter> setters = new ArrayList<>();
+        for (Column column : schema.getColumns()) {
+            JdbcColumn jdbcColumn = jdbcColumn(column, Types.BIGINT, "BIGINT");
+            setters.add(new LongColumnSetter(batch, jdbcColumn, new NullDefaultValueSetter(batch, jdbcColumn)));
+        }
+        MethodHandleRowWriter.build(cursor, schema.getColumns(), setters).get().write();
+
+        assertEquals(1000, batch.calls.size());
+        assertEquals("setLong(0)", batch.calls.get(0));
+        assertEquals("setLong(999)", batch.calls.get(999));
+    }
+
+    private static void setValue(ColumnarRecordBuffer records, int row, Column column)
+    {
+        switch (column.getIndex() % TYPES.length) {
+        case 0:
+            records.setBoolean(row, column, row % 2 == 0);
+            break;
+        case 1:
+            records.setLong(row, column, row * 10L + column.getIndex());
+            break;
+        case 2:
+            records.setDouble(row, column, row + column.getIndex() * 0.5);
+            break;
+        case 3:
+            records.setString(row, column, "s" + row + "_" + column.getIndex());
+            break;
+        case 4:
+            records.setJson(row, column, ValueFactory.newString("j" + row));
+            break;
+        default:
+            records.setTimestamp(row, column, Instant.ofEpochSecond(row + 1));
+            break;
+        }
+    }
+
+    private static List<ColumnSetter> newColumnSetters(BatchInsert batch, List<Column> columns)
+    {
+        List<ColumnSetter> setters = new ArrayList<>();
+        for (Column column : columns) {
+            switch (column.getIndex() % TYPES.length) {
+            case 0:
+                setters.add(new BooleanColumnSetter(batch, jdbcColumn(column, Types.BOOLEAN, "BOOLEAN"),
+                            new NullDefaultValueSetter(batch, jdbcColumn(column, Types.BOOLEAN, "BOOLEAN"))));
+                break;
+            case 1:
+                setters.add(new LongColumnSetter(batch, jdbcColumn(column, Types.BIGINT, "BIGINT"),
+                            new NullDefaultValueSetter(batch, jdbcColumn(column, Types.BIGINT, "BIGINT"))));
+                break;
+            case 2:
+                setters.add(new DoubleColumnSetter(batch, jdbcColumn(column, Types.DOUBLE, "DOUBLE PRECISION"),
+                            new NullDefaultValueSetter(batch, jdbcColumn(column, Types.DOUBLE, "DOUBLE PRECISION"))));
+                break;
+            case 3:
+                setters.add(new StringColumnSetter(batch, jdbcColumn(column, Types.VARCHAR, "VARCHAR"),
+                            new NullDefaultValueSetter(batch, jdbcColumn(column, Types.VARCHAR, "VARCHAR")), null));
+                break;
+            case 4:
+                setters.add(new JsonColumnSetter(batch, jdbcColumn(column, Types.VARCHAR, "VARCHAR"),
+                            new NullDefaultValueSetter(batch, jdbcColumn(column, Types.VARCHAR, "VARCHAR"))));
+                break;
+            default:
+                setters.add(new SqlTimestampColumnSetter(batch, jdbcColumn(column, Types.TIMESTAMP, "TIMESTAMP"),
+                            new NullDefaultValueSetter(batch, jdbcColumn(column, Types.TIMESTAMP, "TIMESTAMP")),
+                            Calendar.getInstance(TimeZone.getTimeZone("UTC"))));
+                break;
+            }
+        }
+        return setters;
+    }
+
+    private static JdbcColumn jdbcColumn(Column column, int sqlType, String typeName)
+    {
+        return JdbcColumn.newGenericTypeColumn(column.getName(), sqlType, typeName, 0, 0, false, false);
+    }
+}
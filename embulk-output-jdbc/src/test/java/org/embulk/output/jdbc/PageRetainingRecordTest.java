@@ -0,0 +1,129 @@
+package org.embulk.output.jdbc;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.embulk.spi.Column;
+import org.embulk.spi.PageReader;
+import org.embulk.spi.Schema;
+import org.embulk.spi.type.Types;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class PageRetainingRecordTest
+{
+    private final Schema schema = Schema.builder().add("id", Types.LONG).build();
+    private final Column id = schema.getColumn(0);
+
+    @Test
+    public void testReleasePages()
+    {
+        TestPages pages = new TestPages(new Object[][] {{0L}, {1L}}, new Object[][] {{2L}});
+        PageRetainingRecord record = new PageRetainingRecord(pages);
+        readPage(record);
+        readPage(record);
+        assertEquals(3, record.getReadRecordCount());
+        // the first page is retained by its records after the next page is set
+        assertEquals(0, pages.getReader(0).closes);
+
+        record.moveReplayRecord(1);
+        assertEquals(1L, record.getReplayRecord().getLong(id));
+        record.moveReplayRecord(2);
+        assertEquals(2L, record.getReplayRecord().getLong(id));
+
+        record.clearReadRecords(2);
+        assertEquals(0, pages.getReader(0).closes);
+        record.clearReadRecords(1);
+        assertEquals(1, pages.getReader(0).closes);
+        assertEquals(0, pages.getReader(1).closes);
+        record.moveReplayRecord(0);
+        assertEquals(2L, record.getReplayRecord().getLong(id));
+
+        // the current page is released when its reference for reading and those of records are released
+        record.close();
+        assertEquals(1, pages.getReader(0).closes);
+        assertEquals(1, pages.getReader(1).closes);
+    }
+
+    @Test
+    public void testRetainReadRecords()
+    {
+        TestPages pages = new TestPages(new Object[][] {{0L}, {1L}}, new Object[][] {{2L}, {3L}}, new Object[][] {{4L}});
+        PageRetainingRecord record = new PageRetainingRecord(pages);
+        readPage(record);
+        readPage(record);
+        readPage(record);
+
+        BitSet retained = new BitSet();
+        retained.set(1);
+        retained.set(4);
+        record.retainReadRecords(retained);
+        assertEquals(2, record.getReadRecordCount());
+        // no record refers to the second page
+        assertEquals(0, pages.getReader(0).closes);
+        assertEquals(1, pages.getReader(1).closes);
+        assertEquals(0, pages.getReader(2).closes);
+
+        record.moveReplayRecord(0);
+        assertEquals(1L, record.getReplayRecord().getLong(id));
+        record.moveReplayRecord(1);
+        assertEquals(4L, record.getReplayRecord().getLong(id));
+
+        record.clearReadRecords();
+        assertEquals(1, pages.getReader(0).closes);
+        assertEquals(0, pages.getReader(2).closes);
+        record.close();
+        assertEquals(1, pages.getReader(2).closes);
+    }
+
+    private void readPage(PageRetainingRecord record)
+    {
+        record.setPage(null);
+        while (record.nextRecord()) {
+            record.getLong(id);
+        }
+    }
+
+    /**
+     * Pages read by FakePageReaders. Rows of a page are given in order of setPage.
+     */
+    private class TestPages
+            extends RetainedPages
+    {
+        private final Deque<Object[][]> nextPages;
+        private final Map<RetainedPage, Object[][]> rows = new IdentityHashMap<>();
+        // the first reader of each page, which is closed when the page is released
+        private final List<FakePageReader> readers = new ArrayList<>();
+
+        TestPages(Object[][]... pages)
+        {
+            super(schema);
+            this.nextPages = new ArrayDeque<>(Arrays.asList(pages));
+        }
+
+        FakePageReader getReader(int page)
+        {
+            return readers.get(page);
+        }
+
+        @Override
+        protected PageReader newPageReader(RetainedPage page)
+        {
+            FakePageReader reader = new FakePageReader(schema);
+            if (!rows.containsKey(page)) {
+                rows.put(page, nextPages.poll());
+                readers.add(reader);
+            }
+            reader.addPage(rows.get(page));
+            reader.setPage(page.getPage());
+            return reader;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package org.embulk.output.jdbc;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertSame;
+
+public class PhaseEventsTest
+{
+    @Test
+    public void testDisabled()
+    {
+        // events are not created unless they are recorded, or if the JVM doesn't run JfrRecorder
+        assertSame(PhaseEvents.NOOP_SPAN, PhaseEvents.begin(PhaseEvents.Phase.FLUSH, "t"));
+        assertSame(PhaseEvents.NOOP_SPAN, PhaseEvents.beginAttempt("insert", 1));
+    }
+}
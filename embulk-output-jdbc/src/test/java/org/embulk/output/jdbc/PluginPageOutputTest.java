@@ -0,0 +1,353 @@
+package org.embulk.output.jdbc;
+
+import java.io.File;
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.embulk.output.jdbc.AbstractJdbcOutputPlugin.PluginPageOutput;
+import org.embulk.output.jdbc.AbstractJdbcOutputPlugin.PluginTask;
+import org.embulk.output.jdbc.setter.ColumnSetter;
+import org.embulk.output.jdbc.setter.LongColumnSetter;
+import org.embulk.output.jdbc.setter.NullDefaultValueSetter;
+import org.embulk.output.jdbc.setter.StringColumnSetter;
+import org.embulk.spi.Schema;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PluginPageOutputTest
+{
+    private final Schema schema = Schema.builder()
+            .add("id", org.embulk.spi.type.Types.LONG)
+            .add("name", org.embulk.spi.type.Types.STRING)
+            .build();
+
+    @Test
+    public void testFanOut()
+    {
+        FakeBatchInsert first = new FakeBatchInsert();
+        FakeBatchInsert second = new FakeBatchInsert();
+        FakePageReader reader = new FakePageReader(schema)
+                .addPage(row(0, "a"), row(1, "b"), row(2, "c"), row(3, "d"), row(4, "e"))
+                .addPage(row(5, "f"));
+        // each writer flushes its own batch when it exceeds 2 rows
+        PluginPageOutput output = newOutput(FakePluginTask.of(), reader, 2, first, second);
+        output.add(null);
+        output.add(null);
+        output.finish();
+        output.close();
+
+        // rows are written in round-robin continuing across pages
+        assertEquals(Arrays.asList(0L, 2L, 4L), ids(first.loadedRows));
+        assertEquals(Arrays.asList(1L, 3L, 5L), ids(second.loadedRows));
+        // a batch is flushed when it exceeds the batch size by itself
+        assertEquals(1, first.executes);
+        assertEquals(1, second.executes);
+        assertEquals(1, first.finishes);
+        assertEquals(1, second.finishes);
+        assertTrue(first.closed);
+        assertTrue(second.closed);
+    }
+
+    @Test
+    public void testRetry()
+    {
+        FakeBatchInsert batch = new FakeBatchInsert();
+        batch.transientFailures = 1;
+        FakePageReader reader = new FakePageReader(schema).addPage(row(0, "a"), row(1, "b"));
+        PluginPageOutput output = newOutput(FakePluginTask.of("getRetryLimit", 3), reader, 100, batch);
+        output.add(null);
+        output.finish();
+        output.close();
+
+        // the failed batch is built again from saved records
+        assertEquals(Arrays.asList(0L, 1L), ids(batch.loadedRows));
+        assertEquals(2, batch.executes);
+    }
+
+    @Test
+    public void testNoRetryWithoutReplay()
+    {
+        FakeBatchInsert batch = new FakeBatchInsert();
+        batch.replay = false;
+        batch.transientFailures = 1;
+        FakePageReader reader = new FakePageReader(schema).addPage(row(0, "a"), row(1, "b"));
+        PluginPageOutput output = newOutput(FakePluginTask.of("getRetryLimit", 3), reader, 100, batch);
+        output.add(null);
+        try {
+            output.finish();
+            fail("finish should fail");
+        } catch (RuntimeException ex) {
+            // rows are not saved, so the batch is not retried without them
+            assertTrue(ex.getCause() instanceof BatchUpdateException);
+        }
+        output.close();
+        assertEquals(1, batch.executes);
+        assertEquals(0, batch.finishes);
+    }
+
+    @Test
+    public void testRejectRowsAfterFirstError() throws Exception
+    {
+        FakeBatchInsert batch = new FakeBatchInsert();
+        batch.stopAtFirstError = true;
+        batch.failingValues.add("bad");
+        Object[][] rows = new Object[64][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = row((long) i, i == 5 || i == 40 ? "bad" : "good");
+        }
+        FakePageReader reader = new FakePageReader(schema).addPage(rows);
+        File file = File.createTempFile("embulk-output-jdbc-reject-", ".jsonl");
+        file.delete();
+        try (RejectFile rejectFile = new RejectFile(file.getPath(), schema)) {
+            PluginPageOutput output = newOutput(FakePluginTask.of(), reader, 1000, rejectFile, batch);
+            output.add(null);
+            output.finish();
+            output.close();
+            assertEquals(2L, rejectFile.getRejectedRows());
+        } finally {
+            file.delete();
+        }
+
+        assertEquals(62, batch.loadedRows.size());
+        // rows after the update counts are bisected instead of being loaded one by one
+        assertTrue("executes: " + batch.executes, batch.executes <= 20);
+    }
+
+    @Test
+    public void testLatencyFlush() throws Exception
+    {
+        FakeBatchInsert batch = new FakeBatchInsert();
+        FakePageReader reader = new FakePageReader(schema).addPage(row(0, "a"));
+        PluginPageOutput output = newOutput(FakePluginTask.of("getMaxBatchLatency", Optional.of(20)), reader, 100, batch);
+        output.add(null);
+        awaitExecutes(batch, 1);
+
+        // the timer flushed the batch without more rows
+        assertEquals(Arrays.asList(0L), ids(batch.loadedRows));
+        output.finish();
+        output.close();
+        assertEquals(1, batch.executes);
+    }
+
+    @Test
+    public void testNoLatencyFlushAfterClose() throws Exception
+    {
+        final AtomicBoolean flushedAfterClose = new AtomicBoolean();
+        FakeBatchInsert batch = new FakeBatchInsert() {
+            @Override
+            public void flush() throws SQLException
+            {
+                if (closed) {
+                    flushedAfterClose.set(true);
+                }
+                super.flush();
+            }
+        };
+        FakePageReader reader = new FakePageReader(schema).addPage(row(0, "a"));
+        PluginPageOutput output = newOutput(FakePluginTask.of("getMaxBatchLatency", Optional.of(4)), reader, 100, batch);
+        output.add(null);
+        synchronized (output) {
+            // the timer waits for the lock of the output, and runs after it's closed
+            Thread.sleep(20);
+            output.close();
+        }
+        Thread.sleep(5);
+        assertFalse(flushedAfterClose.get());
+    }
+
+    @Test
+    public void testLatencyFlushFailure() throws Exception
+    {
+        FakeBatchInsert batch = new FakeBatchInsert();
+        batch.failingValues.add("x");
+        FakePageReader reader = new FakePageReader(schema).addPage(row(0, "x")).addPage(row(1, "a"));
+        PluginPageOutput output = newOutput(FakePluginTask.of("getMaxBatchLatency", Optional.of(20)), reader, 100, batch);
+        output.add(null);
+        awaitExecutes(batch, 1);
+
+        // the failure of the timer is thrown by the next add and by finish
+        try {
+            output.add(null);
+            fail("add should fail");
+        } catch (RuntimeException ex) {
+            assertTrue(ex.getCause() instanceof BatchUpdateException);
+        }
+        try {
+            output.finish();
+            fail("finish should fail");
+        } catch (RuntimeException ex) {
+            assertTrue(ex.getCause() instanceof BatchUpdateException);
+        }
+        output.close();
+        assertEquals(1, batch.executes);
+        assertEquals(0, batch.finishes);
+    }
+
+    @Test
+    public void testFlushAtMinimumSizeWhenBudgetExhausted()
+    {
+        PluginTask task = FakePluginTask.of("getTransactionId", "budget", "getMaxTotalBufferBytes", Optional.of(10L));
+        FakeBatchInsert holder = new FakeBatchInsert();
+        FakeBatchInsert other = new FakeBatchInsert();
+        FakePageReader holderReader = new FakePageReader(schema)
+                .addPage(row(0, "a"), row(1, "b"), row(2, "c"), row(3, "d"), row(4, "e"), row(5, "f"))
+                .addPage(row(6, "g"));
+        FakePageReader otherReader = new FakePageReader(schema)
+                .addPage(row(10, "k"), row(11, "l"), row(12, "m"), row(13, "n"));
+        // the minimum batch size is 64 / 16 = 4 rows
+        PluginPageOutput holderOutput = newOutput(task, holderReader, 64, holder);
+        PluginPageOutput otherOutput = newOutput(task, otherReader, 64, other);
+        holderOutput.add(null);
+        otherOutput.add(null);
+        assertEquals(0, holder.executes);
+
+        // the budget of 10 rows is used up, so the next row flushes the whole batch instead of a single row
+        holderOutput.add(null);
+        assertEquals(1, holder.executes);
+        assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 4L, 5L, 6L), ids(holder.loadedRows));
+
+        holderOutput.finish();
+        holderOutput.close();
+        otherOutput.finish();
+        otherOutput.close();
+        assertEquals(1, other.executes);
+    }
+
+    @Test
+    public void testWaitForBudget() throws Exception
+    {
+        PluginTask task = FakePluginTask.of("getTransactionId", "budget", "getMaxTotalBufferBytes", Optional.of(10L));
+        FakeBatchInsert holder = new FakeBatchInsert();
+        FakeBatchInsert waiter = new FakeBatchInsert();
+        FakePageReader holderReader = new FakePageReader(schema);
+        for (int i = 0; i < 10; i++) {
+            holderReader.addPage(row((long) i, "a"));
+        }
+        PluginPageOutput holderOutput = newOutput(task, holderReader, 64, holder);
+        PluginPageOutput waiterOutput = newOutput(task,
+                new FakePageReader(schema).addPage(row(10, "k"), row(11, "l")), 64, waiter);
+        for (int i = 0; i < 10; i++) {
+            holderOutput.add(null);
+        }
+
+        Thread thread = new Thread(() -> waiterOutput.add(null));
+        thread.start();
+        long deadline = System.currentTimeMillis() + 500;
+        while (thread.getState() != Thread.State.TIMED_WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        // the small batch waits for the budget instead of being flushed row by row
+        assertEquals(Thread.State.TIMED_WAITING, thread.getState());
+        assertEquals(0, waiter.executes);
+
+        holderOutput.finish();
+        holderOutput.close();
+        thread.join();
+        waiterOutput.finish();
+        waiterOutput.close();
+        assertEquals(1, waiter.executes);
+        assertEquals(Arrays.asList(10L, 11L), ids(waiter.loadedRows));
+    }
+
+    @Test
+    public void testBudgetPerTransaction()
+    {
+        PluginTask task = FakePluginTask.of("getTransactionId", "budget", "getMaxTotalBufferBytes", Optional.of(10L));
+        PluginTask otherTask = FakePluginTask.of("getTransactionId", "other", "getMaxTotalBufferBytes", Optional.of(5L));
+        FakePageReader reader = new FakePageReader(schema);
+        for (int i = 0; i < 10; i++) {
+            reader.addPage(row((long) i, "a"));
+        }
+        PluginPageOutput output = newOutput(task, reader, 64, new FakeBatchInsert());
+        PluginPageOutput otherOutput = newOutput(otherTask,
+                new FakePageReader(schema).addPage(row(10, "k"), row(11, "l"), row(12, "m")), 64, new FakeBatchInsert());
+        for (int i = 0; i < 10; i++) {
+            output.add(null);
+        }
+        otherOutput.add(null);
+
+        BufferBudget budget = BufferBudget.open("budget", 10);
+        BufferBudget otherBudget = BufferBudget.open("other", 5);
+        try {
+            assertEquals(10, budget.getReservedBytes());
+            // the other transaction reserves its own budget with its own limit
+            assertEquals(3, otherBudget.getReservedBytes());
+            assertEquals(5, otherBudget.getLimit());
+        } finally {
+            budget.close();
+            otherBudget.close();
+        }
+
+        output.finish();
+        output.close();
+        otherOutput.finish();
+        otherOutput.close();
+        // the budget is released when all tasks of the transaction are closed
+        BufferBudget reopened = BufferBudget.open("budget", 20);
+        try {
+            assertEquals(20, reopened.getLimit());
+            assertEquals(0, reopened.getReservedBytes());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private static void awaitExecutes(FakeBatchInsert batch, int executes) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (batch.executes < executes && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(executes, batch.executes);
+    }
+
+    static Object[] row(Object... values)
+    {
+        return values;
+    }
+
+    // values of the first column
+    static List<Object> ids(List<List<Object>> rows)
+    {
+        List<Object> ids = new ArrayList<>();
+        for (List<Object> row : rows) {
+            ids.add(row.get(0));
+        }
+        return ids;
+    }
+
+    private PluginPageOutput newOutput(PluginTask task, FakePageReader reader, int batchSize, FakeBatchInsert... batches)
+    {
+        return newOutput(task, reader, batchSize, null, batches);
+    }
+
+    private PluginPageOutput newOutput(PluginTask task, FakePageReader reader, int batchSize, RejectFile rejectFile,
+            FakeBatchInsert... batches)
+    {
+        List<List<ColumnSetter>> columnSetters = new ArrayList<>();
+        for (FakeBatchInsert batch : batches) {
+            columnSetters.add(newColumnSetters(batch));
+        }
+        return new FakePlugin().new PluginPageOutput(reader, Arrays.asList(batches), columnSetters,
+                batchSize, task, null, rejectFile);
+    }
+
+    private static List<ColumnSetter> newColumnSetters(BatchInsert batch)
+    {
+        JdbcColumn id = JdbcColumn.newGenericTypeColumn("id", Types.BIGINT, "BIGINT", 0, 0, false, false);
+        JdbcColumn name = JdbcColumn.newGenericTypeColumn("name", Types.VARCHAR, "VARCHAR", 0, 0, false, false);
+        return Arrays.asList(
+                new LongColumnSetter(batch, id, new NullDefaultValueSetter(batch, id)),
+                new StringColumnSetter(batch, name, new NullDefaultValueSetter(batch, name), null));
+    }
+}
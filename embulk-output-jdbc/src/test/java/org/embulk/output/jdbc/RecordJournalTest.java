@@ -0,0 +1,108 @@
+package org.embulk.output.jdbc;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.BitSet;
+
+import org.embulk.spi.Column;
+import org.embulk.spi.Schema;
+import org.embulk.spi.type.Types;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RecordJournalTest
+{
+    private final Schema schema = Schema.builder()
+            .add("l", Types.LONG)
+            .add("s", Types.STRING)
+            .add("t", Types.TIMESTAMP)
+            .build();
+    private final Column l = schema.getColumn(0);
+    private final Column s = schema.getColumn(1);
+    private final Column t = schema.getColumn(2);
+
+    @Test
+    public void testAppendAndRetain() throws IOException
+    {
+        RecordJournal journal = new RecordJournal(schema);
+        try {
+            journal.append(newBuffer(0, 100));
+            journal.append(newBuffer(100, 200));
+            assertEquals(200, journal.size());
+
+            assertEquals("value150", journal.get(150).getString(s));
+            assertEquals(Instant.ofEpochSecond(10, 10), journal.get(10).getTimestamp(t));
+
+            // retain odd rows as retry does for failed rows
+            BitSet retained = new BitSet();
+            for (int i = 0; i < 200; i++) {
+                assertEquals((long) i, journal.get(i).getLong(l));
+                if (i % 2 != 0) {
+                    retained.set(i);
+                }
+            }
+            journal.retainRecords(retained);
+            assertEquals(100, journal.size());
+            assertEquals(1L, journal.get(0).getLong(l));
+            assertEquals(199L, journal.get(99).getLong(l));
+            assertTrue(journal.get(1).isNull(t));
+
+            journal.retainLastRecords(3);
+            assertEquals(3, journal.size());
+            assertEquals(195L, journal.get(0).getLong(l));
+            assertEquals("value199", journal.get(2).getString(s));
+
+            journal.append(newBuffer(200, 201));
+            assertEquals(4, journal.size());
+            assertEquals(200L, journal.get(3).getLong(l));
+        } finally {
+            journal.clear();
+        }
+        assertEquals(0, journal.size());
+        assertEquals(0L, journal.getFileSize());
+    }
+
+    @Test
+    public void testRetainRecords() throws IOException
+    {
+        RecordJournal journal = new RecordJournal(schema);
+        try {
+            journal.append(newBuffer(0, 100));
+            BitSet first = new BitSet();
+            first.set(1, 100);
+            journal.retainRecords(first);
+            assertEquals(99, journal.size());
+
+            // indexes skip the records removed before
+            BitSet retained = new BitSet();
+            for (int i = 0; i < 99; i++) {
+                if (i % 2 == 0) {
+                    retained.set(i);
+                }
+            }
+            journal.retainRecords(retained);
+            assertEquals(50, journal.size());
+            for (int i = 0; i < 50; i++) {
+                assertEquals(i * 2 + 1L, journal.get(i).getLong(l));
+            }
+        } finally {
+            journal.clear();
+        }
+    }
+
+    private ColumnarRecordBuffer newBuffer(int from, int to)
+    {
+        ColumnarRecordBuffer buffer = new ColumnarRecordBuffer(schema);
+        for (int i = from; i < to; i++) {
+            int row = buffer.addRow();
+            buffer.setLong(row, l, i);
+            buffer.setString(row, s, "value" + i);
+            if (i % 10 == 0) {
+                buffer.setTimestamp(row, t, Instant.ofEpochSecond(i, i));
+            }
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,62 @@
+package org.embulk.output.jdbc;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.List;
+
+import org.embulk.spi.Column;
+import org.embulk.spi.Schema;
+import org.embulk.spi.type.Types;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class RejectFileTest
+{
+    private final Schema schema = Schema.builder()
+            .add("l", Types.LONG)
+            .add("s", Types.STRING)
+            .add("t", Types.TIMESTAMP)
+            .build();
+    private final Column l = schema.getColumn(0);
+    private final Column s = schema.getColumn(1);
+    private final Column t = schema.getColumn(2);
+
+    @Test
+    public void testWrite() throws IOException
+    {
+        File file = File.createTempFile("embulk-output-jdbc-reject-", ".jsonl");
+        file.delete();
+        try {
+            ColumnarRecordBuffer buffer = new ColumnarRecordBuffer(schema);
+            int row = buffer.addRow();
+            buffer.setLong(row, l, 1L);
+            buffer.setString(row, s, "a\"b");
+            buffer.setTimestamp(row, t, Instant.ofEpochSecond(0));
+            buffer.addRow();
+
+            try (RejectFile rejectFile = new RejectFile(file.getPath(), schema)) {
+                assertFalse(file.exists());
+                rejectFile.write(buffer.getRecord(0), new SQLException("duplicate key", "23505", 0));
+                SQLException cause = new SQLException("batch failed", "22001", 1);
+                cause.setNextException(new SQLException("value too long", "22001", 2));
+                rejectFile.write(buffer.getRecord(1), cause);
+                assertEquals(2L, rejectFile.getRejectedRows());
+            }
+
+            List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+            assertEquals(2, lines.size());
+            assertEquals("{\"sql_state\":\"23505\",\"error_code\":0,\"message\":\"duplicate key\","
+                    + "\"record\":{\"l\":1,\"s\":\"a\\\"b\",\"t\":\"1970-01-01T00:00:00Z\"}}", lines.get(0));
+            assertEquals("{\"sql_state\":\"22001\",\"error_code\":2,\"message\":\"value too long\","
+                    + "\"record\":{\"l\":null,\"s\":null,\"t\":null}}", lines.get(1));
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.embulk.output.jdbc;
+
+import java.sql.BatchUpdateException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Optional;
+import java.util.TimeZone;
+
+import org.embulk.output.jdbc.FakeConnection.FakeStatement;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StandardBatchInsertTest
+{
+    private static final TableIdentifier TABLE = new TableIdentifier(null, null, "t");
+    private static final JdbcSchema SCHEMA = new JdbcSchema(Arrays.asList(
+            JdbcColumn.newGenericTypeColumn("id", Types.BIGINT, "BIGINT", 0, 0, false, false),
+            JdbcColumn.newGenericTypeColumn("name", Types.VARCHAR, "VARCHAR", 0, 0, false, false)));
+
+    @Test
+    public void testMultiRowValuesTail() throws Exception
+    {
+        FakeConnection connection = new FakeConnection();
+        StandardBatchInsert batch = new StandardBatchInsert(connection.newConnector(), Optional.empty(), 0, new WeightEstimator(), 3);
+        batch.prepare(TABLE, SCHEMA);
+        addRows(batch, 0, 7);
+        batch.flush();
+
+        // 2 statements of 3 rows are batched, and the last row is inserted by a tail statement
+        FakeStatement statement = connection.statements.get(0);
+        assertTrue(statement.sql.endsWith("VALUES (?, ?), (?, ?), (?, ?)"));
+        assertEquals(Arrays.asList(
+                Arrays.<Object>asList(0L, "name0", 1L, "name1", 2L, "name2"),
+                Arrays.<Object>asList(3L, "name3", 4L, "name4", 5L, "name5")), statement.executedBatches);
+        FakeStatement tail = connection.statements.get(1);
+        assertTrue(tail.sql.endsWith("VALUES (?, ?)"));
+        assertEquals(Arrays.asList(Arrays.<Object>asList(6L, "name6")), tail.updates);
+        assertTrue(tail.closed);
+
+        // update counts of the statements are expanded to the rows
+        int[] counts = new int[7];
+        Arrays.fill(counts, Statement.SUCCESS_NO_INFO);
+        assertArrayEquals(counts, batch.getLastUpdateCounts());
+
+        // the next batch doesn't include rows of the previous tail
+        addRows(batch, 7, 10);
+        batch.flush();
+        assertEquals(3, statement.executedBatches.size());
+        assertEquals(Arrays.<Object>asList(7L, "name7", 8L, "name8", 9L, "name9"), statement.executedBatches.get(2));
+        assertEquals(2, connection.statements.size());
+        batch.close();
+    }
+
+    @Test
+    public void testRowUpdateCountsOfFailedStatement() throws Exception
+    {
+        FakeConnection connection = new FakeConnection();
+        connection.executeBatchFailure = new BatchUpdateException("Duplicate key", "23505", 0,
+                new int[] {3, Statement.EXECUTE_FAILED});
+        StandardBatchInsert batch = new StandardBatchInsert(connection.newConnector(), Optional.empty(), 0, new WeightEstimator(), 3);
+        batch.prepare(TABLE, SCHEMA);
+        addRows(batch, 0, 7);
+        try {
+            batch.flush();
+            fail("flush should fail");
+        } catch (BatchUpdateException ex) {
+            // counts of statements are expanded to counts of their rows, and the tail row is not included
+            int[] counts = {
+                Statement.SUCCESS_NO_INFO, Statement.SUCCESS_NO_INFO, Statement.SUCCESS_NO_INFO,
+                Statement.EXECUTE_FAILED, Statement.EXECUTE_FAILED, Statement.EXECUTE_FAILED,
+            };
+            assertArrayEquals(counts, ex.getUpdateCounts());
+            assertArrayEquals(counts, batch.getLastUpdateCounts());
+            assertEquals("23505", ex.getSQLState());
+        }
+        FakeStatement tail = connection.statements.get(1);
+        assertEquals(0, tail.updates.size());
+        assertTrue(tail.closed);
+        batch.close();
+    }
+
+    @Test
+    public void testCalendarOfPendingValues() throws Exception
+    {
+        FakeConnection connection = new FakeConnection();
+        StandardBatchInsert batch = new StandardBatchInsert(connection.newConnector(), Optional.empty(), 0, new WeightEstimator(), 2);
+        batch.prepare(TABLE, new JdbcSchema(Arrays.asList(
+                JdbcColumn.newGenericTypeColumn("t", Types.TIMESTAMP, "TIMESTAMP", 0, 0, false, false))));
+        // setters share a calendar, which is changed before the pending values are bound
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        batch.setSqlTimestamp(Instant.ofEpochSecond(1), calendar);
+        batch.add();
+        calendar.setTimeZone(TimeZone.getTimeZone("Asia/Tokyo"));
+        batch.setSqlTimestamp(Instant.ofEpochSecond(2), calendar);
+        batch.add();
+        batch.flush();
+
+        List<Object> values = connection.statements.get(0).executedBatches.get(0);
+        assertEquals("UTC", ((Calendar) ((List<?>) values.get(0)).get(1)).getTimeZone().getID());
+        assertEquals("Asia/Tokyo", ((Calendar) ((List<?>) values.get(1)).get(1)).getTimeZone().getID());
+        batch.close();
+    }
+
+    private static void addRows(StandardBatchInsert batch, int from, int to) throws Exception
+    {
+        for (int i = from; i < to; i++) {
+            batch.setLong(i);
+            batch.setString("name" + i);
+            batch.add();
+        }
+    }
+}
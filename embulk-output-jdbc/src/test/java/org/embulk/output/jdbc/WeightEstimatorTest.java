@@ -0,0 +1,26 @@
+package org.embulk.output.jdbc;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class WeightEstimatorTest
+{
+    @Test
+    public void testUtf8Length()
+    {
+        for (String s : new String[] {"", "abc", "été", "日本語", "🍣 sushi"}) {
+            assertEquals(s.getBytes(StandardCharsets.UTF_8).length, WeightEstimator.utf8Length(s));
+        }
+    }
+
+    @Test
+    public void testDecimalLength()
+    {
+        for (long v : new long[] {0L, 9L, 10L, -1L, -10L, 123456789L, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            assertEquals(Long.toString(v).length(), WeightEstimator.decimalLength(v));
+        }
+    }
+}
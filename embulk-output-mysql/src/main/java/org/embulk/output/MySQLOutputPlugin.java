@@ -137,7 +137,7 @@ public class MySQLOutputPlugin
     @Override
     protected BatchInsert newBatchInsert(PluginTask task, Optional<MergeConfig> mergeConfig) throws IOException, SQLException
     {
-        return new MySQLBatchInsert(getConnector(task, true), mergeConfig);
+        return new MySQLBatchInsert(getConnector(task, true), mergeConfig, task.getMaxInFlightBatches());
     }
 
 
@@ -160,6 +160,9 @@ public class MySQLOutputPlugin
     {
         MySQLOutputConnection mySQLCon = (MySQLOutputConnection)con;
         mySQLCon.compareTimeZone();
+        if (task.getMultiRowValues().isPresent()) {
+            logger.warn("multi_row_values is ignored because the driver rewrites batches to multi-row INSERT statements");
+        }
         super.doBegin(con,task,schema,taskCount);
     }
 }
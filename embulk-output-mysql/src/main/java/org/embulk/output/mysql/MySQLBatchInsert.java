@@ -13,7 +13,12 @@ public class MySQLBatchInsert
 {
     public MySQLBatchInsert(JdbcOutputConnector connector, Optional<MergeConfig> mergeConfig) throws IOException, SQLException
     {
-        super(connector, mergeConfig);
+        super(connector, mergeConfig, 0, new MySQLWeightEstimator());
+    }
+
+    public MySQLBatchInsert(JdbcOutputConnector connector, Optional<MergeConfig> mergeConfig, int maxInFlightBatches) throws IOException, SQLException
+    {
+        super(connector, mergeConfig, maxInFlightBatches, new MySQLWeightEstimator());
     }
 
     @Override
@@ -0,0 +1,103 @@
+package org.embulk.output.mysql;
+
+import java.math.BigDecimal;
+
+import org.embulk.output.jdbc.WeightEstimator;
+
+/**
+ * Connector/J sends values as SQL literals, and rewrites batched rows into a multi-row INSERT
+ * because rewriteBatchedStatements is enabled. So a row is sent as "(value,value,...),".
+ */
+public class MySQLWeightEstimator
+        extends WeightEstimator
+{
+    @Override
+    public int getRowOverhead()
+    {
+        return 3;
+    }
+
+    @Override
+    public int getColumnOverhead()
+    {
+        return 1;
+    }
+
+    @Override
+    public int getNullWeight()
+    {
+        return 4;  // NULL
+    }
+
+    @Override
+    public int getByteWeight(byte v)
+    {
+        return decimalLength(v);
+    }
+
+    @Override
+    public int getShortWeight(short v)
+    {
+        return decimalLength(v);
+    }
+
+    @Override
+    public int getIntWeight(int v)
+    {
+        return decimalLength(v);
+    }
+
+    @Override
+    public int getLongWeight(long v)
+    {
+        return decimalLength(v);
+    }
+
+    @Override
+    public int getFloatWeight(float v)
+    {
+        return 16;
+    }
+
+    @Override
+    public int getDoubleWeight(double v)
+    {
+        return 24;
+    }
+
+    @Override
+    public int getBigDecimalWeight(BigDecimal v)
+    {
+        return v.precision() + 2;  // sign and decimal point
+    }
+
+    @Override
+    public int getStringWeight(String v)
+    {
+        return utf8Length(v) + 2;  // quotes
+    }
+
+    @Override
+    public int getBytesWeight(byte[] v)
+    {
+        return v.length + 10;  // _binary''
+    }
+
+    @Override
+    public int getDateWeight()
+    {
+        return 12;  // 'yyyy-MM-dd'
+    }
+
+    @Override
+    public int getTimeWeight()
+    {
+        return 10;  // 'HH:mm:ss'
+    }
+
+    @Override
+    public int getTimestampWeight()
+    {
+        return 28;  // 'yyyy-MM-dd HH:mm:ss.SSSSSS'
+    }
+}
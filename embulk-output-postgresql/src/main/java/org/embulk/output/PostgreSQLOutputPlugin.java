@@ -9,11 +9,16 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.Optional;
 
+import org.embulk.config.ConfigException;
 import org.embulk.output.jdbc.*;
 import org.embulk.output.jdbc.setter.ColumnSetterFactory;
+import org.embulk.output.postgresql.BinaryCopyEncoder;
+import org.embulk.output.postgresql.CopyFormat;
+import org.embulk.output.postgresql.PostgreSQLBinaryCopyBatchInsert;
 import org.embulk.output.postgresql.PostgreSQLCopyBatchInsert;
 import org.embulk.output.postgresql.PostgreSQLOutputConnector;
 import org.embulk.output.postgresql.setter.PostgreSQLColumnSetterFactory;
@@ -65,6 +70,22 @@ public class PostgreSQLOutputPlugin
         @Config("role_name")
         @ConfigDefault("null")
         public Optional<String> getRoleName();
+
+        @Config("copy_format")
+        @ConfigDefault("\"text\"")
+        public CopyFormat getCopyFormat();
+
+        @Config("copy_streaming")
+        @ConfigDefault("false")
+        public boolean getCopyStreaming();
+
+        @Config("copy_parallelism")
+        @ConfigDefault("1")
+        public int getCopyParallelism();
+
+        // copy_format used by tasks, which is text if binary doesn't support types of columns of the target table
+        public CopyFormat getActualCopyFormat();
+        public void setActualCopyFormat(CopyFormat copyFormat);
     }
 
     @Override
@@ -80,7 +101,8 @@ public class PostgreSQLOutputPlugin
             .setMaxTableNameLength(63)
             .setSupportedModes(Collections.unmodifiableSet(new HashSet<Mode>(Arrays.asList(
                     Mode.INSERT, Mode.INSERT_DIRECT, Mode.MERGE, Mode.MERGE_DIRECT, Mode.TRUNCATE_INSERT, Mode.REPLACE))))
-            .setIgnoreMergeKeys(false);
+            .setIgnoreMergeKeys(false)
+            .setParallelCommit(true);
     }
 
     @Override
@@ -125,6 +147,36 @@ public class PostgreSQLOutputPlugin
                 t.getRoleName().orElse(null));
     }
 
+    @Override
+    protected void doBegin(JdbcOutputConnection con,
+                           PluginTask task, final Schema schema, int taskCount) throws SQLException
+    {
+        PostgreSQLPluginTask t = (PostgreSQLPluginTask) task;
+        if (t.getCopyParallelism() < 1) {
+            throw new ConfigException("'copy_parallelism' must be greater than 0.");
+        }
+        if (t.getCopyParallelism() > 1 && t.getCopyStreaming()) {
+            throw new ConfigException("'copy_parallelism' can't be used with 'copy_streaming: true'.");
+        }
+        if (task.getMultiRowValues().isPresent()) {
+            logger.warn("multi_row_values is ignored because rows are loaded by COPY");
+        }
+        super.doBegin(con, task, schema, taskCount);
+
+        // whether text is used instead of binary depends on the target table schema, which is known here
+        CopyFormat copyFormat = t.getCopyFormat();
+        if (copyFormat == CopyFormat.BINARY && task.getMode() != Mode.MERGE_DIRECT) {
+            List<String> unsupportedColumns = BinaryCopyEncoder.unsupportedColumns(JdbcSchema.filterSkipColumns(task.getTargetTableSchema()));
+            if (!unsupportedColumns.isEmpty()) {
+                logger.warn("copy_format: binary doesn't support types of columns {}. copy_format: text is used instead.", unsupportedColumns);
+                copyFormat = CopyFormat.TEXT;
+            } else if (t.getCopyParallelism() > 1) {
+                throw new ConfigException("'copy_parallelism' can't be used with 'copy_format: binary'.");
+            }
+        }
+        t.setActualCopyFormat(copyFormat);
+    }
+
     @Override
     protected TableIdentifier buildIntermediateTableId(JdbcOutputConnection con, PluginTask task, String tableName) {
         PostgreSQLPluginTask t = (PostgreSQLPluginTask) task;
@@ -139,9 +191,13 @@ public class PostgreSQLOutputPlugin
     protected BatchInsert newBatchInsert(PluginTask task, Optional<MergeConfig> mergeConfig) throws IOException, SQLException
     {
         if (mergeConfig.isPresent()) {
-            return new StandardBatchInsert(getConnector(task, true), mergeConfig);
+            return new StandardBatchInsert(getConnector(task, true), mergeConfig, task.getMaxInFlightBatches());
+        }
+        PostgreSQLPluginTask t = (PostgreSQLPluginTask) task;
+        if (t.getActualCopyFormat() == CopyFormat.BINARY) {
+            return new PostgreSQLBinaryCopyBatchInsert(getConnector(task, true), t.getCopyStreaming());
         }
-        return new PostgreSQLCopyBatchInsert(getConnector(task, true));
+        return new PostgreSQLCopyBatchInsert(getConnector(task, true), t.getCopyStreaming(), t.getCopyParallelism());
     }
 
     // TODO This is almost copy from AbstractJdbcOutputPlugin excepting type of TIMESTAMP -> TIMESTAMP WITH TIME ZONE.
@@ -4,8 +4,6 @@ import java.util.Calendar;
 import java.util.Locale;
 import java.io.File;
 import java.io.FileOutputStream;
-import java.io.BufferedWriter;
-import java.io.OutputStreamWriter;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.math.BigDecimal;
@@ -22,14 +20,24 @@ public abstract class AbstractPostgreSQLCopyBatchInsert
     protected static final String delimiterString = "\t";
 
     protected File currentFile;
-    protected BufferedWriter writer;
+    protected CopyTextWriter writer;
     protected int index;
     protected int batchRows;
+    private byte[][] escapes;
+    private final DateTimeTextEncoder dateTimeEncoder = new DateTimeTextEncoder();
 
     protected AbstractPostgreSQLCopyBatchInsert() throws IOException
+    {
+        this(true);
+    }
+
+    // if openFile is false, the subclass sets writer by itself instead of writing rows to temporary files
+    protected AbstractPostgreSQLCopyBatchInsert(boolean openFile) throws IOException
     {
         this.index = 0;
-        openNewFile();
+        if (openFile) {
+            openNewFile();
+        }
     }
 
     private File createTempFile() throws IOException
@@ -55,9 +63,9 @@ public abstract class AbstractPostgreSQLCopyBatchInsert
         return currentFile;
     }
 
-    protected BufferedWriter openWriter(File newFile) throws IOException
+    protected CopyTextWriter openWriter(File newFile) throws IOException
     {
-        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(newFile), FILE_CHARSET));
+        return new CopyTextWriter(new FileOutputStream(newFile));
     }
 
     public int getBatchWeight()
@@ -160,6 +168,11 @@ public abstract class AbstractPostgreSQLCopyBatchInsert
     public void setSqlDate(final Instant v, final Calendar cal) throws IOException
     {
         appendDelimiter();
+        int length = dateTimeEncoder.formatDate(v, cal.getTimeZone());
+        if (length >= 0) {
+            writer.write(dateTimeEncoder.getBytes(), 0, length);
+            return;
+        }
         cal.setTimeInMillis(v.getEpochSecond() * 1000);
         String f = String.format(Locale.ENGLISH, "%02d-%02d-%02d",
                 cal.get(Calendar.YEAR),
@@ -171,20 +184,20 @@ public abstract class AbstractPostgreSQLCopyBatchInsert
     public void setSqlTime(final Instant v, final Calendar cal) throws IOException
     {
         appendDelimiter();
-        cal.setTimeInMillis(v.getEpochSecond() * 1000);
-        String f = String.format(Locale.ENGLISH, "%02d:%02d:%02d.%06d",
-                cal.get(Calendar.HOUR_OF_DAY),
-                cal.get(Calendar.MINUTE),
-                cal.get(Calendar.SECOND),
-                v.getNano() / 1000);
-        writer.write(f);
+        int length = dateTimeEncoder.formatTime(v, cal.getTimeZone());
+        writer.write(dateTimeEncoder.getBytes(), 0, length);
     }
 
     public void setSqlTimestamp(final Instant v, final Calendar cal) throws IOException
     {
         appendDelimiter();
+        int length = dateTimeEncoder.formatTimestamp(v, cal.getTimeZone());
+        if (length >= 0) {
+            writer.write(dateTimeEncoder.getBytes(), 0, length);
+            return;
+        }
         cal.setTimeInMillis(v.getEpochSecond() * 1000);
-        int zoneOffset = cal.get(Calendar.ZONE_OFFSET) / 1000 / 60;  // zone offset considering DST in minute
+        int zoneOffset = (cal.get(Calendar.ZONE_OFFSET) + cal.get(Calendar.DST_OFFSET)) / 1000 / 60;  // zone offset considering DST in minute
         String offset;
         if (zoneOffset >= 0) {
             offset = String.format(Locale.ENGLISH, "+%02d%02d", zoneOffset / 60, zoneOffset % 60);
@@ -205,13 +218,29 @@ public abstract class AbstractPostgreSQLCopyBatchInsert
 
     private void setEscapedString(String v) throws IOException
     {
-        for (char c : v.toCharArray()) {
-            writer.write(escape(c));
+        if (escapes == null) {
+            escapes = buildEscapes();
+        }
+        writer.writeEscaped(v, escapes);
+    }
+
+    // escape sequences of ASCII characters in UTF-8 built from escape(char).
+    // other characters are not escaped.
+    private byte[][] buildEscapes()
+    {
+        byte[][] escapes = new byte[0x80][];
+        for (char c = 0; c < 0x80; c++) {
+            String escaped = escape(c);
+            if (!escaped.equals(String.valueOf(c))) {
+                escapes[c] = escaped.getBytes(FILE_CHARSET);
+            }
         }
+        return escapes;
     }
 
     // Escape \, \n, \t, \r
     // Remove \0
+    // This is called only for ASCII characters, once, to build escape sequences.
     protected String escape(char c)
     {
         switch (c) {
@@ -236,4 +265,10 @@ public abstract class AbstractPostgreSQLCopyBatchInsert
         // need not be implemented because AbstractPostgreSQLCopyBatchInsert won't retry.
         return new int[]{};
     }
+
+    @Override
+    public boolean supportsReplay()
+    {
+        return false;
+    }
 }
@@ -0,0 +1,693 @@
+package org.embulk.output.postgresql;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.embulk.output.jdbc.JdbcColumn;
+import org.embulk.output.jdbc.JdbcSchema;
+
+/**
+ * Encodes values of a column in the binary format of COPY, which is a 32-bit length followed by
+ * the value in the binary representation of the column type.
+ * An encoder is chosen by the type of the column in the target table, and converts values given by
+ * column setters to the type. Conversions which are not supported throw SQLDataException.
+ */
+public abstract class BinaryCopyEncoder
+{
+    // 2000-01-01T00:00:00Z, the epoch of date and timestamp of PostgreSQL
+    static final long POSTGRES_EPOCH_SECONDS = 946684800L;
+    static final long POSTGRES_EPOCH_DAYS = 10957L;
+
+    private static final short NUMERIC_POS = 0x0000;
+    private static final short NUMERIC_NEG = 0x4000;
+    private static final short NUMERIC_NAN = (short) 0xC000;
+
+    private final String columnName;
+    private final String typeName;
+
+    protected BinaryCopyEncoder(JdbcColumn column)
+    {
+        this.columnName = column.getName();
+        this.typeName = column.getSimpleTypeName();
+    }
+
+    /**
+     * Returns an encoder for the column, or empty if the type of the column is not supported.
+     */
+    public static Optional<BinaryCopyEncoder> of(JdbcColumn column)
+    {
+        switch (column.getSimpleTypeName().toLowerCase(Locale.ENGLISH)) {
+        case "int2":
+        case "smallserial":
+            return Optional.of(new IntegerEncoder(column, 2));
+        case "int4":
+        case "serial":
+            return Optional.of(new IntegerEncoder(column, 4));
+        case "int8":
+        case "bigserial":
+            return Optional.of(new IntegerEncoder(column, 8));
+        case "float4":
+            return Optional.of(new FloatEncoder(column, 4));
+        case "float8":
+            return Optional.of(new FloatEncoder(column, 8));
+        case "numeric":
+            return Optional.of(new NumericEncoder(column));
+        case "bool":
+            return Optional.of(new BooleanEncoder(column));
+        case "date":
+            return Optional.of(new DateEncoder(column));
+        case "time":
+            return Optional.of(new TimeEncoder(column));
+        case "timestamp":
+            return Optional.of(new TimestampEncoder(column, false));
+        case "timestamptz":
+            return Optional.of(new TimestampEncoder(column, true));
+        case "text":
+        case "varchar":
+        case "bpchar":
+        case "json":
+            return Optional.of(new TextEncoder(column, false));
+        case "jsonb":
+            return Optional.of(new TextEncoder(column, true));
+        case "bytea":
+            return Optional.of(new ByteaEncoder(column));
+        default:
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Returns descriptions of columns whose types are not supported, like {@code "name (uuid)"}.
+     */
+    public static List<String> unsupportedColumns(JdbcSchema schema)
+    {
+        List<String> columns = new ArrayList<>();
+        for (JdbcColumn column : schema.getColumns()) {
+            if (!of(column).isPresent()) {
+                columns.add(String.format("%s (%s)", column.getName(), column.getSimpleTypeName().toLowerCase(Locale.ENGLISH)));
+            }
+        }
+        return columns;
+    }
+
+    public void encodeBoolean(DataOutputStream out, boolean v) throws IOException, SQLException
+    {
+        throw unsupported("boolean");
+    }
+
+    public void encodeLong(DataOutputStream out, long v) throws IOException, SQLException
+    {
+        throw unsupported("integer");
+    }
+
+    public void encodeDouble(DataOutputStream out, double v) throws IOException, SQLException
+    {
+        throw unsupported("floating point");
+    }
+
+    public void encodeBigDecimal(DataOutputStream out, BigDecimal v) throws IOException, SQLException
+    {
+        throw unsupported("decimal");
+    }
+
+    public void encodeString(DataOutputStream out, String v) throws IOException, SQLException
+    {
+        throw unsupported("string");
+    }
+
+    public void encodeBytes(DataOutputStream out, byte[] v) throws IOException, SQLException
+    {
+        throw unsupported("binary");
+    }
+
+    public void encodeSqlDate(DataOutputStream out, Instant v, Calendar cal) throws IOException, SQLException
+    {
+        throw unsupported("date");
+    }
+
+    public void encodeSqlTime(DataOutputStream out, Instant v, Calendar cal) throws IOException, SQLException
+    {
+        throw unsupported("time");
+    }
+
+    public void encodeSqlTimestamp(DataOutputStream out, Instant v, Calendar cal) throws IOException, SQLException
+    {
+        throw unsupported("timestamp");
+    }
+
+    protected SQLException unsupported(String valueType)
+    {
+        return new SQLDataException(String.format("Cannot convert a %s value to column '%s' of type %s with copy_format: binary.",
+                    valueType, columnName, typeName.toLowerCase(Locale.ENGLISH)));
+    }
+
+    protected SQLException invalid(String value, Exception cause)
+    {
+        return new SQLDataException(String.format("Invalid value '%s' for column '%s' of type %s.",
+                    value, columnName, typeName.toLowerCase(Locale.ENGLISH)), cause);
+    }
+
+    // seconds of local date-time in the time zone of the calendar
+    static long toLocalSeconds(Instant v, Calendar cal)
+    {
+        long millis = v.getEpochSecond() * 1000;
+        return v.getEpochSecond() + cal.getTimeZone().getOffset(millis) / 1000;
+    }
+
+    // NUL is removed as well as text format because PostgreSQL doesn't accept it in text values
+    static byte[] toBytes(String v)
+    {
+        if (v.indexOf('\0') >= 0) {
+            v = v.replace("\0", "");
+        }
+        return v.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static void writeNumeric(DataOutputStream out, BigDecimal v) throws IOException
+    {
+        int dscale = Math.max(v.scale(), 0);
+        BigInteger unscaled = v.scale() < 0 ? v.setScale(0).unscaledValue() : v.unscaledValue();
+        if (unscaled.signum() == 0) {
+            writeNumericHeader(out, 0, 0, NUMERIC_POS, dscale);
+            return;
+        }
+
+        // align digits to groups of 4 decimal digits (base 10000) around the decimal point
+        String digits = unscaled.abs().toString();
+        int integerDigits = digits.length() - dscale;
+        int leadingZeros = Math.floorMod(-integerDigits, 4);
+        int length = leadingZeros + digits.length();
+        int trailingZeros = Math.floorMod(-length, 4);
+        int groups = (length + trailingZeros) / 4;
+        int weight = (integerDigits + leadingZeros) / 4 - 1;
+
+        short[] values = new short[groups];
+        int pos = -leadingZeros;
+        for (int i = 0; i < groups; i++) {
+            int value = 0;
+            for (int j = 0; j < 4; j++, pos++) {
+                value = value * 10 + (pos >= 0 && pos < digits.length() ? digits.charAt(pos) - '0' : 0);
+            }
+            values[i] = (short) value;
+        }
+        // the first group is not zero because leading zeros are fewer than 4 digits
+        while (groups > 0 && values[groups - 1] == 0) {
+            groups--;
+        }
+
+        writeNumericHeader(out, groups, weight, unscaled.signum() < 0 ? NUMERIC_NEG : NUMERIC_POS, dscale);
+        for (int i = 0; i < groups; i++) {
+            out.writeShort(values[i]);
+        }
+    }
+
+    private static void writeNumericHeader(DataOutputStream out, int groups, int weight, short sign, int dscale) throws IOException
+    {
+        out.writeInt(8 + groups * 2);
+        out.writeShort(groups);
+        out.writeShort(weight);
+        out.writeShort(sign);
+        out.writeShort(dscale);
+    }
+
+    // decodes hex format (\x0123ab) or escape format (abc\\\001) of bytea
+    static byte[] decodeBytea(String v)
+    {
+        if (v.startsWith("\\x")) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(v.length() / 2);
+            int i = 2;
+            while (i < v.length()) {
+                if (Character.isWhitespace(v.charAt(i))) {
+                    i++;
+                    continue;
+                }
+                if (i + 1 >= v.length()) {
+                    throw new IllegalArgumentException("Invalid hexadecimal data: odd number of digits");
+                }
+                bytes.write(Integer.parseInt(v.substring(i, i + 2), 16));
+                i += 2;
+            }
+            return bytes.toByteArray();
+        }
+        if (v.indexOf('\\') < 0) {
+            return v.getBytes(StandardCharsets.UTF_8);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(v.length());
+        int start = 0;
+        int i = v.indexOf('\\');
+        while (i >= 0) {
+            byte[] chars = v.substring(start, i).getBytes(StandardCharsets.UTF_8);
+            bytes.write(chars, 0, chars.length);
+            if (v.startsWith("\\\\", i)) {
+                bytes.write('\\');
+                start = i + 2;
+            } else if (isOctal(v, i + 1)) {
+                bytes.write(Integer.parseInt(v.substring(i + 1, i + 4), 8));
+                start = i + 4;
+            } else {
+                throw new IllegalArgumentException("Invalid input syntax for type bytea");
+            }
+            i = v.indexOf('\\', start);
+        }
+        byte[] chars = v.substring(start).getBytes(StandardCharsets.UTF_8);
+        bytes.write(chars, 0, chars.length);
+        return bytes.toByteArray();
+    }
+
+    private static boolean isOctal(String v, int start)
+    {
+        if (start + 3 > v.length()) {
+            return false;
+        }
+        return v.charAt(start) >= '0' && v.charAt(start) <= '3'
+            && v.charAt(start + 1) >= '0' && v.charAt(start + 1) <= '7'
+            && v.charAt(start + 2) >= '0' && v.charAt(start + 2) <= '7';
+    }
+
+    private static class IntegerEncoder
+            extends BinaryCopyEncoder
+    {
+        private final int size;
+        private final long min;
+        private final long max;
+
+        IntegerEncoder(JdbcColumn column, int size)
+        {
+            super(column);
+            this.size = size;
+            this.min = size == 2 ? Short.MIN_VALUE : size == 4 ? Integer.MIN_VALUE : Long.MIN_VALUE;
+            this.max = size == 2 ? Short.MAX_VALUE : size == 4 ? Integer.MAX_VALUE : Long.MAX_VALUE;
+        }
+
+        @Override
+        public void encodeLong(DataOutputStream out, long v) throws IOException, SQLException
+        {
+            if (v < min || v > max) {
+                throw invalid(Long.toString(v), null);
+            }
+            out.writeInt(size);
+            switch (size) {
+            case 2:
+                out.writeShort((short) v);
+                break;
+            case 4:
+                out.writeInt((int) v);
+                break;
+            default:
+                out.writeLong(v);
+                break;
+            }
+        }
+
+        // rounded as well as casting double precision to integers
+        @Override
+        public void encodeDouble(DataOutputStream out, double v) throws IOException, SQLException
+        {
+            double rounded = Math.rint(v);
+            if (Double.isNaN(v) || rounded < min || rounded >= -(double) min) {
+                throw invalid(Double.toString(v), null);
+            }
+            encodeLong(out, (long) rounded);
+        }
+
+        // rounded as well as casting numeric to integers
+        @Override
+        public void encodeBigDecimal(DataOutputStream out, BigDecimal v) throws IOException, SQLException
+        {
+            try {
+                encodeLong(out, v.setScale(0, RoundingMode.HALF_UP).longValueExact());
+            } catch (ArithmeticException ex) {
+                throw invalid(v.toPlainString(), ex);
+            }
+        }
+
+        @Override
+        public void encodeString(DataOutputStream out, String v) throws IOException, SQLException
+        {
+            try {
+                encodeLong(out, Long.parseLong(v.trim()));
+            } catch (NumberFormatException ex) {
+                throw invalid(v, ex);
+            }
+        }
+    }
+
+    private static class FloatEncoder
+            extends BinaryCopyEncoder
+    {
+        private final int size;
+
+        FloatEncoder(JdbcColumn column, int size)
+        {
+            super(column);
+            this.size = size;
+        }
+
+        @Override
+        public void encodeLong(DataOutputStream out, long v) throws IOException
+        {
+            encodeDouble(out, (double) v);
+        }
+
+        @Override
+        public void encodeDouble(DataOutputStream out, double v) throws IOException
+        {
+            out.writeInt(size);
+            if (size == 4) {
+                out.writeFloat((float) v);
+            } else {
+                out.writeDouble(v);
+            }
+        }
+
+        @Override
+        public void encodeBigDecimal(DataOutputStream out, BigDecimal v) throws IOException
+        {
+            encodeDouble(out, v.doubleValue());
+        }
+
+        @Override
+        public void encodeString(DataOutputStream out, String v) throws IOException, SQLException
+        {
+            try {
+                encodeDouble(out, Double.parseDouble(v.trim()));
+            } catch (NumberFormatException ex) {
+                throw invalid(v, ex);
+            }
+        }
+    }
+
+    private static class NumericEncoder
+            extends BinaryCopyEncoder
+    {
+        NumericEncoder(JdbcColumn column)
+        {
+            super(column);
+        }
+
+        @Override
+        public void encodeLong(DataOutputStream out, long v) throws IOException
+        {
+            writeNumeric(out, BigDecimal.valueOf(v));
+        }
+
+        @Override
+        public void encodeDouble(DataOutputStream out, double v) throws IOException, SQLException
+        {
+            if (Double.isNaN(v)) {
+                writeNumericHeader(out, 0, 0, NUMERIC_NAN, 0);
+            } else if (Double.isInfinite(v)) {
+                throw invalid(Double.toString(v), null);
+            } else {
+                writeNumeric(out, BigDecimal.valueOf(v));
+            }
+        }
+
+        @Override
+        public void encodeBigDecimal(DataOutputStream out, BigDecimal v) throws IOException
+        {
+            writeNumeric(out, v);
+        }
+
+        @Override
+        public void encodeString(DataOutputStream out, String v) throws IOException, SQLException
+        {
+            String s = v.trim();
+            if (s.equalsIgnoreCase("NaN")) {
+                writeNumericHeader(out, 0, 0, NUMERIC_NAN, 0);
+                return;
+            }
+            try {
+                writeNumeric(out, new BigDecimal(s));
+            } catch (NumberFormatException ex) {
+                throw invalid(v, ex);
+            }
+        }
+    }
+
+    private static class BooleanEncoder
+            extends BinaryCopyEncoder
+    {
+        BooleanEncoder(JdbcColumn column)
+        {
+            super(column);
+        }
+
+        @Override
+        public void encodeBoolean(DataOutputStream out, boolean v) throws IOException
+        {
+            out.writeInt(1);
+            out.writeByte(v ? 1 : 0);
+        }
+
+        @Override
+        public void encodeString(DataOutputStream out, String v) throws IOException, SQLException
+        {
+            switch (v.trim().toLowerCase(Locale.ENGLISH)) {
+            case "t":
+            case "true":
+            case "y":
+            case "yes":
+            case "on":
+            case "1":
+                encodeBoolean(out, true);
+                break;
+            case "f":
+            case "false":
+            case "n":
+            case "no":
+            case "off":
+            case "0":
+                encodeBoolean(out, false);
+                break;
+            default:
+                throw invalid(v, null);
+            }
+        }
+    }
+
+    private static class DateEncoder
+            extends BinaryCopyEncoder
+    {
+        DateEncoder(JdbcColumn column)
+        {
+            super(column);
+        }
+
+        // date in the time zone of the calendar
+        @Override
+        public void encodeSqlDate(DataOutputStream out, Instant v, Calendar cal) throws IOException
+        {
+            out.writeInt(4);
+            out.writeInt((int) (Math.floorDiv(toLocalSeconds(v, cal), 86400L) - POSTGRES_EPOCH_DAYS));
+        }
+
+        @Override
+        public void encodeSqlTimestamp(DataOutputStream out, Instant v, Calendar cal) throws IOException
+        {
+            encodeSqlDate(out, v, cal);
+        }
+
+        @Override
+        public void encodeString(DataOutputStream out, String v) throws IOException, SQLException
+        {
+            long days;
+            try {
+                days = LocalDate.parse(v.trim()).toEpochDay();
+            } catch (DateTimeParseException ex) {
+                throw invalid(v, ex);
+            }
+            out.writeInt(4);
+            out.writeInt((int) (days - POSTGRES_EPOCH_DAYS));
+        }
+    }
+
+    private static class TimeEncoder
+            extends BinaryCopyEncoder
+    {
+        TimeEncoder(JdbcColumn column)
+        {
+            super(column);
+        }
+
+        // time of day in the time zone of the calendar, in microseconds
+        @Override
+        public void encodeSqlTime(DataOutputStream out, Instant v, Calendar cal) throws IOException
+        {
+            out.writeInt(8);
+            out.writeLong(Math.floorMod(toLocalSeconds(v, cal), 86400L) * 1000000L + v.getNano() / 1000);
+        }
+
+        @Override
+        public void encodeSqlTimestamp(DataOutputStream out, Instant v, Calendar cal) throws IOException
+        {
+            encodeSqlTime(out, v, cal);
+        }
+
+        @Override
+        public void encodeString(DataOutputStream out, String v) throws IOException, SQLException
+        {
+            long micros;
+            try {
+                micros = LocalTime.parse(v.trim()).toNanoOfDay() / 1000;
+            } catch (DateTimeParseException ex) {
+                throw invalid(v, ex);
+            }
+            out.writeInt(8);
+            out.writeLong(micros);
+        }
+    }
+
+    private static class TimestampEncoder
+            extends BinaryCopyEncoder
+    {
+        // date and time separated by 'T' or a space, and an optional offset such as Z, +09, +09:00 or +0900
+        // which may follow a space, like "2024-01-02 03:04:05.123456 +0900" of timestamps formatted by Embulk
+        private static final Pattern TIMESTAMP_PATTERN = Pattern.compile(
+                "(\\d{4}-\\d{2}-\\d{2})[T ](\\d{2}:\\d{2}(?::\\d{2}(?:\\.\\d{1,9})?)?) ?(Z|[+-]\\d{2}(?::?\\d{2})?)?");
+
+        private final boolean withTimeZone;
+
+        TimestampEncoder(JdbcColumn column, boolean withTimeZone)
+        {
+            super(column);
+            this.withTimeZone = withTimeZone;
+        }
+
+        // microseconds since 2000-01-01 00:00:00 in UTC (timestamptz) or the time zone of the calendar (timestamp)
+        @Override
+        public void encodeSqlTimestamp(DataOutputStream out, Instant v, Calendar cal) throws IOException
+        {
+            long seconds = withTimeZone ? v.getEpochSecond() : toLocalSeconds(v, cal);
+            out.writeInt(8);
+            out.writeLong((seconds - POSTGRES_EPOCH_SECONDS) * 1000000L + v.getNano() / 1000);
+        }
+
+        // as well as PostgreSQL, the offset is ignored by timestamp. timestamptz without an offset is in the
+        // time zone of the session, which is the default time zone of the JVM set by the JDBC driver
+        @Override
+        public void encodeString(DataOutputStream out, String v) throws IOException, SQLException
+        {
+            Matcher matcher = TIMESTAMP_PATTERN.matcher(v.trim());
+            if (!matcher.matches()) {
+                throw invalid(v, null);
+            }
+            Instant instant;
+            try {
+                LocalDateTime local = LocalDateTime.parse(matcher.group(1) + "T" + matcher.group(2));
+                if (!withTimeZone) {
+                    instant = local.toInstant(ZoneOffset.UTC);
+                } else if (matcher.group(3) != null) {
+                    instant = local.toInstant(ZoneOffset.of(matcher.group(3)));
+                } else {
+                    instant = local.atZone(ZoneId.systemDefault()).toInstant();
+                }
+            } catch (DateTimeException ex) {
+                throw invalid(v, ex);
+            }
+            out.writeInt(8);
+            out.writeLong((instant.getEpochSecond() - POSTGRES_EPOCH_SECONDS) * 1000000L + instant.getNano() / 1000);
+        }
+    }
+
+    private static class TextEncoder
+            extends BinaryCopyEncoder
+    {
+        // jsonb starts with the version of the format
+        private static final int JSONB_VERSION = 1;
+
+        private final boolean jsonb;
+
+        TextEncoder(JdbcColumn column, boolean jsonb)
+        {
+            super(column);
+            this.jsonb = jsonb;
+        }
+
+        @Override
+        public void encodeBoolean(DataOutputStream out, boolean v) throws IOException
+        {
+            encodeString(out, String.valueOf(v));
+        }
+
+        @Override
+        public void encodeLong(DataOutputStream out, long v) throws IOException
+        {
+            encodeString(out, String.valueOf(v));
+        }
+
+        @Override
+        public void encodeDouble(DataOutputStream out, double v) throws IOException
+        {
+            encodeString(out, String.valueOf(v));
+        }
+
+        @Override
+        public void encodeBigDecimal(DataOutputStream out, BigDecimal v) throws IOException
+        {
+            encodeString(out, String.valueOf(v));
+        }
+
+        @Override
+        public void encodeString(DataOutputStream out, String v) throws IOException
+        {
+            byte[] bytes = toBytes(v);
+            if (jsonb) {
+                out.writeInt(bytes.length + 1);
+                out.writeByte(JSONB_VERSION);
+            } else {
+                out.writeInt(bytes.length);
+            }
+            out.write(bytes);
+        }
+    }
+
+    private static class ByteaEncoder
+            extends BinaryCopyEncoder
+    {
+        ByteaEncoder(JdbcColumn column)
+        {
+            super(column);
+        }
+
+        @Override
+        public void encodeBytes(DataOutputStream out, byte[] v) throws IOException
+        {
+            out.writeInt(v.length);
+            out.write(v);
+        }
+
+        // a string is an input of bytea, which is the same as text format
+        @Override
+        public void encodeString(DataOutputStream out, String v) throws IOException, SQLException
+        {
+            try {
+                encodeBytes(out, decodeBytea(v));
+            } catch (IllegalArgumentException ex) {
+                throw invalid(v, ex);
+            }
+        }
+    }
+}
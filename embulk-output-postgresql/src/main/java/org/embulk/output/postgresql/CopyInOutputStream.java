@@ -0,0 +1,132 @@
+package org.embulk.output.postgresql;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.SQLException;
+
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+/**
+ * Sends written bytes to the server by COPY FROM STDIN, instead of writing them to a temporary file.
+ * Bytes are buffered in a reusable buffer and sent by writeToCopy. COPY is started when bytes are sent
+ * first, and ended by endCopy. The stream can be written again after endCopy to start the next COPY.
+ */
+public class CopyInOutputStream
+        extends OutputStream
+{
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final CopyManager copyManager;
+    private final String copySql;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    // bytes written since the last endCopy
+    private long bytes;
+    private CopyIn copyIn;
+
+    public CopyInOutputStream(CopyManager copyManager, String copySql)
+    {
+        this.copyManager = copyManager;
+        this.copySql = copySql;
+    }
+
+    public long getBytes()
+    {
+        return bytes;
+    }
+
+    @Override
+    public void write(int b) throws IOException
+    {
+        if (position == buffer.length) {
+            sendBuffer();
+        }
+        buffer[position++] = (byte) b;
+        bytes++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+        if (len >= buffer.length) {
+            sendBuffer();
+            send(b, off, len);
+        } else {
+            if (position + len > buffer.length) {
+                sendBuffer();
+            }
+            System.arraycopy(b, off, buffer, position, len);
+            position += len;
+        }
+        bytes += len;
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+        sendBuffer();
+    }
+
+    /**
+     * Sends buffered bytes and ends COPY. Returns the number of loaded rows.
+     */
+    public long endCopy() throws IOException, SQLException
+    {
+        sendBuffer();
+        bytes = 0;
+        if (copyIn == null) {
+            return 0;
+        }
+        CopyIn current = copyIn;
+        copyIn = null;
+        return current.endCopy();
+    }
+
+    /**
+     * Discards buffered bytes and cancels COPY if it's in progress.
+     */
+    public void cancelCopy() throws SQLException
+    {
+        position = 0;
+        bytes = 0;
+        if (copyIn != null) {
+            CopyIn current = copyIn;
+            copyIn = null;
+            if (current.isActive()) {
+                current.cancelCopy();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        try {
+            cancelCopy();
+        } catch (SQLException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    private void sendBuffer() throws IOException
+    {
+        if (position > 0) {
+            send(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    private void send(byte[] b, int off, int len) throws IOException
+    {
+        try {
+            if (copyIn == null) {
+                copyIn = copyManager.copyIn(copySql);
+            }
+            copyIn.writeToCopy(b, off, len);
+        } catch (SQLException ex) {
+            // the server may reject rows while they are being sent
+            throw new IOException(ex);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package org.embulk.output.postgresql;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes text of COPY to an OutputStream in UTF-8. Characters are encoded into a reusable byte buffer
+ * without allocating strings or going through a CharsetEncoder.
+ * Malformed surrogates are written as '?' as well as OutputStreamWriter.
+ */
+public class CopyTextWriter
+        implements Closeable, Flushable
+{
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int CHUNK_SIZE = 1024;
+    // the longest UTF-8 sequence of a character, or a surrogate pair
+    private static final int MAX_CHAR_BYTES = 4;
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final char[] chars = new char[CHUNK_SIZE];
+    private int position;
+
+    public CopyTextWriter(OutputStream out)
+    {
+        this.out = out;
+    }
+
+    /**
+     * Returns the number of bytes which are buffered and not written to the OutputStream yet.
+     */
+    public int getBufferedBytes()
+    {
+        return position;
+    }
+
+    public void write(String s) throws IOException
+    {
+        int length = s.length();
+        if (position + length <= buffer.length) {
+            // fast path for short ASCII strings such as numbers and delimiters
+            int i = 0;
+            for (; i < length; i++) {
+                char c = s.charAt(i);
+                if (c >= 0x80) {
+                    break;
+                }
+                buffer[position + i] = (byte) c;
+            }
+            position += i;
+            if (i == length) {
+                return;
+            }
+            s = s.substring(i);
+        }
+        writeEscaped(s, null);
+    }
+
+    public void write(char c) throws IOException
+    {
+        if (c < 0x80) {
+            if (position == buffer.length) {
+                flushBuffer();
+            }
+            buffer[position++] = (byte) c;
+        } else {
+            write(String.valueOf(c));
+        }
+    }
+
+    /**
+     * Writes bytes of ASCII characters.
+     */
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+        if (position + len > buffer.length) {
+            flushBuffer();
+            if (len > buffer.length) {
+                out.write(b, off, len);
+                return;
+            }
+        }
+        System.arraycopy(b, off, buffer, position, len);
+        position += len;
+    }
+
+    /**
+     * Writes the string replacing ASCII characters with their escape sequences.
+     * escapes[c] is the UTF-8 bytes which replace the character c, or null if c is written as it is.
+     */
+    public void writeEscaped(String s, byte[][] escapes) throws IOException
+    {
+        int length = s.length();
+        int start = 0;
+        while (start < length) {
+            int end = Math.min(start + CHUNK_SIZE, length);
+            s.getChars(start, end, chars, 0);
+            // a high surrogate at the end of a chunk is encoded with the next chunk
+            if (end < length && Character.isHighSurrogate(chars[end - start - 1])) {
+                end--;
+            }
+            writeChars(end - start, escapes);
+            start = end;
+        }
+    }
+
+    private void writeChars(int count, byte[][] escapes) throws IOException
+    {
+        byte[] buffer = this.buffer;
+        int position = this.position;
+        int i = 0;
+        while (i < count) {
+            if (position + MAX_CHAR_BYTES > buffer.length) {
+                this.position = position;
+                flushBuffer();
+                position = 0;
+            }
+            char c = chars[i++];
+            if (c < 0x80) {
+                byte[] escape = escapes == null ? null : escapes[c];
+                if (escape == null) {
+                    buffer[position++] = (byte) c;
+                } else {
+                    if (position + escape.length > buffer.length) {
+                        this.position = position;
+                        flushBuffer();
+                        position = 0;
+                    }
+                    System.arraycopy(escape, 0, buffer, position, escape.length);
+                    position += escape.length;
+                }
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xc0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i < count && Character.isLowSurrogate(chars[i])) {
+                    int codePoint = Character.toCodePoint(c, chars[i++]);
+                    buffer[position++] = (byte) (0xf0 | (codePoint >> 18));
+                    buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                    buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                    buffer[position++] = (byte) (0x80 | (codePoint & 0x3f));
+                } else {
+                    buffer[position++] = '?';
+                }
+            } else {
+                buffer[position++] = (byte) (0xe0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buffer[position++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        this.position = position;
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+        flushBuffer();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        try {
+            flushBuffer();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void flushBuffer() throws IOException
+    {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+}
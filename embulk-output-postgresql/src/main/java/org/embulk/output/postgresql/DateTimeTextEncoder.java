@@ -0,0 +1,180 @@
+package org.embulk.output.postgresql;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Formats dates, times and timestamps in the text format of COPY without Calendar and String.format.
+ * Civil fields are computed arithmetically from epoch seconds, and the offset of a time zone is cached
+ * for the range between its transitions. Digits are written to a reusable byte array.
+ *
+ * Dates are formatted only in years 1583 to 9999, because Calendar uses the Julian calendar before
+ * 1582-10-15 and years of other digits need other formats. Format methods return -1 for other dates
+ * so that callers fall back to Calendar.
+ */
+public class DateTimeTextEncoder
+{
+    private static final long SECONDS_PER_DAY = 86400L;
+    private static final long MIN_LOCAL_SECONDS = LocalDate.of(1583, 1, 1).toEpochDay() * SECONDS_PER_DAY;
+    private static final long MAX_LOCAL_SECONDS = LocalDate.of(10000, 1, 1).toEpochDay() * SECONDS_PER_DAY;
+
+    private final byte[] bytes = new byte[32];
+    private final Map<TimeZone, OffsetRange> ranges = new IdentityHashMap<>();
+    private TimeZone lastZone;
+    private OffsetRange lastRange;
+
+    // offset of a time zone which is valid from start (inclusive) to end (exclusive) in epoch seconds
+    private static class OffsetRange
+    {
+        private final long start;
+        private final long end;
+        private final int offsetSeconds;
+
+        OffsetRange(long start, long end, int offsetSeconds)
+        {
+            this.start = start;
+            this.end = end;
+            this.offsetSeconds = offsetSeconds;
+        }
+    }
+
+    /**
+     * Returns the array to which the last value is formatted.
+     */
+    public byte[] getBytes()
+    {
+        return bytes;
+    }
+
+    /**
+     * Formats the date in the time zone like {@code 2024-01-31}. Returns the length, or -1 if the date is not supported.
+     */
+    public int formatDate(Instant v, TimeZone zone)
+    {
+        long local = v.getEpochSecond() + getOffsetSeconds(v.getEpochSecond(), zone);
+        if (local < MIN_LOCAL_SECONDS || local >= MAX_LOCAL_SECONDS) {
+            return -1;
+        }
+        return writeDate(Math.floorDiv(local, SECONDS_PER_DAY), 0);
+    }
+
+    /**
+     * Formats the time in the time zone like {@code 23:59:59.123456}. Returns the length.
+     */
+    public int formatTime(Instant v, TimeZone zone)
+    {
+        long local = v.getEpochSecond() + getOffsetSeconds(v.getEpochSecond(), zone);
+        return writeTime(Math.floorMod(local, SECONDS_PER_DAY), v.getNano() / 1000, 0);
+    }
+
+    /**
+     * Formats the timestamp in the time zone like {@code 2024-01-31 23:59:59.123456+0900}.
+     * Returns the length, or -1 if the date is not supported.
+     */
+    public int formatTimestamp(Instant v, TimeZone zone)
+    {
+        int offsetSeconds = getOffsetSeconds(v.getEpochSecond(), zone);
+        long local = v.getEpochSecond() + offsetSeconds;
+        if (local < MIN_LOCAL_SECONDS || local >= MAX_LOCAL_SECONDS) {
+            return -1;
+        }
+        int pos = writeDate(Math.floorDiv(local, SECONDS_PER_DAY), 0);
+        bytes[pos++] = ' ';
+        pos = writeTime(Math.floorMod(local, SECONDS_PER_DAY), v.getNano() / 1000, pos);
+
+        // seconds of the offset are truncated
+        int offsetMinutes = offsetSeconds / 60;
+        if (offsetMinutes >= 0) {
+            bytes[pos++] = '+';
+        } else {
+            bytes[pos++] = '-';
+            offsetMinutes = -offsetMinutes;
+        }
+        pos = writeDigits(offsetMinutes / 60, 2, pos);
+        return writeDigits(offsetMinutes % 60, 2, pos);
+    }
+
+    int getOffsetSeconds(long epochSecond, TimeZone zone)
+    {
+        OffsetRange range = zone == lastZone ? lastRange : ranges.get(zone);
+        if (range == null || epochSecond < range.start || epochSecond >= range.end) {
+            range = newOffsetRange(epochSecond, zone);
+            ranges.put(zone, range);
+        }
+        lastZone = zone;
+        lastRange = range;
+        return range.offsetSeconds;
+    }
+
+    private static OffsetRange newOffsetRange(long epochSecond, TimeZone zone)
+    {
+        int offsetSeconds = zone.getOffset(epochSecond * 1000) / 1000;
+        ZoneRules rules;
+        try {
+            rules = zone.toZoneId().getRules();
+        } catch (DateTimeException ex) {
+            rules = null;
+        }
+        Instant instant = Instant.ofEpochSecond(epochSecond);
+        if (rules == null || rules.getOffset(instant).getTotalSeconds() != offsetSeconds) {
+            // the time zone has rules which are not in tzdb. the offset is valid only at the time.
+            return new OffsetRange(epochSecond, epochSecond + 1, offsetSeconds);
+        }
+        // previousTransition returns a transition before the instant, excluding a transition at the instant
+        ZoneOffsetTransition previous = rules.previousTransition(instant.plusSeconds(1));
+        ZoneOffsetTransition next = rules.nextTransition(instant);
+        return new OffsetRange(
+                previous == null ? Long.MIN_VALUE : previous.toEpochSecond(),
+                next == null ? Long.MAX_VALUE : next.toEpochSecond(),
+                offsetSeconds);
+    }
+
+    // converts days since 1970-01-01 to the proleptic Gregorian calendar
+    private int writeDate(long epochDay, int pos)
+    {
+        // days since 0000-03-01 so that a leap day is at the end of a year
+        long days = epochDay + 719468;
+        long era = Math.floorDiv(days, 146097);
+        int dayOfEra = (int) (days - era * 146097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;  // 0 is March
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        int year = (int) (era * 400 + yearOfEra) + (month <= 2 ? 1 : 0);
+
+        pos = writeDigits(year, 4, pos);
+        bytes[pos++] = '-';
+        pos = writeDigits(month, 2, pos);
+        bytes[pos++] = '-';
+        return writeDigits(day, 2, pos);
+    }
+
+    private int writeTime(long secondOfDay, int micros, int pos)
+    {
+        int seconds = (int) secondOfDay;
+        pos = writeDigits(seconds / 3600, 2, pos);
+        bytes[pos++] = ':';
+        pos = writeDigits(seconds / 60 % 60, 2, pos);
+        bytes[pos++] = ':';
+        pos = writeDigits(seconds % 60, 2, pos);
+        bytes[pos++] = '.';
+        return writeDigits(micros, 6, pos);
+    }
+
+    // writes a non-negative value with leading zeros
+    private int writeDigits(int value, int digits, int pos)
+    {
+        for (int i = pos + digits - 1; i >= pos; i--) {
+            bytes[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return pos + digits;
+    }
+}
@@ -0,0 +1,317 @@
+package org.embulk.output.postgresql;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.Calendar;
+
+import org.embulk.output.jdbc.BatchInsert;
+import org.embulk.output.jdbc.JdbcOutputConnector;
+import org.embulk.output.jdbc.JdbcSchema;
+import org.embulk.output.jdbc.PhaseEvents;
+import org.embulk.output.jdbc.TableIdentifier;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads rows by COPY in the binary format. Values are encoded by BinaryCopyEncoder of each column
+ * so that the server doesn't need to parse text.
+ * A row is encoded into a buffer and written to the batch by add(), so a value which fails to be encoded
+ * doesn't leave a part of its row in the COPY data.
+ */
+public class PostgreSQLBinaryCopyBatchInsert
+        implements BatchInsert
+{
+    private static final Logger logger = LoggerFactory.getLogger(PostgreSQLBinaryCopyBatchInsert.class);
+
+    // signature, flags field and length of header extension area
+    private static final byte[] HEADER = new byte[] {
+        'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', 0,
+        0, 0, 0, 0,
+        0, 0, 0, 0,
+    };
+    private static final short TRAILER = -1;
+
+    private final JdbcOutputConnector connector;
+
+    private PostgreSQLOutputConnection connection = null;
+    private CopyManager copyManager = null;
+    private String copySql = null;
+    private TableIdentifier loadTable = null;
+    private BinaryCopyEncoder[] encoders;
+
+    // sends rows to the server while they are written instead of writing them to temporary files
+    private final boolean streaming;
+    private CopyInOutputStream copyStream = null;
+
+    private File currentFile;
+    private DataOutputStream out;
+    // fields of the current row
+    private final ByteArrayOutputStream rowBuffer = new ByteArrayOutputStream();
+    private final DataOutputStream row = new DataOutputStream(rowBuffer);
+    private int index;
+    private int batchRows;
+    private long totalRows;
+
+    public PostgreSQLBinaryCopyBatchInsert(JdbcOutputConnector connector) throws IOException, SQLException
+    {
+        this(connector, false);
+    }
+
+    public PostgreSQLBinaryCopyBatchInsert(JdbcOutputConnector connector, boolean streaming) throws IOException, SQLException
+    {
+        this.connector = connector;
+        this.streaming = streaming;
+        if (!streaming) {
+            openNewFile();
+        }
+    }
+
+    @Override
+    public void prepare(TableIdentifier loadTable, JdbcSchema insertSchema) throws SQLException
+    {
+        this.encoders = new BinaryCopyEncoder[insertSchema.getCount()];
+        for (int i = 0; i < insertSchema.getCount(); i++) {
+            final String columnName = insertSchema.getColumnName(i);
+            final String typeName = insertSchema.getColumn(i).getSimpleTypeName();
+            encoders[i] = BinaryCopyEncoder.of(insertSchema.getColumn(i)).orElseThrow(() -> new SQLException(
+                        String.format("copy_format: binary doesn't support type %s of column '%s'.", typeName, columnName)));
+        }
+
+        this.connection = (PostgreSQLOutputConnection)connector.connect(true);
+        this.copySql = connection.buildCopySql(loadTable, insertSchema, CopyFormat.BINARY);
+        this.loadTable = loadTable;
+        this.copyManager = connection.newCopyManager();
+        logger.info("Copy SQL: "+copySql);
+        if (streaming) {
+            this.copyStream = new CopyInOutputStream(copyManager, copySql);
+            this.out = new DataOutputStream(copyStream);
+        }
+    }
+
+    private void openNewFile() throws IOException
+    {
+        currentFile = File.createTempFile("embulk-output-postgres-copy-", ".pgcopy.tmp");  // TODO configurable temporary file path
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(currentFile)));
+    }
+
+    private void closeCurrentFile() throws IOException
+    {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    @Override
+    public int getBatchWeight()
+    {
+        return out.size();
+    }
+
+    @Override
+    public void add() throws IOException
+    {
+        if (batchRows == 0) {
+            out.write(HEADER);
+        }
+        rowBuffer.writeTo(out);
+        batchRows++;
+        index = 0;
+    }
+
+    @Override
+    public void flush() throws IOException, SQLException
+    {
+        if (batchRows == 0) {
+            return;
+        }
+        out.writeShort(TRAILER);
+        File file = null;
+        long bytes = out.size();
+        if (!streaming) {
+            closeCurrentFile();
+            file = currentFile;
+            bytes = file.length();
+        }
+
+        logger.info(String.format("Loading %,d rows (%,d bytes)", batchRows, bytes));
+        long startTime = System.currentTimeMillis();
+        PhaseEvents.Span span = PhaseEvents.begin(PhaseEvents.Phase.COPY, loadTable)
+                .setRows(batchRows).setBytes(bytes);
+        try {
+            if (streaming) {
+                // rows are already sent while they are written, and they are loaded by ending COPY
+                copyStream.endCopy();
+            } else {
+                try (FileInputStream in = new FileInputStream(file)) {
+                    copyManager.copyIn(copySql, in);
+                }
+            }
+        } catch (IOException | SQLException ex) {
+            span.setFailed();
+            throw ex;
+        } finally {
+            span.close();
+        }
+        double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
+
+        totalRows += batchRows;
+        batchRows = 0;
+        logger.info(String.format("> %.2f seconds (loaded %,d rows in total)", seconds, totalRows));
+
+        if (streaming) {
+            out = new DataOutputStream(copyStream);
+        } else {
+            openNewFile();
+            file.delete();
+        }
+    }
+
+    @Override
+    public void finish() throws IOException, SQLException
+    {
+    }
+
+    @Override
+    public void close() throws IOException, SQLException
+    {
+        try {
+            if (streaming) {
+                if (copyStream != null) {
+                    copyStream.cancelCopy();
+                }
+            } else {
+                closeCurrentFile();
+                currentFile.delete();
+            }
+        } finally {
+            if (connection != null) {
+                connection.close();
+                connection = null;
+            }
+        }
+    }
+
+    @Override
+    public int[] getLastUpdateCounts()
+    {
+        // need not be implemented because PostgreSQLBinaryCopyBatchInsert won't retry.
+        return new int[]{};
+    }
+
+    @Override
+    public boolean supportsReplay()
+    {
+        return false;
+    }
+
+    // a row starts with the number of fields. the header of a batch is written by add
+    private BinaryCopyEncoder nextField() throws IOException
+    {
+        if (index == 0) {
+            rowBuffer.reset();
+            row.writeShort(encoders.length);
+        }
+        return encoders[index++];
+    }
+
+    @Override
+    public void setNull(int sqlType) throws IOException
+    {
+        nextField();
+        row.writeInt(-1);
+    }
+
+    @Override
+    public void setBoolean(boolean v) throws IOException, SQLException
+    {
+        nextField().encodeBoolean(row, v);
+    }
+
+    @Override
+    public void setByte(byte v) throws IOException, SQLException
+    {
+        nextField().encodeLong(row, v);
+    }
+
+    @Override
+    public void setShort(short v) throws IOException, SQLException
+    {
+        nextField().encodeLong(row, v);
+    }
+
+    @Override
+    public void setInt(int v) throws IOException, SQLException
+    {
+        nextField().encodeLong(row, v);
+    }
+
+    @Override
+    public void setLong(long v) throws IOException, SQLException
+    {
+        nextField().encodeLong(row, v);
+    }
+
+    @Override
+    public void setFloat(float v) throws IOException, SQLException
+    {
+        nextField().encodeDouble(row, v);
+    }
+
+    @Override
+    public void setDouble(double v) throws IOException, SQLException
+    {
+        nextField().encodeDouble(row, v);
+    }
+
+    @Override
+    public void setBigDecimal(BigDecimal v) throws IOException, SQLException
+    {
+        nextField().encodeBigDecimal(row, v);
+    }
+
+    @Override
+    public void setString(String v) throws IOException, SQLException
+    {
+        nextField().encodeString(row, v);
+    }
+
+    @Override
+    public void setNString(String v) throws IOException, SQLException
+    {
+        nextField().encodeString(row, v);
+    }
+
+    @Override
+    public void setBytes(byte[] v) throws IOException, SQLException
+    {
+        nextField().encodeBytes(row, v);
+    }
+
+    @Override
+    public void setSqlDate(Instant v, Calendar cal) throws IOException, SQLException
+    {
+        nextField().encodeSqlDate(row, v, cal);
+    }
+
+    @Override
+    public void setSqlTime(Instant v, Calendar cal) throws IOException, SQLException
+    {
+        nextField().encodeSqlTime(row, v, cal);
+    }
+
+    @Override
+    public void setSqlTimestamp(Instant v, Calendar cal) throws IOException, SQLException
+    {
+        nextField().encodeSqlTimestamp(row, v, cal);
+    }
+}
@@ -4,9 +4,20 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.embulk.output.jdbc.JdbcOutputConnector;
 import org.embulk.output.jdbc.JdbcSchema;
+import org.embulk.output.jdbc.PhaseEvents;
 import org.embulk.output.jdbc.TableIdentifier;
 import org.postgresql.copy.CopyManager;
 import org.slf4j.Logger;
@@ -21,12 +32,39 @@ public class PostgreSQLCopyBatchInsert
     private PostgreSQLOutputConnection connection = null;
     private CopyManager copyManager = null;
     private String copySql = null;
+    private TableIdentifier loadTable = null;
     private long totalRows;
 
+    // sends rows to the server while they are written instead of writing them to temporary files
+    private final boolean streaming;
+    private CopyInOutputStream copyStream = null;
+
+    // loads files of batches by COPY on multiple connections in parallel
+    private final int parallelism;
+    private final List<PostgreSQLOutputConnection> laneConnections = new ArrayList<>();
+    private final Deque<CopyManager> idleLanes = new ArrayDeque<>();
+    private final Deque<InFlightCopy> inFlightCopies = new ArrayDeque<>();
+    private ExecutorService executorService = null;
+
     public PostgreSQLCopyBatchInsert(JdbcOutputConnector connector) throws IOException, SQLException
     {
-        super();
+        this(connector, false);
+    }
+
+    public PostgreSQLCopyBatchInsert(JdbcOutputConnector connector, boolean streaming) throws IOException, SQLException
+    {
+        this(connector, streaming, 1);
+    }
+
+    public PostgreSQLCopyBatchInsert(JdbcOutputConnector connector, boolean streaming, int parallelism) throws IOException, SQLException
+    {
+        super(!streaming);
+        if (streaming && parallelism > 1) {
+            throw new IllegalArgumentException("COPY streaming doesn't support parallelism");
+        }
         this.connector = connector;
+        this.streaming = streaming;
+        this.parallelism = parallelism;
     }
 
     @Override
@@ -34,23 +72,72 @@ public class PostgreSQLCopyBatchInsert
     {
         this.connection = (PostgreSQLOutputConnection)connector.connect(true);
         this.copySql = connection.buildCopySql(loadTable, insertSchema);
+        this.loadTable = loadTable;
         this.copyManager = connection.newCopyManager();
         logger.info("Copy SQL: "+copySql);
+        if (streaming) {
+            this.copyStream = new CopyInOutputStream(copyManager, copySql);
+            this.writer = new CopyTextWriter(copyStream);
+        }
+
+        if (parallelism > 1) {
+            // each lane has its own connection because a connection can't run COPY concurrently.
+            laneConnections.add(connection);
+            idleLanes.add(copyManager);
+            for (int i = 1; i < parallelism; i++) {
+                PostgreSQLOutputConnection con = (PostgreSQLOutputConnection)connector.connect(true);
+                laneConnections.add(con);
+                idleLanes.add(con.newCopyManager());
+            }
+            this.executorService = Executors.newFixedThreadPool(parallelism, runnable -> {
+                Thread thread = new Thread(runnable, "embulk-output-postgresql-copy");
+                thread.setDaemon(true);
+                return thread;
+            });
+            logger.info("Loading batches by {} COPY streams in parallel", parallelism);
+        }
+    }
+
+    @Override
+    public int getBatchWeight()
+    {
+        if (streaming) {
+            // bytes buffered in the writer are not sent to the stream yet
+            long bytes = copyStream.getBytes() + writer.getBufferedBytes();
+            return bytes > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) bytes;
+        }
+        return super.getBatchWeight();
     }
 
     @Override
     public void flush() throws IOException, SQLException
     {
+        if (streaming) {
+            flushStream();
+            return;
+        }
+
         File file = closeCurrentFile();  // flush buffered data in writer
         if (getBatchWeight() == 0) return;
 
+        if (parallelism > 1) {
+            flushAsync(file);
+            return;
+        }
+
         logger.info(String.format("Loading %,d rows (%,d bytes)", batchRows, file.length()));
         long startTime = System.currentTimeMillis();
         FileInputStream in = new FileInputStream(file);
+        PhaseEvents.Span span = PhaseEvents.begin(PhaseEvents.Phase.COPY, loadTable)
+                .setRows(batchRows).setBytes(file.length());
         try {
             // TODO check age of connection and call isValid if it's old and reconnect if it's invalid
             copyManager.copyIn(copySql, in);
+        } catch (IOException | SQLException ex) {
+            span.setFailed();
+            throw ex;
         } finally {
+            span.close();
             in.close();
         }
         double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
@@ -63,18 +150,183 @@ public class PostgreSQLCopyBatchInsert
         file.delete();
     }
 
+    private void flushAsync(File file) throws IOException, SQLException
+    {
+        if (idleLanes.isEmpty()) {
+            // wait for the oldest batch to reuse its lane. the number of files waiting for COPY is bounded by parallelism.
+            waitInFlightCopy();
+        }
+
+        logger.info(String.format("Loading %,d rows (%,d bytes)", batchRows, file.length()));
+        InFlightCopy submitted = new InFlightCopy(idleLanes.poll(), file, batchRows);
+        submitted.future = executorService.submit(submitted);
+        inFlightCopies.add(submitted);
+        batchRows = 0;
+
+        // the submitted file is deleted by InFlightCopy
+        openNewFile();
+    }
+
+    private void waitInFlightCopy() throws IOException, SQLException
+    {
+        InFlightCopy oldest = inFlightCopies.poll();
+        try {
+            oldest.await();
+            idleLanes.add(oldest.lane);
+        } catch (IOException | SQLException ex) {
+            // wait for all batches not to leave COPY running on other connections
+            while (!inFlightCopies.isEmpty()) {
+                InFlightCopy c = inFlightCopies.poll();
+                try {
+                    c.await();
+                } catch (IOException | SQLException suppressed) {
+                    ex.addSuppressed(suppressed);
+                }
+            }
+            throw ex;
+        }
+    }
+
+    @Override
+    public int getInFlightRows()
+    {
+        int rows = 0;
+        for (InFlightCopy c : inFlightCopies) {
+            rows += c.rows;
+        }
+        return rows;
+    }
+
+    // rows are already sent while they are written, and they are loaded by ending COPY
+    private void flushStream() throws IOException, SQLException
+    {
+        writer.flush();
+        if (batchRows == 0) return;
+
+        long bytes = copyStream.getBytes();
+        logger.info(String.format("Loading %,d rows (%,d bytes)", batchRows, bytes));
+        long startTime = System.currentTimeMillis();
+        PhaseEvents.Span span = PhaseEvents.begin(PhaseEvents.Phase.COPY, loadTable)
+                .setRows(batchRows).setBytes(bytes);
+        try {
+            copyStream.endCopy();
+        } catch (IOException | SQLException ex) {
+            span.setFailed();
+            throw ex;
+        } finally {
+            span.close();
+        }
+        double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
+
+        totalRows += batchRows;
+        batchRows = 0;
+        logger.info(String.format("> %.2f seconds (loaded %,d rows in total)", seconds, totalRows));
+    }
+
     @Override
     public void finish() throws IOException ,SQLException
     {
+        while (!inFlightCopies.isEmpty()) {
+            waitInFlightCopy();
+        }
     }
 
     @Override
     public void close() throws IOException, SQLException
     {
-        closeCurrentFile().delete();
-        if (connection != null) {
-            connection.close();
+        try {
+            if (streaming) {
+                // the writer is not closed not to send buffered rows
+                if (copyStream != null) {
+                    copyStream.cancelCopy();
+                }
+                writer = null;
+            } else {
+                closeCurrentFile().delete();
+            }
+        } finally {
+            if (executorService != null) {
+                executorService.shutdownNow();
+                try {
+                    executorService.awaitTermination(60, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    // connections are closed anyway, and the caller can still see the interruption
+                    Thread.currentThread().interrupt();
+                }
+                for (InFlightCopy c : inFlightCopies) {
+                    c.file.delete();
+                }
+            }
+            if (laneConnections.isEmpty()) {
+                if (connection != null) {
+                    connection.close();
+                }
+            } else {
+                for (PostgreSQLOutputConnection con : laneConnections) {
+                    con.close();
+                }
+            }
             connection = null;
         }
     }
+
+    private class InFlightCopy
+            implements Callable<Void>
+    {
+        private final CopyManager lane;
+        private final File file;
+        private final int rows;
+        private Future<Void> future;
+
+        InFlightCopy(CopyManager lane, File file, int rows)
+        {
+            this.lane = lane;
+            this.file = file;
+            this.rows = rows;
+        }
+
+        @Override
+        public Void call() throws IOException, SQLException
+        {
+            long startTime = System.currentTimeMillis();
+            PhaseEvents.Span span = PhaseEvents.begin(PhaseEvents.Phase.COPY, loadTable)
+                    .setRows(rows).setBytes(file.length());
+            try (FileInputStream in = new FileInputStream(file)) {
+                lane.copyIn(copySql, in);
+            } catch (IOException | SQLException ex) {
+                span.setFailed();
+                throw ex;
+            } finally {
+                span.close();
+                file.delete();
+            }
+            double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
+            logger.info(String.format("> %.2f seconds (loaded %,d rows)", seconds, rows));
+            return null;
+        }
+
+        void await() throws IOException, SQLException
+        {
+            try {
+                future.get();
+                totalRows += rows;
+                logger.info(String.format("Loaded %,d rows in total", totalRows));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException(ex);
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                } else if (cause instanceof SQLException) {
+                    throw (SQLException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new SQLException(cause);
+            }
+        }
+    }
 }
@@ -33,6 +33,11 @@ public class PostgreSQLOutputConnection
     }
 
     public String buildCopySql(TableIdentifier toTable, JdbcSchema toTableSchema)
+    {
+        return buildCopySql(toTable, toTableSchema, CopyFormat.TEXT);
+    }
+
+    public String buildCopySql(TableIdentifier toTable, JdbcSchema toTableSchema, CopyFormat format)
     {
         StringBuilder sb = new StringBuilder();
 
@@ -45,6 +50,9 @@ public class PostgreSQLOutputConnection
         }
         sb.append(") ");
         sb.append("FROM STDIN");
+        if (format == CopyFormat.BINARY) {
+            sb.append(" WITH (FORMAT binary)");
+        }
 
         return sb.toString();
     }
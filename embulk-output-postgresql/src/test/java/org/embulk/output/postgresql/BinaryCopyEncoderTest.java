@@ -0,0 +1,163 @@
+package org.embulk.output.postgresql;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import org.embulk.output.jdbc.JdbcColumn;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class BinaryCopyEncoderTest
+{
+    @Test
+    public void testNumeric() throws Exception
+    {
+        // ndigits, weight, sign, dscale, digits
+        assertArrayEquals(numeric(0, 0, 0x0000, 0), encode("numeric", new BigDecimal("0")));
+        assertArrayEquals(numeric(0, 0, 0x0000, 2), encode("numeric", new BigDecimal("0.00")));
+        assertArrayEquals(numeric(1, 0, 0x0000, 0, 123), encode("numeric", new BigDecimal("123")));
+        assertArrayEquals(numeric(1, 1, 0x0000, 0, 1), encode("numeric", new BigDecimal("10000")));
+        assertArrayEquals(numeric(1, 1, 0x0000, 0, 1), encode("numeric", new BigDecimal("1E+4")));
+        assertArrayEquals(numeric(3, 1, 0x4000, 5, 1, 2345, 6700), encode("numeric", new BigDecimal("-12345.67000")));
+        assertArrayEquals(numeric(1, -1, 0x0000, 3, 1230), encode("numeric", new BigDecimal("0.123")));
+        assertArrayEquals(numeric(1, -2, 0x0000, 8, 123), encode("numeric", new BigDecimal("0.00000123")));
+        assertArrayEquals(numeric(0, 0, 0xC000, 0), encode("numeric", Double.NaN));
+    }
+
+    @Test
+    public void testIntegers() throws Exception
+    {
+        assertArrayEquals(field(ByteBuffer.allocate(2).putShort((short) -2).array()), encode("int2", -2L));
+        assertArrayEquals(field(ByteBuffer.allocate(4).putInt(42).array()), encode("int4", "42"));
+        assertArrayEquals(field(ByteBuffer.allocate(4).putInt(3).array()), encode("int4", new BigDecimal("2.5")));
+        assertArrayEquals(field(ByteBuffer.allocate(8).putLong(Long.MAX_VALUE).array()), encode("int8", Long.MAX_VALUE));
+        try {
+            encode("int2", 40000L);
+            fail("out of range");
+        } catch (SQLException ex) {
+        }
+    }
+
+    @Test
+    public void testDateTime() throws Exception
+    {
+        Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("Asia/Tokyo"));
+        // 2000-01-02T08:00:00.123456+09:00
+        Instant instant = Instant.parse("2000-01-01T23:00:00.123456Z");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        encoder("date").encodeSqlDate(out, instant, cal);
+        encoder("timestamptz").encodeSqlTimestamp(out, instant, cal);
+        encoder("timestamp").encodeSqlTimestamp(out, instant, cal);
+        encoder("time").encodeSqlTime(out, instant, cal);
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        assertEquals(4, buffer.getInt());
+        assertEquals(1, buffer.getInt());
+        assertEquals(8, buffer.getInt());
+        assertEquals(82800123456L, buffer.getLong());
+        assertEquals(8, buffer.getInt());
+        assertEquals(115200123456L, buffer.getLong());
+        assertEquals(8, buffer.getInt());
+        assertEquals(28800123456L, buffer.getLong());
+    }
+
+    @Test
+    public void testTimestampString() throws Exception
+    {
+        // 2000-01-01T23:00:00.123456Z
+        assertArrayEquals(timestamp(82800123456L), encode("timestamptz", "2000-01-02 08:00:00.123456+09:00"));
+        assertArrayEquals(timestamp(82800123456L), encode("timestamptz", "2000-01-01T23:00:00.123456Z"));
+        assertArrayEquals(timestamp(82800123456L), encode("timestamptz", "2000-01-02 08:00:00.123456 +0900"));
+        // the offset is ignored by timestamp
+        assertArrayEquals(timestamp(115200123456L), encode("timestamp", "2000-01-02 08:00:00.123456+09"));
+        assertArrayEquals(timestamp(115200000000L), encode("timestamp", "2000-01-02 08:00"));
+
+        // timestamptz without an offset is in the default time zone
+        TimeZone defaultTimeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Tokyo"));
+        try {
+            assertArrayEquals(timestamp(82800123456L), encode("timestamptz", "2000-01-02 08:00:00.123456"));
+        } finally {
+            TimeZone.setDefault(defaultTimeZone);
+        }
+
+        for (String invalid : new String[] {"2000-01-02", "2000-13-01 00:00:00", "2000-01-02 08:00:00+25", "infinity"}) {
+            try {
+                encode("timestamptz", invalid);
+                fail("invalid timestamp " + invalid);
+            } catch (SQLException ex) {
+            }
+        }
+    }
+
+    @Test
+    public void testText() throws Exception
+    {
+        assertArrayEquals(field("a\tb".getBytes(StandardCharsets.UTF_8)), encode("varchar", "a\tb\0"));
+        assertArrayEquals(field(new byte[] {1, '{', '}'}), encode("jsonb", "{}"));
+        assertArrayEquals(field(new byte[] {1, (byte) 0xab}), encode("bytea", "\\x01ab"));
+        assertArrayEquals(field(new byte[] {'a', '\\', 1}), encode("bytea", "a\\\\\\001"));
+        assertFalse(BinaryCopyEncoder.of(column("uuid")).isPresent());
+    }
+
+    private static JdbcColumn column(String typeName)
+    {
+        return JdbcColumn.newGenericTypeColumn("c", Types.OTHER, typeName.toUpperCase(), 0, 0, false, false);
+    }
+
+    private static BinaryCopyEncoder encoder(String typeName)
+    {
+        return BinaryCopyEncoder.of(column(typeName)).get();
+    }
+
+    private static byte[] encode(String typeName, Object value) throws Exception
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        BinaryCopyEncoder encoder = encoder(typeName);
+        if (value instanceof Long) {
+            encoder.encodeLong(out, (Long) value);
+        } else if (value instanceof Double) {
+            encoder.encodeDouble(out, (Double) value);
+        } else if (value instanceof BigDecimal) {
+            encoder.encodeBigDecimal(out, (BigDecimal) value);
+        } else {
+            encoder.encodeString(out, (String) value);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] timestamp(long micros)
+    {
+        return field(ByteBuffer.allocate(8).putLong(micros).array());
+    }
+
+    private static byte[] field(byte[] value)
+    {
+        return ByteBuffer.allocate(4 + value.length).putInt(value.length).put(value).array();
+    }
+
+    private static byte[] numeric(int ndigits, int weight, int sign, int dscale, int... digits)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(8 + ndigits * 2);
+        buffer.putShort((short) ndigits).putShort((short) weight).putShort((short) sign).putShort((short) dscale);
+        for (int digit : digits) {
+            buffer.putShort((short) digit);
+        }
+        return field(buffer.array());
+    }
+}
@@ -0,0 +1,204 @@
+package org.embulk.output.postgresql;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CopyInOutputStreamTest
+{
+    private static final String COPY_SQL = "COPY t FROM STDIN";
+
+    // COPY operations started by copyIn in order
+    private final List<FakeCopyIn> copies = new ArrayList<>();
+    private SQLException writeFailure;
+
+    @Test
+    public void testStartCopyLazily() throws Exception
+    {
+        CopyInOutputStream stream = new CopyInOutputStream(newCopyManager(), COPY_SQL);
+        stream.write(bytes("1\ta\n"));
+        stream.write('2');
+        // bytes are buffered, and COPY doesn't start until they are sent
+        assertEquals(0, copies.size());
+        assertEquals(5, stream.getBytes());
+
+        stream.flush();
+        assertEquals(1, copies.size());
+        assertArrayEquals(bytes("1\ta\n2"), copies.get(0).data.toByteArray());
+    }
+
+    @Test
+    public void testWriteLargerThanBuffer() throws Exception
+    {
+        CopyInOutputStream stream = new CopyInOutputStream(newCopyManager(), COPY_SQL);
+        byte[] large = new byte[100 * 1024];
+        Arrays.fill(large, (byte) 'x');
+        stream.write(bytes("a"));
+        stream.write(large, 0, large.length);
+
+        // buffered bytes are sent before the large bytes, which are sent without being buffered
+        assertEquals(1, copies.size());
+        byte[] data = copies.get(0).data.toByteArray();
+        assertEquals(large.length + 1, data.length);
+        assertEquals('a', data[0]);
+        assertEquals(large.length + 1, stream.getBytes());
+    }
+
+    @Test
+    public void testEndCopy() throws Exception
+    {
+        CopyInOutputStream stream = new CopyInOutputStream(newCopyManager(), COPY_SQL);
+        // nothing is sent, and no COPY is started
+        assertEquals(0, stream.endCopy());
+        assertEquals(0, copies.size());
+
+        stream.write(bytes("1\n2\n"));
+        assertEquals(2, stream.endCopy());
+        assertEquals(1, copies.size());
+        assertTrue(copies.get(0).ended);
+        assertArrayEquals(bytes("1\n2\n"), copies.get(0).data.toByteArray());
+        assertEquals(0, stream.getBytes());
+
+        // the next batch is loaded by a new COPY
+        stream.write(bytes("3\n"));
+        assertEquals(1, stream.endCopy());
+        assertEquals(2, copies.size());
+        assertArrayEquals(bytes("3\n"), copies.get(1).data.toByteArray());
+
+        // close doesn't cancel COPY which is already ended
+        stream.close();
+        assertFalse(copies.get(1).cancelled);
+    }
+
+    @Test
+    public void testCancelCopy() throws Exception
+    {
+        CopyInOutputStream stream = new CopyInOutputStream(newCopyManager(), COPY_SQL);
+        stream.write(bytes("1\n"));
+        stream.flush();
+        stream.write(bytes("2\n"));
+        stream.cancelCopy();
+
+        // buffered bytes are discarded instead of being sent
+        FakeCopyIn copy = copies.get(0);
+        assertTrue(copy.cancelled);
+        assertFalse(copy.ended);
+        assertArrayEquals(bytes("1\n"), copy.data.toByteArray());
+        assertEquals(0, stream.getBytes());
+
+        // rows written after cancelCopy are loaded by a new COPY
+        stream.write(bytes("3\n"));
+        assertEquals(1, stream.endCopy());
+        assertEquals(2, copies.size());
+        assertArrayEquals(bytes("3\n"), copies.get(1).data.toByteArray());
+    }
+
+    @Test
+    public void testCloseCancelsCopy() throws Exception
+    {
+        CopyInOutputStream stream = new CopyInOutputStream(newCopyManager(), COPY_SQL);
+        stream.write(bytes("1\n"));
+        // close without a COPY in progress doesn't start one
+        stream.close();
+        assertEquals(0, copies.size());
+
+        stream.write(bytes("2\n"));
+        stream.flush();
+        stream.close();
+        assertTrue(copies.get(0).cancelled);
+    }
+
+    @Test
+    public void testWriteFailure() throws Exception
+    {
+        writeFailure = new SQLException("invalid input syntax", "22P02");
+        CopyInOutputStream stream = new CopyInOutputStream(newCopyManager(), COPY_SQL);
+        stream.write(bytes("x\n"));
+        try {
+            stream.flush();
+            fail("flush should fail");
+        } catch (IOException ex) {
+            // the server rejected rows while they were being sent
+            assertSame(writeFailure, ex.getCause());
+        }
+    }
+
+    private CopyManager newCopyManager() throws SQLException
+    {
+        BaseConnection connection = (BaseConnection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {BaseConnection.class}, (proxy, method, args) -> null);
+        return new CopyManager(connection) {
+            @Override
+            public CopyIn copyIn(String sql) throws SQLException
+            {
+                assertEquals(COPY_SQL, sql);
+                FakeCopyIn copy = new FakeCopyIn();
+                copies.add(copy);
+                return (CopyIn) Proxy.newProxyInstance(getClass().getClassLoader(),
+                        new Class<?>[] {CopyIn.class}, copy);
+            }
+        };
+    }
+
+    private static byte[] bytes(String s)
+    {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private class FakeCopyIn
+            implements InvocationHandler
+    {
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        boolean ended;
+        boolean cancelled;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws SQLException
+        {
+            switch (method.getName()) {
+            case "writeToCopy":
+                if (writeFailure != null) {
+                    throw writeFailure;
+                }
+                data.write((byte[]) args[0], (Integer) args[1], (Integer) args[2]);
+                return null;
+            case "endCopy":
+                ended = true;
+                // the number of rows in the text
+                long rows = 0;
+                for (byte b : data.toByteArray()) {
+                    if (b == '\n') {
+                        rows++;
+                    }
+                }
+                return rows;
+            case "cancelCopy":
+                cancelled = true;
+                return null;
+            case "isActive":
+                return !ended && !cancelled;
+            default:
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package org.embulk.output.postgresql;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class CopyTextWriterTest
+{
+    @Test
+    public void testEncodeAsOutputStreamWriter() throws Exception
+    {
+        Random random = new Random(0);
+        char[] samples = new char[] {'a', '1', '\t', '\\', 'é', 'あ', '\ud83d', '\ude00', '￿'};
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        try (CopyTextWriter writer = new CopyTextWriter(actual);
+                Writer expectedWriter = new OutputStreamWriter(expected, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < 200; i++) {
+                // longer than the chunk and the buffer
+                StringBuilder sb = new StringBuilder();
+                int length = random.nextInt(i % 50 == 0 ? 100000 : 3000);
+                for (int j = 0; j < length; j++) {
+                    sb.append(samples[random.nextInt(samples.length)]);
+                }
+                // a surrogate pair at the end of a chunk
+                sb.insert(Math.min(1023, sb.length()), "😀");
+                // OutputStreamWriter keeps a high surrogate at the end until the next write
+                sb.append('a');
+                writer.write(sb.toString());
+                expectedWriter.write(sb.toString());
+            }
+        }
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+    }
+
+    @Test
+    public void testEscape() throws Exception
+    {
+        byte[][] escapes = new byte[0x80][];
+        escapes['\t'] = "\\t".getBytes(StandardCharsets.UTF_8);
+        escapes['\\'] = "\\\\".getBytes(StandardCharsets.UTF_8);
+        escapes[0] = new byte[0];
+
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        try (CopyTextWriter writer = new CopyTextWriter(actual)) {
+            writer.writeEscaped("a\tb\\c\0dé", escapes);
+            writer.write('\n');
+        }
+        assertArrayEquals("a\\tb\\\\cdé\n".getBytes(StandardCharsets.UTF_8), actual.toByteArray());
+    }
+
+    @Test
+    public void testBufferedBytes() throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CopyTextWriter writer = new CopyTextWriter(out);
+        writer.write("abé");
+        writer.write('\n');
+        // bytes are counted in UTF-8 while they are buffered
+        assertEquals(5, writer.getBufferedBytes());
+        assertEquals(0, out.size());
+
+        writer.flush();
+        assertEquals(0, writer.getBufferedBytes());
+        assertEquals(5, out.size());
+    }
+}
@@ -0,0 +1,98 @@
+package org.embulk.output.postgresql;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.Random;
+import java.util.SimpleTimeZone;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DateTimeTextEncoderTest
+{
+    private static final String[] ZONES = new String[] {
+        "UTC", "Asia/Tokyo", "America/New_York", "Europe/London", "America/St_Johns",
+        "Asia/Kathmandu", "Australia/Lord_Howe", "Pacific/Apia", "GMT-03:30",
+    };
+
+    @Test
+    public void testFormatAsCalendar()
+    {
+        Random random = new Random(0);
+        DateTimeTextEncoder encoder = new DateTimeTextEncoder();
+        long min = Instant.parse("1583-01-02T00:00:00Z").getEpochSecond();
+        long max = Instant.parse("2200-01-01T00:00:00Z").getEpochSecond();
+        for (String id : ZONES) {
+            Calendar cal = Calendar.getInstance(TimeZone.getTimeZone(id), Locale.ENGLISH);
+            long seconds = min;
+            while (seconds < max) {
+                // many values in a range between transitions, and some across them
+                seconds += random.nextInt(random.nextBoolean() ? 86400 * 400 : 3600 * 6);
+                Instant instant = Instant.ofEpochSecond(seconds, random.nextInt(1000000) * 1000);
+                assertFormat(encoder, instant, cal);
+            }
+        }
+    }
+
+    @Test
+    public void testTransitions()
+    {
+        DateTimeTextEncoder encoder = new DateTimeTextEncoder();
+        TimeZone zone = TimeZone.getTimeZone("America/New_York");
+        // 2020-03-08T02:00:00-05:00 is 2020-03-08T03:00:00-04:00
+        assertEquals("2020-03-08 01:59:59.000000-0500", format(encoder, Instant.parse("2020-03-08T06:59:59Z"), zone));
+        assertEquals("2020-03-08 03:00:00.000000-0400", format(encoder, Instant.parse("2020-03-08T07:00:00Z"), zone));
+        assertEquals("2020-03-08 01:59:59.999999-0500", format(encoder, Instant.parse("2020-03-08T06:59:59.999999Z"), zone));
+        assertEquals("2020-11-01 01:00:00.000000-0400", format(encoder, Instant.parse("2020-11-01T05:00:00Z"), zone));
+        assertEquals("2020-11-01 01:00:00.000000-0500", format(encoder, Instant.parse("2020-11-01T06:00:00Z"), zone));
+    }
+
+    @Test
+    public void testCustomTimeZone()
+    {
+        DateTimeTextEncoder encoder = new DateTimeTextEncoder();
+        // +01:00 with DST in April to October, which is not in tzdb
+        TimeZone zone = new SimpleTimeZone(3600000, "Custom",
+                Calendar.APRIL, 1, 0, 0, Calendar.OCTOBER, 1, 0, 0);
+        assertEquals("2020-01-01 01:00:00.000000+0100", format(encoder, Instant.parse("2020-01-01T00:00:00Z"), zone));
+        assertEquals("2020-07-01 02:00:00.000000+0200", format(encoder, Instant.parse("2020-07-01T00:00:00Z"), zone));
+    }
+
+    @Test
+    public void testOutOfRange()
+    {
+        DateTimeTextEncoder encoder = new DateTimeTextEncoder();
+        TimeZone zone = TimeZone.getTimeZone("UTC");
+        assertEquals(-1, encoder.formatDate(Instant.parse("1582-12-31T23:59:59Z"), zone));
+        assertEquals(-1, encoder.formatTimestamp(Instant.parse("+10000-01-01T00:00:00Z"), zone));
+        assertEquals("1583-01-01", new String(encoder.getBytes(), 0, encoder.formatDate(Instant.parse("1583-01-01T00:00:00Z"), zone), StandardCharsets.US_ASCII));
+        assertEquals("9999-12-31", new String(encoder.getBytes(), 0, encoder.formatDate(Instant.parse("9999-12-31T23:59:59Z"), zone), StandardCharsets.US_ASCII));
+    }
+
+    private static String format(DateTimeTextEncoder encoder, Instant instant, TimeZone zone)
+    {
+        int length = encoder.formatTimestamp(instant, zone);
+        return new String(encoder.getBytes(), 0, length, StandardCharsets.US_ASCII);
+    }
+
+    private static void assertFormat(DateTimeTextEncoder encoder, Instant v, Calendar cal)
+    {
+        cal.setTimeInMillis(v.getEpochSecond() * 1000);
+        String date = String.format(Locale.ENGLISH, "%d-%02d-%02d",
+                cal.get(Calendar.YEAR), cal.get(Calendar.MONTH) + 1, cal.get(Calendar.DAY_OF_MONTH));
+        String time = String.format(Locale.ENGLISH, "%02d:%02d:%02d.%06d",
+                cal.get(Calendar.HOUR_OF_DAY), cal.get(Calendar.MINUTE), cal.get(Calendar.SECOND), v.getNano() / 1000);
+        int offset = (cal.get(Calendar.ZONE_OFFSET) + cal.get(Calendar.DST_OFFSET)) / 1000 / 60;
+        String timestamp = String.format(Locale.ENGLISH, "%s %s%s%02d%02d",
+                date, time, offset >= 0 ? "+" : "-", Math.abs(offset) / 60, Math.abs(offset) % 60);
+
+        TimeZone zone = cal.getTimeZone();
+        assertEquals(v.toString(), date, new String(encoder.getBytes(), 0, encoder.formatDate(v, zone), StandardCharsets.US_ASCII));
+        assertEquals(v.toString(), time, new String(encoder.getBytes(), 0, encoder.formatTime(v, zone), StandardCharsets.US_ASCII));
+        assertEquals(v.toString(), timestamp, new String(encoder.getBytes(), 0, encoder.formatTimestamp(v, zone), StandardCharsets.US_ASCII));
+    }
+}
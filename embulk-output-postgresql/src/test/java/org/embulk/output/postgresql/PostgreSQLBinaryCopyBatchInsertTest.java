@@ -0,0 +1,102 @@
+package org.embulk.output.postgresql;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.embulk.output.jdbc.JdbcColumn;
+import org.embulk.output.jdbc.JdbcOutputConnector;
+import org.embulk.output.jdbc.JdbcSchema;
+import org.embulk.output.jdbc.TableIdentifier;
+import org.junit.Test;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class PostgreSQLBinaryCopyBatchInsertTest
+{
+    private static final TableIdentifier TABLE = new TableIdentifier(null, null, "t");
+    private static final JdbcSchema SCHEMA = new JdbcSchema(Arrays.asList(
+            JdbcColumn.newGenericTypeColumn("id", Types.BIGINT, "INT8", 0, 0, false, false),
+            JdbcColumn.newGenericTypeColumn("n", Types.INTEGER, "INT4", 0, 0, false, false)));
+
+    // data of COPY operations in order
+    private final List<byte[]> copies = new ArrayList<>();
+
+    @Test
+    public void testFailedRowIsNotWritten() throws Exception
+    {
+        PostgreSQLBinaryCopyBatchInsert batch = new PostgreSQLBinaryCopyBatchInsert(newConnector());
+        batch.prepare(TABLE, SCHEMA);
+        batch.setLong(1);
+        batch.setInt(10);
+        batch.add();
+
+        // the first field of the second row is encoded, and the second one fails
+        batch.setLong(2);
+        try {
+            batch.setString("x");
+            fail("setString should fail");
+        } catch (SQLException ex) {
+        }
+
+        batch.flush();
+        batch.close();
+
+        // only the first row is loaded, and the second row leaves nothing in the data
+        assertEquals(1, copies.size());
+        ByteBuffer data = ByteBuffer.wrap(copies.get(0));
+        data.position(19);
+        assertEquals(2, data.getShort());
+        assertEquals(8, data.getInt());
+        assertEquals(1L, data.getLong());
+        assertEquals(4, data.getInt());
+        assertEquals(10, data.getInt());
+        assertEquals(-1, data.getShort());
+        assertEquals(0, data.remaining());
+    }
+
+    private JdbcOutputConnector newConnector()
+    {
+        return autoCommit -> {
+            Connection connection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] {BaseConnection.class}, (proxy, method, args) -> {
+                        if (method.getName().equals("getMetaData")) {
+                            return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {DatabaseMetaData.class},
+                                    (p, m, a) -> m.getName().equals("getIdentifierQuoteString") ? "\"" : null);
+                        }
+                        return method.getReturnType() == boolean.class ? false : null;
+                    });
+            return new PostgreSQLOutputConnection(connection, null, null) {
+                @Override
+                public CopyManager newCopyManager() throws SQLException
+                {
+                    return new CopyManager((BaseConnection) connection) {
+                        @Override
+                        public long copyIn(String sql, InputStream from) throws SQLException, IOException
+                        {
+                            ByteArrayOutputStream data = new ByteArrayOutputStream();
+                            byte[] buffer = new byte[1024];
+                            for (int n = from.read(buffer); n >= 0; n = from.read(buffer)) {
+                                data.write(buffer, 0, n);
+                            }
+                            copies.add(data.toByteArray());
+                            return 1;
+                        }
+                    };
+                }
+            };
+        };
+    }
+}
@@ -0,0 +1,250 @@
+package org.embulk.output.postgresql;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.embulk.output.jdbc.JdbcColumn;
+import org.embulk.output.jdbc.JdbcOutputConnector;
+import org.embulk.output.jdbc.JdbcSchema;
+import org.embulk.output.jdbc.TableIdentifier;
+import org.junit.Test;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PostgreSQLCopyBatchInsertTest
+{
+    private static final TableIdentifier TABLE = new TableIdentifier(null, null, "t");
+    private static final JdbcSchema SCHEMA = new JdbcSchema(Arrays.asList(
+            JdbcColumn.newGenericTypeColumn("id", Types.BIGINT, "BIGINT", 0, 0, false, false)));
+
+    // batches loaded by COPY in the order of completion, such as "0:1\n" for a batch of a row 1 loaded by the first lane
+    private final List<String> loads = Collections.synchronizedList(new ArrayList<>());
+    private final List<Lane> lanes = new ArrayList<>();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+
+    @Test
+    public void testReuseLanes() throws Exception
+    {
+        PostgreSQLCopyBatchInsert batch = new PostgreSQLCopyBatchInsert(newConnector(), false, 2);
+        batch.prepare(TABLE, SCHEMA);
+        for (int i = 0; i < 5; i++) {
+            batch.setLong(i);
+            batch.add();
+            batch.flush();
+            assertTrue(batch.getInFlightRows() <= 2);
+        }
+        batch.finish();
+        assertEquals(0, batch.getInFlightRows());
+        batch.close();
+
+        // a connection for each lane, and a batch reuses the lane of the oldest batch when both lanes are busy
+        assertEquals(2, lanes.size());
+        assertEquals(Arrays.asList(0, 1, 0, 1, 0), lanesOfBatches());
+        assertEquals(5, loads.size());
+        assertTrue(maxRunning.get() <= 2);
+        for (Lane lane : lanes) {
+            assertTrue(lane.closed);
+        }
+    }
+
+    @Test
+    public void testSuppressOutOfOrderFailures() throws Exception
+    {
+        PostgreSQLCopyBatchInsert batch = new PostgreSQLCopyBatchInsert(newConnector(), false, 2);
+        batch.prepare(TABLE, SCHEMA);
+        // the second batch fails before the first one
+        CountDownLatch secondFailed = new CountDownLatch(1);
+        SQLException first = new SQLException("invalid input syntax", "22P02");
+        SQLException second = new SQLException("duplicate key", "23505");
+        lanes.get(0).failure = first;
+        lanes.get(0).waitFor = secondFailed;
+        lanes.get(1).failure = second;
+        lanes.get(1).failed = secondFailed;
+
+        addBatch(batch, 0);
+        addBatch(batch, 1);
+        try {
+            batch.finish();
+            fail("finish should fail");
+        } catch (SQLException ex) {
+            // the failure of the oldest batch is thrown, and the other failure is kept as a suppressed one
+            assertSame(first, ex);
+            assertArrayEquals(new Throwable[] {second}, ex.getSuppressed());
+        }
+        assertEquals(0, batch.getInFlightRows());
+        batch.close();
+    }
+
+    @Test
+    public void testFailureOfLaterBatch() throws Exception
+    {
+        PostgreSQLCopyBatchInsert batch = new PostgreSQLCopyBatchInsert(newConnector(), false, 2);
+        batch.prepare(TABLE, SCHEMA);
+        SQLException failure = new SQLException("duplicate key", "23505");
+        lanes.get(1).failure = failure;
+
+        addBatch(batch, 0);
+        addBatch(batch, 1);
+        try {
+            // the third batch waits for the first one, which succeeds, and the failure is thrown by finish
+            addBatch(batch, 2);
+            batch.finish();
+            fail("finish should fail");
+        } catch (SQLException ex) {
+            assertSame(failure, ex);
+            assertEquals(0, ex.getSuppressed().length);
+        }
+        assertEquals(Arrays.asList(0, 0), lanesOfBatches());
+        batch.close();
+    }
+
+    @Test
+    public void testInterruptedClose() throws Exception
+    {
+        PostgreSQLCopyBatchInsert batch = new PostgreSQLCopyBatchInsert(newConnector(), false, 2);
+        batch.prepare(TABLE, SCHEMA);
+        lanes.get(0).waitFor = new CountDownLatch(1);
+        addBatch(batch, 0);
+
+        Thread.currentThread().interrupt();
+        try {
+            batch.close();
+            // the interruption is kept for the caller
+            assertTrue(Thread.interrupted());
+        } finally {
+            Thread.interrupted();
+        }
+        for (Lane lane : lanes) {
+            assertTrue(lane.closed);
+        }
+    }
+
+    private static void addBatch(PostgreSQLCopyBatchInsert batch, long value) throws Exception
+    {
+        batch.setLong(value);
+        batch.add();
+        batch.flush();
+    }
+
+    // lanes which loaded batches in the order of their rows, which are written in the order of batches
+    private List<Integer> lanesOfBatches()
+    {
+        List<String> sorted = new ArrayList<>(loads);
+        sorted.sort(Comparator.comparing(load -> Integer.parseInt(load.substring(load.indexOf(':') + 1).trim())));
+        List<Integer> lanesOfBatches = new ArrayList<>();
+        for (String load : sorted) {
+            lanesOfBatches.add(Integer.parseInt(load.substring(0, load.indexOf(':'))));
+        }
+        return lanesOfBatches;
+    }
+
+    private JdbcOutputConnector newConnector()
+    {
+        return autoCommit -> {
+            Lane lane = new Lane(lanes.size());
+            lanes.add(lane);
+            return lane.newConnection();
+        };
+    }
+
+    private class Lane
+    {
+        private final int id;
+        // thrown by COPY if not null
+        volatile SQLException failure;
+        // COPY waits for this latch if not null
+        volatile CountDownLatch waitFor;
+        // counted down when COPY fails if not null
+        volatile CountDownLatch failed;
+        volatile boolean closed;
+
+        Lane(int id)
+        {
+            this.id = id;
+        }
+
+        PostgreSQLOutputConnection newConnection() throws SQLException
+        {
+            Connection connection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] {BaseConnection.class}, (proxy, method, args) -> {
+                        switch (method.getName()) {
+                        case "getMetaData":
+                            return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {DatabaseMetaData.class},
+                                    (p, m, a) -> m.getName().equals("getIdentifierQuoteString") ? "\"" : null);
+                        case "close":
+                            closed = true;
+                            return null;
+                        case "isClosed":
+                            return closed;
+                        default:
+                            return null;
+                        }
+                    });
+            return new PostgreSQLOutputConnection(connection, null, null) {
+                @Override
+                public CopyManager newCopyManager() throws SQLException
+                {
+                    return new CopyManager((BaseConnection) connection) {
+                        @Override
+                        public long copyIn(String sql, InputStream from) throws SQLException, IOException
+                        {
+                            return copy(from);
+                        }
+                    };
+                }
+            };
+        }
+
+        private long copy(InputStream from) throws SQLException, IOException
+        {
+            int current = running.incrementAndGet();
+            maxRunning.accumulateAndGet(current, Math::max);
+            try {
+                ByteArrayOutputStream data = new ByteArrayOutputStream();
+                byte[] buffer = new byte[1024];
+                for (int n = from.read(buffer); n >= 0; n = from.read(buffer)) {
+                    data.write(buffer, 0, n);
+                }
+                if (waitFor != null) {
+                    try {
+                        waitFor.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException ex) {
+                        throw new SQLException(ex);
+                    }
+                }
+                if (failure != null) {
+                    if (failed != null) {
+                        failed.countDown();
+                    }
+                    throw failure;
+                }
+                loads.add(id + ":" + new String(data.toByteArray(), StandardCharsets.UTF_8));
+                return 1;
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+    }
+}
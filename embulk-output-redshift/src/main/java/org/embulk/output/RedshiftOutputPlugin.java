@@ -23,6 +23,7 @@ import org.embulk.output.jdbc.TableIdentifier;
 import org.embulk.output.jdbc.Ssl;
 import org.embulk.output.redshift.RedshiftOutputConnector;
 import org.embulk.output.redshift.RedshiftCopyBatchInsert;
+import org.embulk.spi.Schema;
 import org.embulk.util.config.Config;
 import org.embulk.util.config.ConfigDefault;
 
@@ -200,6 +201,16 @@ public class RedshiftOutputPlugin
         return namePrefix.toLowerCase();
     }
 
+    @Override
+    protected void doBegin(JdbcOutputConnection con,
+                           PluginTask task, final Schema schema, int taskCount) throws SQLException
+    {
+        if (task.getMultiRowValues().isPresent()) {
+            logger.warn("multi_row_values is ignored because rows are loaded by COPY");
+        }
+        super.doBegin(con, task, schema, taskCount);
+    }
+
     @Override
     protected BatchInsert newBatchInsert(PluginTask task, Optional<MergeConfig> mergeConfig) throws IOException, SQLException
     {
@@ -1,10 +1,8 @@
 package org.embulk.output.redshift;
 
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
@@ -19,8 +17,10 @@ import java.util.zip.GZIPOutputStream;
 
 import org.embulk.output.jdbc.JdbcOutputConnector;
 import org.embulk.output.jdbc.JdbcSchema;
+import org.embulk.output.jdbc.PhaseEvents;
 import org.embulk.output.jdbc.TableIdentifier;
 import org.embulk.output.postgresql.AbstractPostgreSQLCopyBatchInsert;
+import org.embulk.output.postgresql.CopyTextWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -59,6 +59,7 @@ public class RedshiftCopyBatchInsert
 
     private RedshiftOutputConnection connection = null;
     private String copySqlBeforeFrom = null;
+    private TableIdentifier loadTable = null;
     private long totalRows;
     private int fileCount;
     private List<Future<Void>> uploadAndCopyFutures;
@@ -121,18 +122,15 @@ public class RedshiftCopyBatchInsert
     {
         this.connection = (RedshiftOutputConnection)connector.connect(true);
         this.copySqlBeforeFrom = connection.buildCopySQLBeforeFrom(loadTable, insertSchema);
+        this.loadTable = loadTable;
         logger.info("Copy SQL: "+copySqlBeforeFrom+" ? "+COPY_AFTER_FROM);
     }
 
     @Override
-    protected BufferedWriter openWriter(File newFile) throws IOException
+    protected CopyTextWriter openWriter(File newFile) throws IOException
     {
         // Redshift supports gzip
-        return new BufferedWriter(
-                new OutputStreamWriter(
-                    new GZIPOutputStream(new FileOutputStream(newFile)),
-                    FILE_CHARSET)
-                );
+        return new CopyTextWriter(new GZIPOutputStream(new FileOutputStream(newFile)));
     }
 
     @Override
@@ -141,11 +139,12 @@ public class RedshiftCopyBatchInsert
         File file = closeCurrentFile();  // flush buffered data in writer
 
         String s3KeyName = s3KeyPrefix + UUID.randomUUID().toString();
+        long fileSize = file.length();  // the file is deleted after uploaded
         UploadTask uploadTask = new UploadTask(file, batchRows, s3KeyName);
         Future<Void> uploadFuture = executorService.submit(uploadTask);
         uploadAndCopyFutures.add(uploadFuture);
 
-        CopyTask copyTask = new CopyTask(uploadFuture, s3KeyName);
+        CopyTask copyTask = new CopyTask(uploadFuture, s3KeyName, batchRows, fileSize);
         uploadAndCopyFutures.add(executorService.submit(copyTask));
 
         fileCount++;
@@ -259,13 +258,19 @@ public class RedshiftCopyBatchInsert
             logger.info(String.format("Uploading file id %s to S3 (%,d bytes %,d rows)",
                         s3KeyName, file.length(), batchRows));
 
+            PhaseEvents.Span span = PhaseEvents.begin(PhaseEvents.Phase.UPLOAD, loadTable)
+                    .setRows(batchRows).setBytes(file.length());
             try {
                 long startTime = System.currentTimeMillis();
                 s3.putObject(s3BucketName, s3KeyName, file);
                 double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
 
                 logger.info(String.format("Uploaded file %s (%.2f seconds)", s3KeyName, seconds));
+            } catch (RuntimeException ex) {
+                span.setFailed();
+                throw ex;
             } finally {
+                span.close();
                 file.delete();
             }
 
@@ -277,11 +282,15 @@ public class RedshiftCopyBatchInsert
     {
         private final Future<Void> uploadFuture;
         private final String s3KeyName;
+        private final int batchRows;
+        private final long fileSize;
 
-        public CopyTask(Future<Void> uploadFuture, String s3KeyName)
+        public CopyTask(Future<Void> uploadFuture, String s3KeyName, int batchRows, long fileSize)
         {
             this.uploadFuture = uploadFuture;
             this.s3KeyName = s3KeyName;
+            this.batchRows = batchRows;
+            this.fileSize = fileSize;
         }
 
         public Void call() throws SQLException, InterruptedException, ExecutionException {
@@ -297,7 +306,15 @@ public class RedshiftCopyBatchInsert
                     BasicSessionCredentials creds = generateReaderSessionCredentials(s3KeyName);
 
                     long startTime = System.currentTimeMillis();
-                    con.runCopy(buildCopySQL(creds));
+                    try (PhaseEvents.Span span = PhaseEvents.begin(PhaseEvents.Phase.COPY, loadTable)
+                            .setRows(batchRows).setBytes(fileSize)) {
+                        try {
+                            con.runCopy(buildCopySQL(creds));
+                        } catch (SQLException | RuntimeException ex) {
+                            span.setFailed();
+                            throw ex;
+                        }
+                    }
                     double seconds = (System.currentTimeMillis() - startTime) / 1000.0;
 
                     logger.info(String.format("Loaded file %s (%.2f seconds for COPY)", s3KeyName, seconds));
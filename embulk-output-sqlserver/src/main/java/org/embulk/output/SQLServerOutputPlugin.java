@@ -13,6 +13,7 @@ import org.embulk.output.sqlserver.InsertMethod;
 import org.embulk.output.sqlserver.NativeBatchInsert;
 import org.embulk.output.sqlserver.Product;
 import org.embulk.output.sqlserver.SQLServerOutputConnector;
+import org.embulk.output.sqlserver.SQLServerWeightEstimator;
 import org.embulk.output.sqlserver.setter.SQLServerColumnSetterFactory;
 import org.embulk.util.config.Config;
 import org.embulk.util.config.ConfigDefault;
@@ -321,7 +322,8 @@ public class SQLServerOutputPlugin
                     sqlServerTask.getDatabase().get(), sqlServerTask.getUser(), sqlServerTask.getPassword(),
                     sqlServerTask.getNativeDriverName(), sqlServerTask.getDatabaseEncoding());
         }
-        return new StandardBatchInsert(getConnector(task, true), mergeConfig);
+        return new StandardBatchInsert(getConnector(task, true), mergeConfig, task.getMaxInFlightBatches(),
+                new SQLServerWeightEstimator(), task.getMultiRowValues().orElse(0));
     }
 
     @Override
@@ -242,6 +242,12 @@ public class NativeBatchInsert implements BatchInsert
         return new int[]{};
     }
 
+    @Override
+    public boolean supportsReplay()
+    {
+        return false;
+    }
+
     @Override
     public void finish() throws IOException, SQLException
     {
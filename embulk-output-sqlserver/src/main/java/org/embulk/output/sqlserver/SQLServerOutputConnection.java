@@ -25,6 +25,20 @@ public class SQLServerOutputConnection
         this.product = product;
     }
 
+    @Override
+    public int getMaxParameterCount()
+    {
+        // SQL Server accepts 2100 parameters, which include parameters of sp_prepexec called by the driver
+        return 2000;
+    }
+
+    @Override
+    public int getMaxMultiRowValues()
+    {
+        // the maximum number of row value expressions in INSERT ... VALUES
+        return 1000;
+    }
+
     @Override
     protected String buildRenameTableSql(TableIdentifier fromTable, TableIdentifier toTable)
     {
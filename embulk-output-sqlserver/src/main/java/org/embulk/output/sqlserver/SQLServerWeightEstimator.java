@@ -0,0 +1,16 @@
+package org.embulk.output.sqlserver;
+
+import org.embulk.output.jdbc.WeightEstimator;
+
+/**
+ * SQL Server drivers send string parameters in UTF-16 by default (sendStringParametersAsUnicode).
+ */
+public class SQLServerWeightEstimator
+        extends WeightEstimator
+{
+    @Override
+    public int getStringWeight(String v)
+    {
+        return v.length() * 2 + 4;
+    }
+}